@@ -0,0 +1,232 @@
+package ch.frupp.tutorbot.benchmarks;
+
+import ch.frupp.tutorbot.ai.PgVectorIndexes;
+import ch.frupp.tutorbot.ai.QuantizedPgVectorEmbeddingStore;
+import ch.frupp.tutorbot.ai.VectorIndexProperties;
+import ch.frupp.tutorbot.ai.VectorIndexSettings;
+import ch.frupp.tutorbot.ai.VectorSearchProperties;
+import ch.frupp.tutorbot.ai.VectorStorageProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zaxxer.hikari.HikariDataSource;
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import dev.langchain4j.store.embedding.filter.Filter;
+import dev.langchain4j.store.embedding.filter.comparison.IsEqualTo;
+import dev.langchain4j.store.embedding.pgvector.PgVectorEmbeddingStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Measures retrieval latency (p50/p99), recall@5 and index size of the configured ANN index against exact search on a
+ * scratch table filled with synthetic, clustered embeddings, once per quantization in {@code app.rag.benchmark.quantizations}
+ * (quantized indexes are rescored like in production). Exact search runs on the same table with index scans disabled.
+ * Not a JMH benchmark: it starts the backend from {@code benchmarks.jar} with
+ * {@code java -cp benchmarks.jar ch.frupp.tutorbot.TutorBotApplication --spring.profiles.active=ann-benchmark};
+ * the application exits when the benchmark is done.
+ */
+@Component
+@Profile("ann-benchmark")
+public class AnnIndexBenchmark implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(AnnIndexBenchmark.class);
+
+    private static final String TABLE = "rag_benchmark_embeddings";
+    private static final int DIMENSION = 384;
+    private static final int TOP_K = 5;
+    private static final int CLUSTERS = 1000;
+    private static final int USERS = 100;
+    private static final int INSERT_BATCH = 1000;
+
+    private final DataSourceProperties dataSourceProperties;
+    private final ObjectMapper objectMapper;
+    private final ConfigurableApplicationContext context;
+    private final Random random = new Random(42);
+    private float[][] centroids;
+
+    @Value("${app.rag.benchmark.sizes:10000,100000,1000000}")
+    private int[] sizes;
+
+    @Value("${app.rag.benchmark.queries:200}")
+    private int queries;
+
+    @Value("${app.rag.benchmark.quantizations:none,halfvec,binary}")
+    private String[] quantizations;
+
+    private final VectorIndexProperties indexProperties;
+    private final VectorSearchProperties searchProperties;
+    private final VectorStorageProperties storageProperties;
+
+    public AnnIndexBenchmark(DataSourceProperties dataSourceProperties, ObjectMapper objectMapper, ConfigurableApplicationContext context,
+                             VectorIndexProperties indexProperties, VectorSearchProperties searchProperties,
+                             VectorStorageProperties storageProperties) {
+        this.dataSourceProperties = dataSourceProperties;
+        this.objectMapper = objectMapper;
+        this.context = context;
+        this.indexProperties = indexProperties;
+        this.searchProperties = searchProperties;
+        this.storageProperties = storageProperties;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        VectorIndexSettings settings = VectorIndexSettings.of(indexProperties, searchProperties,
+                VectorIndexSettings.Quantization.NONE, DIMENSION);
+        int rescoreFactor = storageProperties.rescoreFactor();
+        centroids = new float[CLUSTERS][];
+        for (int i = 0; i < CLUSTERS; i++) {
+            centroids[i] = normalize(gaussian(1f));
+        }
+
+        try (HikariDataSource annDataSource = dataSource(settings.sessionSql());
+             HikariDataSource exactDataSource = dataSource("SET enable_indexscan = off")) {
+            PgVectorEmbeddingStore annStore = PgVectorEmbeddingStore.datasourceBuilder()
+                    .datasource(annDataSource).table(TABLE).dimension(DIMENSION)
+                    .dropTableFirst(true).createTable(true).build();
+            PgVectorEmbeddingStore exactStore = PgVectorEmbeddingStore.datasourceBuilder()
+                    .datasource(exactDataSource).table(TABLE).dimension(DIMENSION)
+                    .createTable(false).build();
+
+            log.info("ANN benchmark: {} (ef_search={}, probes={}, iterative_scan={}, rescore factor {}), {} queries per size",
+                    settings.indexName(TABLE), settings.efSearch(), settings.probes(), settings.iterativeScan(), rescoreFactor, queries);
+            int rows = 0;
+            for (int size : sizes) {
+                // Drop the index while loading, building it once afterwards is much faster than maintaining it
+                PgVectorIndexes.ensure(annDataSource, TABLE, settings.withType(VectorIndexSettings.Type.NONE));
+                for (; rows < size; rows += INSERT_BATCH) {
+                    insertBatch(annStore, Math.min(INSERT_BATCH, size - rows));
+                }
+                JdbcTemplate jdbcTemplate = new JdbcTemplate(annDataSource);
+                jdbcTemplate.execute("ANALYZE " + TABLE);
+                for (String quantization : quantizations) {
+                    VectorIndexSettings quantized = settings.withQuantization(
+                            VectorIndexSettings.Quantization.valueOf(quantization.trim().toUpperCase(Locale.ROOT)));
+                    long buildStart = System.nanoTime();
+                    PgVectorIndexes.ensure(annDataSource, TABLE, quantized);
+                    long buildMillis = (System.nanoTime() - buildStart) / 1_000_000;
+                    long indexMegabytes = quantized.indexName(TABLE) == null ? 0 : jdbcTemplate.queryForObject(
+                            "SELECT pg_relation_size(?::regclass)", Long.class, quantized.indexName(TABLE)) / (1024 * 1024);
+                    EmbeddingStore<TextSegment> store = quantized.quantization() == VectorIndexSettings.Quantization.NONE
+                            ? annStore
+                            : new QuantizedPgVectorEmbeddingStore(annStore, annDataSource, objectMapper, TABLE, quantized, rescoreFactor);
+
+                    Result unfiltered = measure(store, exactStore, false);
+                    Result filtered = measure(store, exactStore, true);
+                    log.info("{} segments, {} (index build {} ms, {} MB) | unfiltered: p50 {} ms, p99 {} ms, recall@{} {} (exact p50 {} ms) | userid filter: p50 {} ms, p99 {} ms, recall@{} {} (exact p50 {} ms)",
+                            size, quantized.quantization(), buildMillis, indexMegabytes,
+                            unfiltered.p50(), unfiltered.p99(), TOP_K, unfiltered.recall(), unfiltered.exactP50(),
+                            filtered.p50(), filtered.p99(), TOP_K, filtered.recall(), filtered.exactP50());
+                }
+            }
+            new JdbcTemplate(annDataSource).execute("DROP TABLE IF EXISTS " + TABLE);
+        }
+        System.exit(SpringApplication.exit(context, () -> 0));
+    }
+
+    private Result measure(EmbeddingStore<TextSegment> annStore, EmbeddingStore<TextSegment> exactStore, boolean filterByUser) {
+        double[] annLatencies = new double[queries];
+        double[] exactLatencies = new double[queries];
+        double recallSum = 0;
+        for (int i = 0; i < queries; i++) {
+            Embedding query = Embedding.from(sample());
+            Filter filter = filterByUser ? new IsEqualTo("userid", String.valueOf(random.nextInt(USERS))) : null;
+            EmbeddingSearchRequest request = EmbeddingSearchRequest.builder()
+                    .queryEmbedding(query).maxResults(TOP_K).filter(filter).build();
+
+            long start = System.nanoTime();
+            Set<String> expected = ids(exactStore.search(request).matches());
+            exactLatencies[i] = (System.nanoTime() - start) / 1e6;
+
+            start = System.nanoTime();
+            Set<String> actual = ids(annStore.search(request).matches());
+            annLatencies[i] = (System.nanoTime() - start) / 1e6;
+
+            if (!expected.isEmpty()) {
+                actual.retainAll(expected);
+                recallSum += (double) actual.size() / expected.size();
+            }
+        }
+        return new Result(percentile(annLatencies, 0.5), percentile(annLatencies, 0.99),
+                percentile(exactLatencies, 0.5), Math.round(recallSum / queries * 1000) / 1000d);
+    }
+
+    private void insertBatch(EmbeddingStore<TextSegment> store, int count) {
+        List<Embedding> embeddings = new ArrayList<>(count);
+        List<TextSegment> segments = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            embeddings.add(Embedding.from(sample()));
+            segments.add(TextSegment.from("benchmark segment", new Metadata()
+                    .put("userid", String.valueOf(random.nextInt(USERS)))
+                    .put("courseid", String.valueOf(random.nextInt(10)))));
+        }
+        store.addAll(embeddings, segments);
+    }
+
+    // Real segment embeddings are clustered by topic, uniformly random vectors would make every index look bad
+    private float[] sample() {
+        float[] centroid = centroids[random.nextInt(CLUSTERS)];
+        float[] noise = gaussian(0.3f);
+        for (int i = 0; i < DIMENSION; i++) {
+            noise[i] += centroid[i];
+        }
+        return normalize(noise);
+    }
+
+    private float[] gaussian(float scale) {
+        float[] vector = new float[DIMENSION];
+        for (int i = 0; i < DIMENSION; i++) {
+            vector[i] = (float) random.nextGaussian() * scale;
+        }
+        return vector;
+    }
+
+    private static float[] normalize(float[] vector) {
+        double norm = 0;
+        for (float v : vector) norm += v * v;
+        float inverse = (float) (1 / Math.sqrt(norm));
+        for (int i = 0; i < vector.length; i++) vector[i] *= inverse;
+        return vector;
+    }
+
+    private static Set<String> ids(List<EmbeddingMatch<TextSegment>> matches) {
+        Set<String> ids = new HashSet<>();
+        matches.forEach(match -> ids.add(match.embeddingId()));
+        return ids;
+    }
+
+    private static double percentile(double[] values, double percentile) {
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        double value = sorted[(int) Math.ceil(percentile * sorted.length) - 1];
+        return Math.round(value * 100) / 100d;
+    }
+
+    private HikariDataSource dataSource(String connectionInitSql) {
+        HikariDataSource dataSource = dataSourceProperties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setConnectionInitSql(connectionInitSql);
+        return dataSource;
+    }
+
+    private record Result(double p50, double p99, double exactP50, double recall) {
+    }
+}
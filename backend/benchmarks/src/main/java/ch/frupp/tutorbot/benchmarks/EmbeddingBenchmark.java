@@ -0,0 +1,81 @@
+package ch.frupp.tutorbot.benchmarks;
+
+import dev.langchain4j.data.document.Document;
+import dev.langchain4j.data.document.splitter.DocumentSplitters;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.embedding.onnx.allminilml6v2.AllMiniLmL6V2EmbeddingModel;
+import dev.langchain4j.model.embedding.onnx.allminilml6v2q.AllMiniLmL6V2QuantizedEmbeddingModel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ONNX embedding of {@link #SEGMENTS} segments of the sample PDFs (split like the ingestion does), one call
+ * per segment vs. batched {@code embedAll} calls. Compares the full all-MiniLM-L6-v2 model used by
+ * {@code RAGConfiguration.embeddingModel} with its quantized variant. Scores are per segment.
+ * Both models embed in the calling thread, as in the backend.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class EmbeddingBenchmark {
+
+    static final int SEGMENTS = 64;
+
+    @Param({"full", "quantized"})
+    public String model;
+
+    // The backend embeds in batches of app.ingestion.embedding.batch-size (32)
+    @Param({"8", "32", "64"})
+    public int batchSize;
+
+    private EmbeddingModel embeddingModel;
+    private List<TextSegment> segments;
+
+    @Setup
+    public void setup() {
+        embeddingModel = switch (model) {
+            case "full" -> new AllMiniLmL6V2EmbeddingModel(Runnable::run);
+            case "quantized" -> new AllMiniLmL6V2QuantizedEmbeddingModel(Runnable::run);
+            default -> throw new IllegalArgumentException("Unknown model " + model);
+        };
+        segments = DocumentSplitters.recursive(300, 30)
+                .split(Document.from(SamplePdfs.text(SEGMENTS * 300)))
+                .subList(0, SEGMENTS);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SEGMENTS)
+    public void single(Blackhole blackhole) {
+        for (TextSegment segment : segments) {
+            blackhole.consume(embeddingModel.embed(segment).content());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SEGMENTS)
+    public void batched(Blackhole blackhole) {
+        for (int from = 0; from < SEGMENTS; from += batchSize) {
+            List<Embedding> embeddings = embeddingModel.embedAll(segments.subList(from, Math.min(SEGMENTS, from + batchSize))).content();
+            blackhole.consume(embeddings);
+        }
+    }
+}
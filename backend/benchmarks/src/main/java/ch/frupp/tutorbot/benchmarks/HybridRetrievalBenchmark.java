@@ -0,0 +1,242 @@
+package ch.frupp.tutorbot.benchmarks;
+
+import ch.frupp.tutorbot.ai.AiAssistantConfig;
+import ch.frupp.tutorbot.ai.HybridContentRetriever;
+import ch.frupp.tutorbot.ai.HybridRetrievalProperties;
+import ch.frupp.tutorbot.ai.PgFullTextContentRetriever;
+import ch.frupp.tutorbot.ai.RAGConfiguration;
+import ch.frupp.tutorbot.ai.RetrievalProperties;
+import ch.frupp.tutorbot.ai.RetrievalQueries;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zaxxer.hikari.HikariDataSource;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.invocation.InvocationParameters;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.rag.content.Content;
+import dev.langchain4j.rag.content.ContentMetadata;
+import dev.langchain4j.rag.content.retriever.ContentRetriever;
+import dev.langchain4j.rag.query.Query;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import dev.langchain4j.store.embedding.pgvector.PgVectorEmbeddingStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Compares vector-only with hybrid retrieval on the topics and materials in the configured database: latency
+ * (p50/p99), hit@k and recall@k for k = 1..max-results against a ground truth that neither retriever produces.
+ * With {@code app.rag.benchmark.labels}, a CSV file of {@code topic_id,embedding_id} lines, the labelled segments are
+ * the relevant ones and only labelled topics are evaluated. Without it the relevant segments of a topic are the union
+ * of the exact vector search (index scans disabled) and the full-text search, each with max-results segments: it
+ * catches ANN misses of the vector-only retriever, but its keyword half still credits what hybrid adds, so only the
+ * labelled set judges relevance independently. Both retrievers use the uncached embedding model, so each query pays
+ * for its embedding. Not a JMH benchmark: it starts the backend from {@code benchmarks.jar} with
+ * {@code java -cp benchmarks.jar ch.frupp.tutorbot.TutorBotApplication --spring.profiles.active=hybrid-benchmark};
+ * the application exits when the benchmark is done.
+ */
+@Component
+@Profile("hybrid-benchmark")
+public class HybridRetrievalBenchmark implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(HybridRetrievalBenchmark.class);
+
+    // Topics whose course has segments at all
+    private static final String TOPICS_SQL = """
+            SELECT t.id, t.name, c.id AS course_id, c.user_id FROM topics t JOIN courses c ON c.id = t.course_id
+            WHERE EXISTS (SELECT 1 FROM %s e WHERE e.metadata->>'courseid' = c.id::text AND e.metadata->>'userid' = c.user_id::text)
+            ORDER BY t.id LIMIT ?""".formatted(RAGConfiguration.EMBEDDING_TABLE);
+
+    private final EmbeddingStore<TextSegment> embeddingStore;
+    private final EmbeddingModel embeddingModel;
+    private final JdbcTemplate jdbcTemplate;
+    private final DataSourceProperties dataSourceProperties;
+    private final ObjectMapper objectMapper;
+    private final ThreadPoolTaskExecutor keywordSearchExecutor;
+    private final ConfigurableApplicationContext context;
+    private final HybridRetrievalProperties hybridProperties;
+    private final int maxResults;
+
+    @Value("${app.rag.benchmark.topics:500}")
+    private int maxTopics;
+
+    @Value("${app.rag.benchmark.labels:}")
+    private String labels;
+
+    public HybridRetrievalBenchmark(EmbeddingStore<TextSegment> embeddingStore, EmbeddingModel embeddingModel, JdbcTemplate jdbcTemplate,
+                                    DataSourceProperties dataSourceProperties, ObjectMapper objectMapper,
+                                    @Qualifier("keywordSearchExecutor") ThreadPoolTaskExecutor keywordSearchExecutor,
+                                    ConfigurableApplicationContext context, HybridRetrievalProperties hybridProperties,
+                                    RetrievalProperties retrievalProperties) {
+        this.embeddingStore = embeddingStore;
+        this.embeddingModel = embeddingModel;
+        this.jdbcTemplate = jdbcTemplate;
+        this.dataSourceProperties = dataSourceProperties;
+        this.objectMapper = objectMapper;
+        this.keywordSearchExecutor = keywordSearchExecutor;
+        this.context = context;
+        this.hybridProperties = hybridProperties;
+        this.maxResults = retrievalProperties.maxResults();
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws IOException {
+        List<TopicQuery> topics = jdbcTemplate.query(TOPICS_SQL, (rs, i) -> new TopicQuery(
+                rs.getInt("id"), rs.getString("name"), rs.getString("course_id"), rs.getString("user_id")), maxTopics);
+        Map<Integer, Set<String>> labelled = labels.isBlank() ? null : readLabels(Path.of(labels));
+        if (labelled != null) {
+            topics = topics.stream().filter(topic -> labelled.containsKey(topic.id())).toList();
+        }
+        if (topics.isEmpty()) {
+            log.info("Hybrid benchmark: no topic to evaluate, upload materials and create topics (and label them) first");
+            System.exit(SpringApplication.exit(context, () -> 0));
+            return;
+        }
+
+        try (HikariDataSource exactDataSource = dataSourceProperties.initializeDataSourceBuilder().type(HikariDataSource.class).build()) {
+            exactDataSource.setConnectionInitSql("SET enable_indexscan = off");
+            int candidates = hybridProperties.candidates();
+            String textSearchConfig = hybridProperties.textSearchConfig();
+            ContentRetriever vector = AiAssistantConfig.vectorRetriever(embeddingStore, embeddingModel, maxResults);
+            ContentRetriever hybrid = new HybridContentRetriever(
+                    AiAssistantConfig.vectorRetriever(embeddingStore, embeddingModel, candidates),
+                    new PgFullTextContentRetriever(jdbcTemplate, objectMapper, RAGConfiguration.EMBEDDING_TABLE, textSearchConfig, candidates),
+                    keywordSearchExecutor, maxResults, hybridProperties.rrfK());
+
+            Map<Integer, Set<String>> relevant;
+            String groundTruth;
+            if (labelled != null) {
+                relevant = labelled;
+                groundTruth = "labelled segments of " + labels;
+            } else {
+                ContentRetriever exactVector = AiAssistantConfig.vectorRetriever(PgVectorEmbeddingStore.datasourceBuilder()
+                        .datasource(exactDataSource).table(RAGConfiguration.EMBEDDING_TABLE).dimension(embeddingModel.dimension())
+                        .createTable(false).build(), embeddingModel, maxResults);
+                ContentRetriever fullText = new PgFullTextContentRetriever(jdbcTemplate, objectMapper,
+                        RAGConfiguration.EMBEDDING_TABLE, textSearchConfig, maxResults);
+                relevant = new HashMap<>();
+                for (TopicQuery topic : topics) {
+                    Set<String> ids = ids(exactVector.retrieve(topic.query()));
+                    ids.addAll(ids(fullText.retrieve(topic.query())));
+                    relevant.put(topic.id(), ids);
+                }
+                groundTruth = "exact vector top-" + maxResults + " + full-text top-" + maxResults;
+            }
+
+            // Warm-up: ONNX session, connection pools and the Postgres buffer cache
+            topics.stream().limit(20).forEach(topic -> {
+                vector.retrieve(topic.query());
+                hybrid.retrieve(topic.query());
+            });
+
+            Result vectorResult = measure(vector, topics, relevant);
+            Result hybridResult = measure(hybrid, topics, relevant);
+            log.info("Hybrid benchmark: {} topics, max-results {}, candidates {}, rrf-k {}, text search config {}, ground truth: {}",
+                    topics.size(), maxResults, candidates, hybridProperties.rrfK(), textSearchConfig, groundTruth);
+            log.info("vector-only: p50 {} ms, p99 {} ms, hit@1..{} {}, recall@1..{} {}", vectorResult.p50(), vectorResult.p99(),
+                    maxResults, Arrays.toString(vectorResult.hitRates()), maxResults, Arrays.toString(vectorResult.recalls()));
+            log.info("hybrid:      p50 {} ms, p99 {} ms, hit@1..{} {}, recall@1..{} {}", hybridResult.p50(), hybridResult.p99(),
+                    maxResults, Arrays.toString(hybridResult.hitRates()), maxResults, Arrays.toString(hybridResult.recalls()));
+
+            double target = vectorResult.recalls()[maxResults - 1];
+            for (int k = 1; k <= maxResults; k++) {
+                if (hybridResult.recalls()[k - 1] >= target) {
+                    log.info("hybrid reaches the vector-only recall@{} of {} with {} segment(s){}", maxResults, target, k,
+                            labelled != null ? "" : " (the ground truth includes the full-text matches, label topics for an unbiased comparison)");
+                    break;
+                }
+            }
+        }
+        System.exit(SpringApplication.exit(context, () -> 0));
+    }
+
+    private Result measure(ContentRetriever retriever, List<TopicQuery> topics, Map<Integer, Set<String>> relevant) {
+        double[] latencies = new double[topics.size()];
+        int[] hits = new int[maxResults];
+        double[] recallSums = new double[maxResults];
+        for (int i = 0; i < topics.size(); i++) {
+            TopicQuery topic = topics.get(i);
+            long start = System.nanoTime();
+            List<Content> contents = retriever.retrieve(topic.query());
+            latencies[i] = (System.nanoTime() - start) / 1e6;
+
+            // hit@k counts the topic for every k from the first relevant segment on, recall@k the share found in the top k
+            Set<String> expected = relevant.getOrDefault(topic.id(), Set.of());
+            if (expected.isEmpty()) continue;
+            int found = 0;
+            for (int rank = 0; rank < maxResults; rank++) {
+                if (rank < contents.size() && expected.contains(embeddingId(contents.get(rank)))) found++;
+                if (found > 0) hits[rank]++;
+                recallSums[rank] += (double) found / Math.min(expected.size(), maxResults);
+            }
+        }
+        double[] hitRates = new double[maxResults];
+        double[] recalls = new double[maxResults];
+        for (int k = 0; k < maxResults; k++) {
+            hitRates[k] = Math.round((double) hits[k] / topics.size() * 1000) / 1000d;
+            recalls[k] = Math.round(recallSums[k] / topics.size() * 1000) / 1000d;
+        }
+        return new Result(percentile(latencies, 0.5), percentile(latencies, 0.99), hitRates, recalls);
+    }
+
+    private static Map<Integer, Set<String>> readLabels(Path file) throws IOException {
+        Map<Integer, Set<String>> labelled = new HashMap<>();
+        for (String line : Files.readAllLines(file)) {
+            String[] columns = line.split(",");
+            // Skips the header and blank lines
+            if (columns.length != 2 || !columns[0].trim().matches("\\d+")) continue;
+            labelled.computeIfAbsent(Integer.valueOf(columns[0].trim()), id -> new HashSet<>()).add(columns[1].trim());
+        }
+        return labelled;
+    }
+
+    private static Set<String> ids(List<Content> contents) {
+        Set<String> ids = new HashSet<>();
+        contents.forEach(content -> ids.add(embeddingId(content)));
+        return ids;
+    }
+
+    private static String embeddingId(Content content) {
+        return String.valueOf(content.metadata().get(ContentMetadata.EMBEDDING_ID));
+    }
+
+    private static double percentile(double[] values, double percentile) {
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        double value = sorted[(int) Math.ceil(percentile * sorted.length) - 1];
+        return Math.round(value * 100) / 100d;
+    }
+
+    // The topic name is the query text and the keywords, like QuizService's context retrieval
+    private record TopicQuery(int id, String name, String courseId, String userId) {
+
+        Query query() {
+            return RetrievalQueries.of(name, InvocationParameters.from(Map.of(
+                    "userid", userId,
+                    "courseid", courseId,
+                    RetrievalQueries.KEYWORDS, name)));
+        }
+    }
+
+    private record Result(double p50, double p99, double[] hitRates, double[] recalls) {
+    }
+}
@@ -0,0 +1,60 @@
+package ch.frupp.tutorbot.benchmarks;
+
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.text.PDFTextStripper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Text of the sample lecture notes bundled in {@code src/main/resources/samples}, extracted with PDFBox the
+ * same way the ingestion does, so the benchmarks work on realistic line breaks and page layout.
+ */
+final class SamplePdfs {
+
+    static final List<String> FILES = List.of("samples/linear-algebra.pdf", "samples/databases.pdf");
+
+    private SamplePdfs() {
+    }
+
+    /**
+     * One string per page of all sample PDFs.
+     */
+    static List<String> pages() {
+        List<String> pages = new ArrayList<>();
+        for (String file : FILES) {
+            try (InputStream in = SamplePdfs.class.getClassLoader().getResourceAsStream(file)) {
+                if (in == null) {
+                    throw new IllegalStateException("Sample " + file + " is missing from the classpath");
+                }
+                try (PDDocument pdf = Loader.loadPDF(in.readAllBytes())) {
+                    PDFTextStripper stripper = new PDFTextStripper();
+                    for (int page = 1; page <= pdf.getNumberOfPages(); page++) {
+                        stripper.setStartPage(page);
+                        stripper.setEndPage(page);
+                        pages.add(stripper.getText(pdf));
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return pages;
+    }
+
+    /**
+     * The text of all samples, repeated until it is at least {@code minChars} long.
+     */
+    static String text(int minChars) {
+        String all = String.join("\n", pages());
+        StringBuilder text = new StringBuilder(minChars + all.length());
+        while (text.length() < minChars) {
+            text.append(all).append('\n');
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,57 @@
+package ch.frupp.tutorbot.benchmarks;
+
+import ch.frupp.tutorbot.ai.dataprocessing.PDFIngestionService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * NUL removal of {@link PDFIngestionService#sanitize(String)} on a page of text, for clean pages (the common
+ * case, no copy) and pages with NUL characters every {@code nulEvery} characters.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SanitizeBenchmark {
+
+    // 0 = no NUL characters
+    @Param({"0", "1000", "50"})
+    public int nulEvery;
+
+    @Param({"4000", "64000"})
+    public int chars;
+
+    private String text;
+
+    @Setup
+    public void setup() {
+        String sample = SamplePdfs.text(chars).substring(0, chars);
+        if (nulEvery == 0) {
+            text = sample;
+            return;
+        }
+        StringBuilder withNuls = new StringBuilder(sample);
+        for (int i = nulEvery; i < withNuls.length(); i += nulEvery) {
+            withNuls.setCharAt(i, '\u0000');
+        }
+        text = withNuls.toString();
+    }
+
+    @Benchmark
+    public String sanitize() {
+        return PDFIngestionService.sanitize(text);
+    }
+}
@@ -0,0 +1,191 @@
+package ch.frupp.tutorbot.benchmarks;
+
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingSearchResult;
+import dev.langchain4j.store.embedding.filter.Filter;
+import dev.langchain4j.store.embedding.inmemory.InMemoryEmbeddingStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static dev.langchain4j.store.embedding.filter.MetadataFilterBuilder.metadataKey;
+
+/**
+ * Exact top-k search over synthetic clustered 384-dimensional embeddings, the shape of the
+ * {@code rag_embeddings} table: {@link InMemoryEmbeddingStore} with the retriever's metadata filter vs. a
+ * pgvector-shaped scan over a flat float array that filters on the owner columns first and keeps the
+ * {@code maxResults} smallest cosine distances in a bounded heap, like {@code WHERE ... ORDER BY embedding <=> ?
+ * LIMIT k} without an ANN index. Shows what {@code maxResults} and the per-course filter cost in-process;
+ * index latency and recall against Postgres are measured by {@link AnnIndexBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SimilaritySearchBenchmark {
+
+    private static final int DIMENSION = 384;
+    private static final int CLUSTERS = 64;
+    private static final int USERS = 10;
+    private static final int COURSES_PER_USER = 5;
+    private static final int QUERIES = 1024;
+
+    @Param({"10000", "100000"})
+    public int segments;
+
+    @Param({"3", "5", "10"})
+    public int maxResults;
+
+    // "course" filters on userid and courseid like the content retriever, "none" searches everything
+    @Param({"course", "none"})
+    public String filter;
+
+    private InMemoryEmbeddingStore<TextSegment> store;
+    private float[] vectors;
+    private int[] userIds;
+    private int[] courseIds;
+    private Random random;
+    private float[][] centroids;
+
+    // Queries are cycled through so consecutive invocations don't hit the same cache lines
+    private Embedding[] queries;
+    private int[] queryUsers;
+    private int[] queryCourses;
+    private int next;
+
+    private Embedding query;
+    private int queryUser;
+    private int queryCourse;
+
+    @Setup
+    public void setup() {
+        random = new Random(42);
+        centroids = new float[CLUSTERS][];
+        for (int c = 0; c < CLUSTERS; c++) {
+            centroids[c] = normalize(gaussian(1.0f, null));
+        }
+
+        store = new InMemoryEmbeddingStore<>();
+        vectors = new float[segments * DIMENSION];
+        userIds = new int[segments];
+        courseIds = new int[segments];
+        List<Embedding> embeddings = new ArrayList<>(segments);
+        List<TextSegment> textSegments = new ArrayList<>(segments);
+        for (int i = 0; i < segments; i++) {
+            float[] vector = sample();
+            System.arraycopy(vector, 0, vectors, i * DIMENSION, DIMENSION);
+            userIds[i] = random.nextInt(USERS);
+            courseIds[i] = userIds[i] * COURSES_PER_USER + random.nextInt(COURSES_PER_USER);
+            embeddings.add(Embedding.from(vector));
+            textSegments.add(TextSegment.from("segment " + i, Metadata.from("userid", String.valueOf(userIds[i]))
+                    .put("courseid", String.valueOf(courseIds[i]))));
+        }
+        store.addAll(embeddings, textSegments);
+
+        queries = new Embedding[QUERIES];
+        queryUsers = new int[QUERIES];
+        queryCourses = new int[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            queries[i] = Embedding.from(sample());
+            queryUsers[i] = random.nextInt(USERS);
+            queryCourses[i] = queryUsers[i] * COURSES_PER_USER + random.nextInt(COURSES_PER_USER);
+        }
+    }
+
+    private void nextQuery() {
+        int i = next++ & (QUERIES - 1);
+        query = queries[i];
+        queryUser = queryUsers[i];
+        queryCourse = queryCourses[i];
+    }
+
+    @Benchmark
+    public EmbeddingSearchResult<TextSegment> inMemoryStore() {
+        nextQuery();
+        EmbeddingSearchRequest.EmbeddingSearchRequestBuilder request = EmbeddingSearchRequest.builder()
+                .queryEmbedding(query)
+                .maxResults(maxResults);
+        if ("course".equals(filter)) {
+            Filter owner = metadataKey("userid").isEqualTo(String.valueOf(queryUser))
+                    .and(metadataKey("courseid").isEqualTo(String.valueOf(queryCourse)));
+            request.filter(owner);
+        }
+        return store.search(request.build());
+    }
+
+    @Benchmark
+    public int[] flatScan() {
+        nextQuery();
+        boolean filtered = "course".equals(filter);
+        float[] q = query.vector();
+        // Max-heap on distance, the root is the worst of the current top k
+        PriorityQueue<long[]> top = new PriorityQueue<>(maxResults + 1,
+                (a, b) -> Double.compare(Double.longBitsToDouble(b[1]), Double.longBitsToDouble(a[1])));
+        for (int i = 0; i < segments; i++) {
+            if (filtered && (userIds[i] != queryUser || courseIds[i] != queryCourse)) continue;
+            double distance = cosineDistance(q, i * DIMENSION);
+            if (top.size() < maxResults) {
+                top.add(new long[]{i, Double.doubleToLongBits(distance)});
+            } else if (distance < Double.longBitsToDouble(top.peek()[1])) {
+                top.poll();
+                top.add(new long[]{i, Double.doubleToLongBits(distance)});
+            }
+        }
+        int[] ids = new int[top.size()];
+        for (int i = ids.length - 1; i >= 0; i--) {
+            ids[i] = (int) top.poll()[0];
+        }
+        return ids;
+    }
+
+    private double cosineDistance(float[] q, int offset) {
+        double dot = 0, qNorm = 0, vNorm = 0;
+        for (int d = 0; d < DIMENSION; d++) {
+            float v = vectors[offset + d];
+            dot += q[d] * v;
+            qNorm += q[d] * q[d];
+            vNorm += v * v;
+        }
+        return 1 - dot / Math.sqrt(qNorm * vNorm);
+    }
+
+    // A point near a random centroid, embeddings of related text cluster the same way
+    private float[] sample() {
+        return normalize(gaussian(0.35f, centroids[random.nextInt(CLUSTERS)]));
+    }
+
+    private float[] gaussian(float sigma, float[] center) {
+        float[] vector = new float[DIMENSION];
+        for (int d = 0; d < DIMENSION; d++) {
+            vector[d] = (center == null ? 0 : center[d]) + (float) random.nextGaussian() * sigma / (float) Math.sqrt(DIMENSION);
+        }
+        return vector;
+    }
+
+    private static float[] normalize(float[] vector) {
+        double norm = 0;
+        for (float v : vector) norm += v * v;
+        float inverse = (float) (1 / Math.sqrt(norm));
+        for (int d = 0; d < vector.length; d++) vector[d] *= inverse;
+        return vector;
+    }
+}
@@ -0,0 +1,69 @@
+package ch.frupp.tutorbot.benchmarks;
+
+import dev.langchain4j.data.document.Document;
+import dev.langchain4j.data.document.DocumentSplitter;
+import dev.langchain4j.data.document.splitter.DocumentSplitters;
+import dev.langchain4j.data.segment.TextSegment;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Recursive splitting of one page of text as done per page by the ingestion. The production setting is
+ * {@code recursive(300, 30)}; the segment count is reported as an auxiliary counter, it drives the
+ * embedding cost downstream.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SplitterBenchmark {
+
+    @Param({"200", "300", "500", "1000"})
+    public int maxSegmentSize;
+
+    @Param({"0", "30", "100"})
+    public int maxOverlap;
+
+    private List<Document> pages;
+    private DocumentSplitter splitter;
+
+    @Setup
+    public void setup() {
+        pages = SamplePdfs.pages().stream().map(Document::from).toList();
+        splitter = DocumentSplitters.recursive(maxSegmentSize, maxOverlap);
+    }
+
+    @Benchmark
+    public List<TextSegment> splitPages(Segments segments) {
+        List<TextSegment> result = splitter.splitAll(pages);
+        segments.segments += result.size();
+        return result;
+    }
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Segments {
+        public long segments;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            segments = 0;
+        }
+    }
+}
@@ -0,0 +1,232 @@
+#!/usr/bin/env python3
+"""Scripted load generator for the backend started with the loadtest profile.
+
+Every virtual user registers, logs in, creates a course, uploads a PDF and waits for its ingestion, creates
+topics (reading each summary stream to the end) and finally fires a burst of quiz requests. Per endpoint the
+script reports request count, errors, throughput and latency percentiles; per phase the live thread count and
+used heap scraped from /actuator/prometheus. Only the Python standard library is used.
+
+    python3 loadtest/loadtest.py --users 20 --quizzes 10 --json target/loadtest-report.json
+"""
+
+import argparse
+import http.cookiejar
+import json
+import re
+import statistics
+import threading
+import time
+import urllib.error
+import urllib.request
+import uuid
+from collections import defaultdict
+from concurrent.futures import ThreadPoolExecutor
+from pathlib import Path
+
+DEFAULT_PDF = Path(__file__).resolve().parent.parent / "benchmarks" / "samples" / "linear-algebra.pdf"
+TOPICS = ["Vector spaces", "Linear maps", "Eigenvalues", "Determinants", "Orthogonality"]
+
+
+class Stats:
+    """Latencies and failures per endpoint, shared by all virtual users."""
+
+    def __init__(self):
+        self.lock = threading.Lock()
+        self.latencies = defaultdict(list)
+        self.errors = defaultdict(int)
+        self.statuses = defaultdict(lambda: defaultdict(int))
+        self.first = None
+        self.last = None
+
+    def record(self, endpoint, seconds, status):
+        now = time.monotonic()
+        with self.lock:
+            self.first = self.first or now - seconds
+            self.last = now
+            self.latencies[endpoint].append(seconds)
+            self.statuses[endpoint][status] += 1
+            if status >= 400 or status == 0:
+                self.errors[endpoint] += 1
+
+
+class JvmSampler(threading.Thread):
+    """Scrapes thread count and heap usage while a phase runs and keeps the peak values."""
+
+    THREADS = re.compile(r'^jvm_threads_live_threads(?:\{[^}]*\})? ([0-9.eE+-]+)$', re.M)
+    HEAP = re.compile(r'^jvm_memory_used_bytes\{[^}]*area="heap"[^}]*\} ([0-9.eE+-]+)$', re.M)
+
+    def __init__(self, management_url, interval):
+        super().__init__(daemon=True)
+        self.url = management_url + "/actuator/prometheus"
+        self.interval = interval
+        self.phase = "startup"
+        self.peaks = defaultdict(lambda: {"threads": 0, "heap_mb": 0.0})
+        self.stopped = threading.Event()
+
+    def run(self):
+        while not self.stopped.wait(self.interval):
+            try:
+                with urllib.request.urlopen(self.url, timeout=5) as response:
+                    body = response.read().decode()
+            except (urllib.error.URLError, OSError):
+                continue
+            threads = self.THREADS.search(body)
+            heap = sum(float(value) for value in self.HEAP.findall(body)) / (1024 * 1024)
+            peak = self.peaks[self.phase]
+            if threads:
+                peak["threads"] = max(peak["threads"], int(float(threads.group(1))))
+            peak["heap_mb"] = max(peak["heap_mb"], round(heap, 1))
+
+
+class VirtualUser:
+
+    def __init__(self, index, args, stats):
+        self.name = f"load-{args.run_id}-{index}"
+        self.args = args
+        self.stats = stats
+        self.opener = urllib.request.build_opener(urllib.request.HTTPCookieProcessor(http.cookiejar.CookieJar()))
+        self.course_id = None
+        self.topic_ids = []
+
+    def call(self, endpoint, method, path, body=None, content_type="application/json", stream=False):
+        data = json.dumps(body).encode() if content_type == "application/json" and body is not None else body
+        request = urllib.request.Request(self.args.base_url + path, data=data, method=method)
+        if data is not None:
+            request.add_header("Content-Type", content_type)
+        started = time.monotonic()
+        status = 0
+        payload = b""
+        try:
+            with self.opener.open(request, timeout=self.args.timeout) as response:
+                status = response.status
+                # SSE: read until the server closes the stream, the latency is the time to the last event
+                payload = response.read()
+        except urllib.error.HTTPError as e:
+            status = e.code
+            payload = e.read()
+        except (urllib.error.URLError, OSError):
+            pass
+        self.stats.record(endpoint, time.monotonic() - started, status)
+        if stream or not payload or status >= 400:
+            return status, payload
+        try:
+            return status, json.loads(payload)
+        except ValueError:
+            return status, payload
+
+    def signup(self):
+        self.call("POST /api/auth/register", "POST", "/api/auth/register",
+                  {"username": self.name, "email": self.name + "@example.com", "password": "loadtest", "role": "USER"})
+        self.call("POST /api/auth/login", "POST", "/api/auth/login", {"username": self.name, "password": "loadtest"})
+        status, course = self.call("POST /api/courses/create", "POST", "/api/courses/create", {"name": "Course of " + self.name})
+        if status < 400:
+            self.course_id = course["id"]
+
+    def upload(self):
+        if self.course_id is None:
+            return
+        boundary = uuid.uuid4().hex
+        body = (f"--{boundary}\r\nContent-Disposition: form-data; name=\"file\"; filename=\"{self.args.pdf.name}\"\r\n"
+                f"Content-Type: application/pdf\r\n\r\n").encode() + self.args.pdf_bytes + f"\r\n--{boundary}--\r\n".encode()
+        status, job = self.call("POST /api/courses/{id}/materials/upload", "POST",
+                                f"/api/courses/{self.course_id}/materials/upload", body,
+                                content_type=f"multipart/form-data; boundary={boundary}")
+        if status >= 400:
+            return
+        deadline = time.monotonic() + self.args.timeout
+        while job.get("status") not in ("READY", "FAILED") and time.monotonic() < deadline:
+            time.sleep(0.5)
+            status, polled = self.call("GET /api/courses/{id}/materials/jobs/{jobId}", "GET",
+                                       f"/api/courses/{self.course_id}/materials/jobs/{job['jobId']}")
+            if status >= 400:
+                return
+            job = polled
+
+    def topics(self):
+        if self.course_id is None:
+            return
+        for name in TOPICS[:self.args.topics]:
+            status, topic = self.call("POST /api/courses/{id}/topics", "POST", f"/api/courses/{self.course_id}/topics",
+                                      {"name": name})
+            if status >= 400:
+                continue
+            self.topic_ids.append(topic["id"])
+            self.call("GET /api/courses/{id}/topics/{id}/summary/stream", "GET",
+                      f"/api/courses/{self.course_id}/topics/{topic['id']}/summary/stream", stream=True)
+
+    def quizzes(self):
+        for topic_id in self.topic_ids:
+            path = f"/api/courses/{self.course_id}/topics/{topic_id}/quizzes"
+            with ThreadPoolExecutor(self.args.quizzes) as burst:
+                for _ in range(self.args.quizzes):
+                    burst.submit(self.call, "POST /api/courses/{id}/topics/{id}/quizzes", "POST", path)
+            self.call("POST /api/courses/{id}/topics/{id}/quizzes/batch", "POST", path + f"/batch?count={self.args.batch}")
+
+
+def percentile(values, p):
+    ordered = sorted(values)
+    return ordered[min(len(ordered) - 1, max(0, round(p / 100 * len(ordered)) - 1))]
+
+
+def report(stats, sampler, wall_seconds):
+    rows = {}
+    for endpoint, latencies in sorted(stats.latencies.items()):
+        rows[endpoint] = {
+            "requests": len(latencies),
+            "errors": stats.errors[endpoint],
+            "statuses": dict(stats.statuses[endpoint]),
+            "throughput_per_s": round(len(latencies) / wall_seconds, 2),
+            "mean_ms": round(statistics.fmean(latencies) * 1000, 1),
+            "p50_ms": round(percentile(latencies, 50) * 1000, 1),
+            "p90_ms": round(percentile(latencies, 90) * 1000, 1),
+            "p99_ms": round(percentile(latencies, 99) * 1000, 1),
+            "max_ms": round(max(latencies) * 1000, 1),
+        }
+
+    print(f"\n{'endpoint':<52} {'req':>6} {'err':>5} {'req/s':>7} {'p50':>8} {'p90':>8} {'p99':>8} {'max':>8}")
+    for endpoint, row in rows.items():
+        print(f"{endpoint:<52} {row['requests']:>6} {row['errors']:>5} {row['throughput_per_s']:>7} "
+              f"{row['p50_ms']:>8} {row['p90_ms']:>8} {row['p99_ms']:>8} {row['max_ms']:>8}")
+    print(f"\n{'phase':<12} {'peak threads':>12} {'peak heap MB':>13}")
+    for phase, peak in sampler.peaks.items():
+        print(f"{phase:<12} {peak['threads']:>12} {peak['heap_mb']:>13}")
+    return {"wall_seconds": round(wall_seconds, 1), "endpoints": rows, "jvm": dict(sampler.peaks)}
+
+
+def main():
+    parser = argparse.ArgumentParser(description=__doc__, formatter_class=argparse.RawDescriptionHelpFormatter)
+    parser.add_argument("--base-url", default="http://localhost:8080")
+    parser.add_argument("--management-url", default="http://localhost:8081", help="actuator port for the JVM metric scrapes")
+    parser.add_argument("--users", type=int, default=10, help="concurrent virtual users")
+    parser.add_argument("--topics", type=int, default=2, help="topics per user (max %d)" % len(TOPICS))
+    parser.add_argument("--quizzes", type=int, default=5, help="concurrent single-quiz requests per topic")
+    parser.add_argument("--batch", type=int, default=5, help="questions of the batch request per topic")
+    parser.add_argument("--pdf", type=Path, default=DEFAULT_PDF)
+    parser.add_argument("--timeout", type=float, default=120, help="seconds per request and per ingestion job")
+    parser.add_argument("--sample-interval", type=float, default=1.0, help="seconds between JVM metric scrapes")
+    parser.add_argument("--json", type=Path, help="also write the report to this file")
+    args = parser.parse_args()
+    args.pdf_bytes = args.pdf.read_bytes()
+    args.run_id = uuid.uuid4().hex[:6]
+
+    stats = Stats()
+    sampler = JvmSampler(args.management_url, args.sample_interval)
+    sampler.start()
+    users = [VirtualUser(i, args, stats) for i in range(args.users)]
+    started = time.monotonic()
+    with ThreadPoolExecutor(args.users) as pool:
+        # Phases run one after the other so the JVM samples can be attributed to a workload
+        for phase in ("signup", "upload", "topics", "quizzes"):
+            sampler.phase = phase
+            print(f"{phase}...", flush=True)
+            list(pool.map(lambda user: getattr(user, phase)(), users))
+    sampler.stopped.set()
+
+    result = report(stats, sampler, time.monotonic() - started)
+    if args.json:
+        args.json.parent.mkdir(parents=True, exist_ok=True)
+        args.json.write_text(json.dumps(result, indent=2))
+
+
+if __name__ == "__main__":
+    main()
@@ -3,6 +3,7 @@ package ch.frupp.tutorbot.ai;
 import ch.frupp.tutorbot.course.topic.quiz.Quiz;
 import ch.frupp.tutorbot.course.topic.quiz.QuizAiTemplate;
 import dev.langchain4j.invocation.InvocationParameters;
+import dev.langchain4j.service.TokenStream;
 import dev.langchain4j.service.UserMessage;
 import dev.langchain4j.service.V;
 import dev.langchain4j.service.SystemMessage;
@@ -26,6 +27,13 @@ public interface AiAssistant {
     @UserMessage("Summarize the following topic in one concise paragraph: {{topic}}")
     String summarizeTopic(@V("topic") String topic, InvocationParameters parameters);
 
+    // Streaming variant of summarizeTopic, tokens are pushed to the client as they are generated
+    @SystemMessage("You are an expert assistant that writes concise, factual summaries for academic topics. " +
+                   "Produce a single short paragraph, avoid lists or metadata, do not include quotes or markdown. " +
+                   "Keep it clear and relevant to the given topic.")
+    @UserMessage("Summarize the following topic in one concise paragraph: {{topic}}")
+    TokenStream streamTopicSummary(@V("topic") String topic, InvocationParameters parameters);
+
     @SystemMessage("You are an expert question generator for educational content. Produce exactly one multiple-choice question (with 4 answer options) tailored to the provided topic and any contextual information retrieved by the RAG pipeline. The output must be a single valid JSON object that matches the structure of the QuizAiTemplate Java class. Do NOT output any additional text, commentary, or markdown. Keep language concise, factual, and appropriate for a student audience.")
     @UserMessage("""
         Generate exactly one multiple-choice question about the topic: "{{topic}}".
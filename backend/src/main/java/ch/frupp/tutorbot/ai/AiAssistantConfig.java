@@ -1,62 +1,243 @@
 package ch.frupp.tutorbot.ai;
 
+import ch.frupp.tutorbot.ai.bulkhead.BulkheadChatModel;
+import ch.frupp.tutorbot.ai.bulkhead.BulkheadStreamingChatModel;
+import ch.frupp.tutorbot.ai.bulkhead.LlmBulkhead;
+import ch.frupp.tutorbot.ai.bulkhead.LlmPriority;
+import ch.frupp.tutorbot.ai.metrics.ChatModelMetrics;
+import ch.frupp.tutorbot.ai.metrics.MeteredAiService;
+import ch.frupp.tutorbot.ai.metrics.MeteredContentRetriever;
+import ch.frupp.tutorbot.course.material.CourseMaterialRepository;
+import ch.frupp.tutorbot.course.topic.quiz.QuizAiTemplate;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import dev.langchain4j.data.segment.TextSegment;
 import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.StreamingChatModel;
 import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.embedding.onnx.HuggingFaceTokenCountEstimator;
 import dev.langchain4j.model.googleai.GoogleAiGeminiChatModel;
 import dev.langchain4j.model.ollama.OllamaChatModel;
+import dev.langchain4j.model.ollama.OllamaStreamingChatModel;
+import dev.langchain4j.model.scoring.ScoringModel;
+import dev.langchain4j.model.scoring.onnx.OnnxScoringModel;
+import dev.langchain4j.rag.DefaultRetrievalAugmentor;
+import dev.langchain4j.rag.RetrievalAugmentor;
 import dev.langchain4j.rag.content.retriever.ContentRetriever;
 import dev.langchain4j.rag.content.retriever.EmbeddingStoreContentRetriever;
 import dev.langchain4j.service.AiServices;
 import dev.langchain4j.store.embedding.EmbeddingStore;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
-import static dev.langchain4j.store.embedding.filter.MetadataFilterBuilder.metadataKey;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ThreadPoolExecutor;
 
 @Configuration
+@EnableConfigurationProperties({RetrievalProperties.class, RerankProperties.class})
 public class AiAssistantConfig {
 
     Logger logger = LoggerFactory.getLogger(AiAssistantConfig.class);
 
-    @Bean ChatModel chatModel() {
-        return OllamaChatModel.builder()
+    // Shared by both chat models, they talk to the same Ollama server
+    @Bean
+    public LlmBulkhead llmBulkhead(MeterRegistry meterRegistry,
+                                   @Value("${app.llm.bulkhead.max-in-flight:2}") int maxInFlight,
+                                   @Value("${app.llm.bulkhead.max-queued:20}") int maxQueued,
+                                   @Value("${app.llm.bulkhead.interactive-deadline:PT30S}") Duration interactiveDeadline,
+                                   @Value("${app.llm.bulkhead.background-deadline:PT10M}") Duration backgroundDeadline,
+                                   @Value("${app.llm.bulkhead.retry-after:PT15S}") Duration retryAfter) {
+        Map<LlmPriority, Duration> deadlines = new EnumMap<>(LlmPriority.class);
+        deadlines.put(LlmPriority.INTERACTIVE, interactiveDeadline);
+        deadlines.put(LlmPriority.BACKGROUND, backgroundDeadline);
+        return new LlmBulkhead(maxInFlight, maxQueued, deadlines, retryAfter, meterRegistry);
+    }
+
+    // Latency and token usage of every model request
+    @Bean
+    public ChatModelMetrics chatModelMetrics(MeterRegistry meterRegistry) {
+        return new ChatModelMetrics(meterRegistry);
+    }
+
+    // The loadtest profile replaces both models with fakes (see LoadTestConfiguration)
+    @Bean
+    @Profile("!loadtest")
+    ChatModel chatModel(LlmBulkhead llmBulkhead, ChatModelMetrics chatModelMetrics) {
+        return new BulkheadChatModel(OllamaChatModel.builder()
                 .modelName("gemma3:12b")
                 .baseUrl("http://localhost:11434")
                 .logger(logger)
                 .logResponses(true)
                 .logRequests(true)
-                .build();
+                .listeners(List.of(chatModelMetrics))
+                .build(), llmBulkhead);
+
+    }
+
+    // Used by the TokenStream methods of AiAssistant
+    @Bean
+    @Profile("!loadtest")
+    StreamingChatModel streamingChatModel(LlmBulkhead llmBulkhead, ChatModelMetrics chatModelMetrics) {
+        return new BulkheadStreamingChatModel(OllamaStreamingChatModel.builder()
+                .modelName("gemma3:12b")
+                .baseUrl("http://localhost:11434")
+                .logger(logger)
+                .logResponses(true)
+                .logRequests(true)
+                .listeners(List.of(chatModelMetrics))
+                .build(), llmBulkhead);
+    }
+
+    // Query embeddings for retrieval are cached: the queries are mostly topic names that repeat constantly
+    @Bean
+    public CachingEmbeddingModel queryEmbeddingModel(EmbeddingModel embeddingModel, MeterRegistry meterRegistry,
+                                                     @Value("${app.rag.query-cache.max-bytes:16777216}") long maxBytes,
+                                                     @Value("${app.rag.query-cache.ttl:PT6H}") Duration ttl) {
+        return new CachingEmbeddingModel(embeddingModel, maxBytes, ttl, meterRegistry);
+    }
+
+    // Runs the keyword half of hybrid retrieval next to the vector search of the calling thread
+    @Bean
+    public ThreadPoolTaskExecutor keywordSearchExecutor(HybridRetrievalProperties hybridProperties) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(hybridProperties.workers());
+        executor.setMaxPoolSize(hybridProperties.workers());
+        executor.setQueueCapacity(64);
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setThreadNamePrefix("keyword-search-");
+        return executor;
+    }
 
+    /**
+     * Cross-encoder of the reranking stage (e.g. an ONNX export of cross-encoder/ms-marco-MiniLM-L-6-v2) on the ONNX
+     * runtime of the embedding model, or null when reranking is off or its files are missing. Decided once here, the
+     * retriever's over-fetch and the augmentor's aggregator both depend on it.
+     */
+    @Bean
+    public ScoringModel rerankScoringModel(RerankProperties rerank) {
+        if (!rerank.enabled()) {
+            return null;
+        }
+        if (!isFile(rerank.modelPath()) || !isFile(rerank.tokenizerPath())) {
+            logger.warn("Reranking is enabled but the cross-encoder files {} and {} are missing, retrieved segments are used as they are",
+                    rerank.modelPath(), rerank.tokenizerPath());
+            return null;
+        }
+        logger.info("Reranking retrieved segments with {} (token budget {})", rerank.modelPath(), rerank.tokenBudget());
+        return new OnnxScoringModel(rerank.modelPath(), rerank.tokenizerPath());
     }
 
     @Bean
-    public ContentRetriever contentRetriever(EmbeddingStore<TextSegment> embeddingStore, EmbeddingModel embeddingModel) {
-        // This retriever will find the N most relevant text segments from your store
-        // Pass an explicit EmbeddingModel to avoid ambiguity when multiple models exist on the classpath.
+    public ContentRetriever contentRetriever(EmbeddingStore<TextSegment> embeddingStore, CachingEmbeddingModel queryEmbeddingModel,
+                                             MeterRegistry meterRegistry, JdbcTemplate jdbcTemplate, ObjectMapper objectMapper,
+                                             @Qualifier("keywordSearchExecutor") ThreadPoolTaskExecutor keywordSearchExecutor,
+                                             HybridRetrievalProperties hybridProperties, RetrievalProperties retrievalProperties,
+                                             RerankProperties rerankProperties, Optional<ScoringModel> rerankScoringModel) {
+        // With reranking the retriever over-fetches and the aggregator of the retrieval augmentor picks the segments
+        int results = rerankScoringModel.isPresent() ? rerankProperties.candidates() : retrievalProperties.maxResults();
+        if (!hybridProperties.enabled()) {
+            return new MeteredContentRetriever(vectorRetriever(embeddingStore, queryEmbeddingModel, results), meterRegistry);
+        }
+        // Both searches return a longer candidate list, the fused ranking is cut to the result count
+        int candidates = hybridProperties.candidates();
+        return new MeteredContentRetriever(new HybridContentRetriever(
+                vectorRetriever(embeddingStore, queryEmbeddingModel, Math.max(candidates, results)),
+                new PgFullTextContentRetriever(jdbcTemplate, objectMapper, RAGConfiguration.EMBEDDING_TABLE, hybridProperties.textSearchConfig(), Math.max(candidates, results)),
+                keywordSearchExecutor, results, hybridProperties.rrfK()), meterRegistry);
+    }
+
+    /**
+     * Retrieval of the AI services and of quiz batches. Without the cross-encoder the retrieved segments are passed
+     * on unchanged.
+     */
+    @Bean
+    public RetrievalAugmentor retrievalAugmentor(ContentRetriever contentRetriever, MeterRegistry meterRegistry,
+                                                 RetrievalProperties retrievalProperties, RerankProperties rerankProperties,
+                                                 Optional<ScoringModel> rerankScoringModel) {
+        DefaultRetrievalAugmentor.DefaultRetrievalAugmentorBuilder builder = DefaultRetrievalAugmentor.builder()
+                .contentRetriever(contentRetriever);
+        if (rerankScoringModel.isEmpty()) {
+            return builder.build();
+        }
+        // The token count of the MiniLM tokenizer is close enough to Gemma's for a budget
+        return builder
+                .contentAggregator(new RerankingContentAggregator(rerankScoringModel.get(), new HuggingFaceTokenCountEstimator(),
+                        retrievalProperties.maxResults(), rerankProperties.tokenBudget(), rerankProperties.duplicateThreshold(),
+                        meterRegistry))
+                .build();
+    }
+
+    private static boolean isFile(String path) {
+        return path != null && !path.isBlank() && Files.isRegularFile(Path.of(path));
+    }
+
+    // Pass an explicit EmbeddingModel to avoid ambiguity when multiple models exist on the classpath.
+    public static EmbeddingStoreContentRetriever vectorRetriever(EmbeddingStore<TextSegment> embeddingStore, EmbeddingModel embeddingModel,
+                                                                 int maxResults) {
         return EmbeddingStoreContentRetriever.builder()
                 .embeddingStore(embeddingStore)
                 .embeddingModel(embeddingModel)
-                .maxResults(5) // Retrieve, for example, 5 most relevant segments
+                .maxResults(maxResults)
 //                .minScore(0.75)
-                .dynamicFilter(query -> {
-                    // TODO: Filter by course as well
-                    String userId = query.metadata().invocationParameters().get("userid");
-                    return metadataKey("userid").isEqualTo(userId);
-                })
+                .dynamicFilter(RetrievalQueries::ownerFilter)
                 .build();
     }
 
     // Create an AiAssistant only when a ChatModel is available AND there isn't already
     // an AiAssistant bean (the library may auto-register one via @AiService).
     @Bean
-    public AiAssistant aiAssistant(ChatModel chatModel, ContentRetriever contentRetriever) {
-        return AiServices.builder(AiAssistant.class)
+    public AiAssistant aiAssistant(ChatModel chatModel, StreamingChatModel streamingChatModel, RetrievalAugmentor retrievalAugmentor,
+                                   CourseMaterialRepository courseMaterialRepository,
+                                   CachingEmbeddingModel queryEmbeddingModel, MeterRegistry meterRegistry,
+                                   @Value("${app.ai.response-cache.enabled:true}") boolean responseCacheEnabled,
+                                   @Value("${app.ai.response-cache.scope:course}") String scope,
+                                   @Value("${app.ai.response-cache.similarity-threshold:0.92}") double similarityThreshold,
+                                   @Value("${app.ai.response-cache.max-entries:2000}") long maxEntries,
+                                   @Value("${app.ai.response-cache.summary-ttl:PT24H}") Duration summaryTtl,
+                                   @Value("${app.ai.response-cache.quiz.enabled:false}") boolean quizCacheEnabled,
+                                   @Value("${app.ai.response-cache.quiz-ttl:PT1H}") Duration quizTtl,
+                                   @Value("${app.ai.response-cache.material-version-ttl:PT10S}") Duration materialVersionTtl) {
+        // Metered inside the cache, so only calls that reach the model are timed
+        AiAssistant assistant = MeteredAiService.wrap(AiAssistant.class, AiServices.builder(AiAssistant.class)
                 .chatModel(chatModel) // Autowired from application.properties
-                .contentRetriever(contentRetriever)
+                .streamingChatModel(streamingChatModel)
+                .retrievalAugmentor(retrievalAugmentor)
                 // Optional: .chatMemory(MessageWindowChatMemory.withMaxMessages(10)) for conversational context
-                .build();
+                .build(), meterRegistry);
+        if (!responseCacheEnabled) {
+            return assistant;
+        }
+
+        // Students of a course keep asking for the same topics, answer near-identical prompts from the cache
+        SemanticResponseCache<QuizAiTemplate> quizCache = quizCacheEnabled
+                ? new SemanticResponseCache<>("generateQuizQuestions", maxEntries, quizTtl, similarityThreshold, meterRegistry)
+                : null;
+        return new CachingAiAssistant(assistant, courseMaterialRepository, queryEmbeddingModel,
+                CachingAiAssistant.Scope.valueOf(scope.trim().toUpperCase(Locale.ROOT)),
+                new SemanticResponseCache<>("summarizeTopic", maxEntries, summaryTtl, similarityThreshold, meterRegistry),
+                quizCache, materialVersionTtl);
+    }
+
+    // No content retriever: QuizService retrieves the context once per batch and passes it in
+    @Bean
+    public QuizBatchAssistant quizBatchAssistant(ChatModel chatModel, MeterRegistry meterRegistry) {
+        return MeteredAiService.wrap(QuizBatchAssistant.class, AiServices.builder(QuizBatchAssistant.class)
+                .chatModel(chatModel)
+                .build(), meterRegistry);
     }
 }
@@ -0,0 +1,252 @@
+package ch.frupp.tutorbot.ai;
+
+import ch.frupp.tutorbot.course.CollectionVersion;
+import ch.frupp.tutorbot.course.material.CourseMaterialRepository;
+import ch.frupp.tutorbot.course.topic.quiz.Quiz;
+import ch.frupp.tutorbot.course.topic.quiz.QuizAiTemplate;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.invocation.InvocationParameters;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.rag.content.Content;
+import dev.langchain4j.service.TokenStream;
+import dev.langchain4j.service.tool.ToolExecution;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * AiAssistant decorator that answers repeated and near-identical requests from a {@link SemanticResponseCache}.
+ * A cached response is only reused within the same scope (user, or user and course) and for the same version of
+ * the course material: count, highest id and latest update of the materials the context is retrieved from, read
+ * with one aggregate query, so new, re-indexed or deleted material automatically yields new cache entries. The
+ * version itself is kept for {@code versionTtl}, so a cache hit needs no database round trip and material changes
+ * show up after at most that long. Quiz generation is not cached unless a quiz cache is configured, students expect
+ * a different question on every request.
+ */
+@Slf4j
+public class CachingAiAssistant implements AiAssistant {
+
+    public enum Scope { USER, COURSE }
+
+    private static final String SUMMARY = "summarizeTopic";
+    private static final String QUIZ = "generateQuizQuestions";
+
+    private final AiAssistant delegate;
+    private final CourseMaterialRepository courseMaterialRepository;
+    private final EmbeddingModel embeddingModel;
+    private final Scope scope;
+    private final SemanticResponseCache<String> summaries;
+    private final SemanticResponseCache<QuizAiTemplate> quizzes;
+    // Material version per user or user and course
+    private final Cache<String, CollectionVersion> materialVersions;
+
+    public CachingAiAssistant(AiAssistant delegate, CourseMaterialRepository courseMaterialRepository, EmbeddingModel embeddingModel, Scope scope,
+                              SemanticResponseCache<String> summaries, SemanticResponseCache<QuizAiTemplate> quizzes, Duration versionTtl) {
+        this.delegate = delegate;
+        this.courseMaterialRepository = courseMaterialRepository;
+        this.embeddingModel = embeddingModel;
+        this.scope = scope;
+        this.summaries = summaries;
+        this.quizzes = quizzes;
+        this.materialVersions = Caffeine.newBuilder()
+                .maximumSize(10_000)
+                .expireAfterWrite(versionTtl)
+                .build();
+    }
+
+    @Override
+    public Quiz generateQuiz(String chapterText) {
+        return delegate.generateQuiz(chapterText);
+    }
+
+    @Override
+    public String summarizeTopic(String topic, InvocationParameters parameters) {
+        String bucket = bucketKey(SUMMARY, parameters);
+        if (bucket == null) {
+            return delegate.summarizeTopic(topic, parameters);
+        }
+        Embedding prompt = embeddingModel.embed(topic).content();
+        Optional<String> cached = summaries.get(bucket, prompt);
+        if (cached.isPresent()) {
+            log.debug("Summary of '{}' served from the response cache", topic);
+            return cached.get();
+        }
+        long start = System.nanoTime();
+        String summary = delegate.summarizeTopic(topic, parameters);
+        summaries.put(bucket, prompt, summary, Duration.ofNanos(System.nanoTime() - start));
+        return summary;
+    }
+
+    // Shares the cache with summarizeTopic: a hit is replayed as a single token
+    @Override
+    public TokenStream streamTopicSummary(String topic, InvocationParameters parameters) {
+        String bucket = bucketKey(SUMMARY, parameters);
+        if (bucket == null) {
+            return delegate.streamTopicSummary(topic, parameters);
+        }
+        Embedding prompt = embeddingModel.embed(topic).content();
+        Optional<String> cached = summaries.get(bucket, prompt);
+        if (cached.isPresent()) {
+            log.debug("Summary stream of '{}' served from the response cache", topic);
+            return new ReplayTokenStream(cached.get());
+        }
+        long start = System.nanoTime();
+        return new CapturingTokenStream(delegate.streamTopicSummary(topic, parameters), response -> {
+            if (response.aiMessage() != null && response.aiMessage().text() != null) {
+                summaries.put(bucket, prompt, response.aiMessage().text(), Duration.ofNanos(System.nanoTime() - start));
+            }
+        });
+    }
+
+    @Override
+    public QuizAiTemplate generateQuizQuestions(String topic, InvocationParameters parameters) {
+        String bucket = quizzes == null ? null : bucketKey(QUIZ, parameters);
+        if (bucket == null) {
+            return delegate.generateQuizQuestions(topic, parameters);
+        }
+        Embedding prompt = embeddingModel.embed(topic).content();
+        Optional<QuizAiTemplate> cached = quizzes.get(bucket, prompt);
+        if (cached.isPresent()) {
+            return cached.get();
+        }
+        long start = System.nanoTime();
+        QuizAiTemplate quiz = delegate.generateQuizQuestions(topic, parameters);
+        quizzes.put(bucket, prompt, quiz, Duration.ofNanos(System.nanoTime() - start));
+        return quiz;
+    }
+
+    /**
+     * Method, scope and material version; null when the call carries no user and can't be scoped.
+     */
+    private String bucketKey(String method, InvocationParameters parameters) {
+        String userId = parameters == null ? null : parameters.get("userid");
+        if (userId == null) return null;
+        String courseId = parameters.get("courseid");
+        String scopeKey = scope == Scope.COURSE && courseId != null ? "u" + userId + ":c" + courseId : "u" + userId;
+
+        // Retrieval is limited to the course if there is one, otherwise it spans all of the user's materials
+        CollectionVersion materials = materialVersions.get(courseId != null ? userId + ':' + courseId : userId, key -> courseId != null
+                ? courseMaterialRepository.findVersionByCourseId(Integer.valueOf(courseId), Integer.valueOf(userId))
+                : courseMaterialRepository.findVersionByUserId(Integer.valueOf(userId)));
+        return method + ':' + scopeKey + ':' + materials.count() + '-' + materials.maxId() + '-' + materials.lastModified();
+    }
+
+    /**
+     * Plays a cached summary back through the TokenStream callbacks.
+     */
+    private static final class ReplayTokenStream implements TokenStream {
+
+        private final String text;
+        private Consumer<String> partialResponseHandler = token -> {};
+        private Consumer<ChatResponse> completeResponseHandler = response -> {};
+
+        private ReplayTokenStream(String text) {
+            this.text = text;
+        }
+
+        @Override
+        public TokenStream onPartialResponse(Consumer<String> handler) {
+            this.partialResponseHandler = handler;
+            return this;
+        }
+
+        @Override
+        public TokenStream onRetrieved(Consumer<List<Content>> handler) {
+            return this;
+        }
+
+        @Override
+        public TokenStream onToolExecuted(Consumer<ToolExecution> handler) {
+            return this;
+        }
+
+        @Override
+        public TokenStream onCompleteResponse(Consumer<ChatResponse> handler) {
+            this.completeResponseHandler = handler;
+            return this;
+        }
+
+        @Override
+        public TokenStream onError(Consumer<Throwable> handler) {
+            return this;
+        }
+
+        @Override
+        public TokenStream ignoreErrors() {
+            return this;
+        }
+
+        @Override
+        public void start() {
+            partialResponseHandler.accept(text);
+            completeResponseHandler.accept(ChatResponse.builder().aiMessage(AiMessage.from(text)).build());
+        }
+    }
+
+    /**
+     * Forwards to the model's TokenStream and hands the complete response to the cache.
+     */
+    private static final class CapturingTokenStream implements TokenStream {
+
+        private final TokenStream delegate;
+        private final Consumer<ChatResponse> onComplete;
+
+        private CapturingTokenStream(TokenStream delegate, Consumer<ChatResponse> onComplete) {
+            this.delegate = delegate;
+            this.onComplete = onComplete;
+            // Caches the response even if the caller registers no completion handler
+            delegate.onCompleteResponse(onComplete);
+        }
+
+        @Override
+        public TokenStream onPartialResponse(Consumer<String> handler) {
+            delegate.onPartialResponse(handler);
+            return this;
+        }
+
+        @Override
+        public TokenStream onRetrieved(Consumer<List<Content>> handler) {
+            delegate.onRetrieved(handler);
+            return this;
+        }
+
+        @Override
+        public TokenStream onToolExecuted(Consumer<ToolExecution> handler) {
+            delegate.onToolExecuted(handler);
+            return this;
+        }
+
+        @Override
+        public TokenStream onCompleteResponse(Consumer<ChatResponse> handler) {
+            delegate.onCompleteResponse(response -> {
+                onComplete.accept(response);
+                handler.accept(response);
+            });
+            return this;
+        }
+
+        @Override
+        public TokenStream onError(Consumer<Throwable> handler) {
+            delegate.onError(handler);
+            return this;
+        }
+
+        @Override
+        public TokenStream ignoreErrors() {
+            delegate.ignoreErrors();
+            return this;
+        }
+
+        @Override
+        public void start() {
+            delegate.start();
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package ch.frupp.tutorbot.ai;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * EmbeddingModel decorator that caches the embeddings of retrieval queries. Queries are mostly topic
+ * names that repeat constantly, so re-running the ONNX model for them is wasted work.
+ * Entries are keyed by model name and normalized query text, weighed by their approximate size in
+ * bytes and expire after a TTL. Hit/miss metrics are published as {@code cache.*{cache=query-embeddings}}.
+ * Batch calls (ingestion) are passed through uncached.
+ */
+public class CachingEmbeddingModel implements EmbeddingModel {
+
+    public static final String CACHE_NAME = "query-embeddings";
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    // Rough per-entry overhead of the cache node, key object and embedding wrapper
+    private static final int ENTRY_OVERHEAD_BYTES = 96;
+
+    private final EmbeddingModel delegate;
+    private final String modelId;
+    private final Cache<String, Embedding> cache;
+
+    public CachingEmbeddingModel(EmbeddingModel delegate, long maxBytes, Duration ttl, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.modelId = delegate.modelName() != null ? delegate.modelName() : delegate.getClass().getSimpleName();
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((String key, Embedding embedding) -> ENTRY_OVERHEAD_BYTES + key.length() * 2 + embedding.dimension() * Float.BYTES)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+    }
+
+    @Override
+    public Response<Embedding> embed(String text) {
+        return Response.from(cache.get(cacheKey(text), key -> delegate.embed(text).content()));
+    }
+
+    @Override
+    public Response<Embedding> embed(TextSegment textSegment) {
+        return embed(textSegment.text());
+    }
+
+    @Override
+    public Response<List<Embedding>> embedAll(List<TextSegment> textSegments) {
+        return delegate.embedAll(textSegments);
+    }
+
+    @Override
+    public int dimension() {
+        return delegate.dimension();
+    }
+
+    @Override
+    public String modelName() {
+        return delegate.modelName();
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    // all-MiniLM-L6-v2 is an uncased model, so case and whitespace differences yield the same embedding
+    private String cacheKey(String text) {
+        String normalized = WHITESPACE.matcher(text.strip()).replaceAll(" ").toLowerCase(Locale.ROOT);
+        return modelId + ':' + normalized;
+    }
+}
@@ -0,0 +1,17 @@
+package ch.frupp.tutorbot.ai;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * In-process HNSW cache of the active courses' vectors, {@code app.rag.hot-cache.*}.
+ */
+@ConfigurationProperties("app.rag.hot-cache")
+public record HotCacheProperties(@DefaultValue("true") boolean enabled,
+                                 @DefaultValue("268435456") long maxBytes,
+                                 @DefaultValue Hnsw hnsw,
+                                 @DefaultValue("2000") int exactSearchLimit) {
+
+    public record Hnsw(@DefaultValue("16") int m, @DefaultValue("64") int efConstruction, @DefaultValue("64") int efSearch) {
+    }
+}
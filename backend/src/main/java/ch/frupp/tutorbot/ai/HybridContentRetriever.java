@@ -0,0 +1,76 @@
+package ch.frupp.tutorbot.ai;
+
+import dev.langchain4j.rag.content.Content;
+import dev.langchain4j.rag.content.ContentMetadata;
+import dev.langchain4j.rag.content.retriever.ContentRetriever;
+import dev.langchain4j.rag.query.Query;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Runs the vector and the keyword retriever in parallel and merges their rankings with reciprocal-rank fusion:
+ * a segment scores {@code sum(1 / (k + rank))} over the lists it appears in. Segments both searches agree on
+ * come first, and an exact keyword hit is kept even when its embedding ranks it low. Scores of the two searches
+ * aren't comparable, only ranks are used; the fused contents keep the vector similarity as score where there is one.
+ * A failing keyword search falls back to the vector results.
+ */
+@Slf4j
+public class HybridContentRetriever implements ContentRetriever {
+
+    private final ContentRetriever vectorRetriever;
+    private final ContentRetriever keywordRetriever;
+    private final Executor executor;
+    private final int maxResults;
+    private final int rrfK;
+
+    public HybridContentRetriever(ContentRetriever vectorRetriever, ContentRetriever keywordRetriever, Executor executor,
+                                  int maxResults, int rrfK) {
+        this.vectorRetriever = vectorRetriever;
+        this.keywordRetriever = keywordRetriever;
+        this.executor = executor;
+        this.maxResults = maxResults;
+        this.rrfK = rrfK;
+    }
+
+    @Override
+    public List<Content> retrieve(Query query) {
+        CompletableFuture<List<Content>> keyword = CompletableFuture
+                .supplyAsync(() -> keywordRetriever.retrieve(query), executor)
+                .exceptionally(e -> {
+                    log.warn("Keyword retrieval failed, using the vector results only", e);
+                    return List.of();
+                });
+        List<Content> vector = vectorRetriever.retrieve(query);
+        return fuse(List.of(vector, keyword.join()), maxResults, rrfK);
+    }
+
+    static List<Content> fuse(List<List<Content>> rankings, int maxResults, int k) {
+        Map<String, Content> contents = new LinkedHashMap<>();
+        Map<String, Double> scores = new LinkedHashMap<>();
+        for (List<Content> ranking : rankings) {
+            for (int rank = 0; rank < ranking.size(); rank++) {
+                Content content = ranking.get(rank);
+                String key = key(content);
+                // The first list wins, so vector contents keep their similarity score
+                contents.putIfAbsent(key, content);
+                scores.merge(key, 1d / (k + rank + 1), Double::sum);
+            }
+        }
+        List<String> keys = new ArrayList<>(scores.keySet());
+        // Stable sort: ties keep the order of the first list
+        keys.sort(Comparator.comparingDouble((String key) -> scores.get(key)).reversed());
+        return keys.stream().limit(maxResults).map(contents::get).toList();
+    }
+
+    private static String key(Content content) {
+        Object id = content.metadata().get(ContentMetadata.EMBEDDING_ID);
+        return id != null ? id.toString() : content.textSegment().text();
+    }
+}
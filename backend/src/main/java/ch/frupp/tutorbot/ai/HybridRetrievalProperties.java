@@ -0,0 +1,15 @@
+package ch.frupp.tutorbot.ai;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Full-text search next to the vector search and the reciprocal-rank fusion of both, {@code app.rag.hybrid.*}.
+ */
+@ConfigurationProperties("app.rag.hybrid")
+public record HybridRetrievalProperties(@DefaultValue("true") boolean enabled,
+                                        @DefaultValue("20") int candidates,
+                                        @DefaultValue("60") int rrfK,
+                                        @DefaultValue("simple") String textSearchConfig,
+                                        @DefaultValue("4") int workers) {
+}
@@ -0,0 +1,74 @@
+package ch.frupp.tutorbot.ai;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.invocation.InvocationParameters;
+import dev.langchain4j.rag.content.Content;
+import dev.langchain4j.rag.content.ContentMetadata;
+import dev.langchain4j.rag.content.retriever.ContentRetriever;
+import dev.langchain4j.rag.query.Query;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Keyword search over the segments of the pgvector table with Postgres full-text search. Finds exact technical
+ * terms ("Bellman-Ford", "Riemann integral") that a sentence embedding may rank below loosely related passages.
+ * All terms of the query have to occur in a segment, ranked by cover density; searches are scoped by the same
+ * {@code userid}/{@code courseid} invocation parameters as the vector search and return nothing without a user.
+ * The GIN expression index is created by {@link PgVectorIndexes#ensureFullTextIndex}.
+ */
+public class PgFullTextContentRetriever implements ContentRetriever {
+
+    private static final Pattern CONFIG_NAME = Pattern.compile("[a-z_][a-z0-9_]*");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final int maxResults;
+    private final String userSql;
+    private final String courseSql;
+
+    public PgFullTextContentRetriever(JdbcTemplate jdbcTemplate, ObjectMapper objectMapper, String table, String textSearchConfig, int maxResults) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.maxResults = maxResults;
+        String tsvector = tsvectorExpression(textSearchConfig);
+        String select = "SELECT embedding_id, text, metadata::text, ts_rank_cd(%s, q) AS rank FROM %s, websearch_to_tsquery('%s', ?) q WHERE %s @@ q AND metadata->>'userid' = ?"
+                .formatted(tsvector, table, textSearchConfig, tsvector);
+        this.userSql = select + " ORDER BY rank DESC LIMIT ?";
+        this.courseSql = select + " AND metadata->>'courseid' = ? ORDER BY rank DESC LIMIT ?";
+    }
+
+    /**
+     * The index is only used when the query repeats its expression exactly, so both are built here.
+     */
+    public static String tsvectorExpression(String textSearchConfig) {
+        if (!CONFIG_NAME.matcher(textSearchConfig).matches()) {
+            throw new IllegalArgumentException("Invalid text search configuration: " + textSearchConfig);
+        }
+        return "to_tsvector('%s', text)".formatted(textSearchConfig);
+    }
+
+    @Override
+    public List<Content> retrieve(Query query) {
+        InvocationParameters parameters = query.metadata() == null ? null : query.metadata().invocationParameters();
+        String userId = parameters == null ? null : parameters.get("userid");
+        if (userId == null) return List.of();
+        String courseId = parameters.get("courseid");
+        String keywords = RetrievalQueries.keywords(query);
+        if (keywords == null || keywords.isBlank()) return List.of();
+
+        Object[] args = courseId == null
+                ? new Object[]{keywords, userId, maxResults}
+                : new Object[]{keywords, userId, courseId, maxResults};
+        List<Content> contents = new ArrayList<>();
+        jdbcTemplate.query(courseId == null ? userSql : courseSql, rs -> {
+            TextSegment segment = TextSegment.from(rs.getString("text"), PgVectors.metadata(objectMapper, rs.getString("metadata")));
+            contents.add(Content.from(segment, Map.of(ContentMetadata.EMBEDDING_ID, rs.getString("embedding_id"))));
+        }, args);
+        return contents;
+    }
+}
@@ -0,0 +1,85 @@
+package ch.frupp.tutorbot.ai;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Creates the indexes of a pgvector embedding table: the configured ANN index on the embedding column,
+ * indexes on the owner metadata that every retrieval filters on and the full-text index of hybrid retrieval. Stale ANN indexes left behind by
+ * a previous configuration are dropped.
+ */
+@Slf4j
+public final class PgVectorIndexes {
+
+    private PgVectorIndexes() {
+    }
+
+    public static void ensure(DataSource dataSource, String table, VectorIndexSettings settings) {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        ensureAnnIndex(jdbcTemplate, table, settings);
+        ensureMetadataIndexes(jdbcTemplate, table);
+    }
+
+    /**
+     * GIN index over the segment text for {@link PgFullTextContentRetriever}. An expression index instead of a
+     * stored tsvector column, so enabling it doesn't rewrite the table. Indexes of another configuration are dropped.
+     */
+    public static void ensureFullTextIndex(DataSource dataSource, String table, String textSearchConfig) {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        String wanted = "%s_text_%s_fts_idx".formatted(table, textSearchConfig);
+        List<String> ftsIndexes = jdbcTemplate.queryForList(
+                "SELECT indexname FROM pg_indexes WHERE tablename = ? AND indexname LIKE ?",
+                String.class, table, table + "\\_text\\_%\\_fts\\_idx");
+        for (String index : ftsIndexes) {
+            if (!Objects.equals(index, wanted)) {
+                log.info("Dropping full-text index {} which no longer matches the configuration", index);
+                jdbcTemplate.execute("DROP INDEX IF EXISTS " + index);
+            }
+        }
+        if (ftsIndexes.contains(wanted)) return;
+
+        log.info("Creating full-text index {} on {}", wanted, table);
+        long start = System.nanoTime();
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS %s ON %s USING gin (%s)"
+                .formatted(wanted, table, PgFullTextContentRetriever.tsvectorExpression(textSearchConfig)));
+        log.info("Created index {} in {} ms", wanted, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private static void ensureAnnIndex(JdbcTemplate jdbcTemplate, String table, VectorIndexSettings settings) {
+        String wanted = settings.indexName(table);
+        List<String> annIndexes = jdbcTemplate.queryForList(
+                "SELECT indexname FROM pg_indexes WHERE tablename = ? AND (indexdef LIKE '%USING hnsw%' OR indexdef LIKE '%USING ivfflat%')",
+                String.class, table);
+        for (String index : annIndexes) {
+            if (!Objects.equals(index, wanted)) {
+                log.info("Dropping ANN index {} which no longer matches the configuration", index);
+                jdbcTemplate.execute("DROP INDEX IF EXISTS " + index);
+            }
+        }
+        if (wanted == null || annIndexes.contains(wanted)) return;
+
+        log.info("Creating {} index {} on {}, this may take a while on a large table", settings.type(), wanted, table);
+        long start = System.nanoTime();
+        jdbcTemplate.execute(settings.createIndexSql(table));
+        log.info("Created index {} in {} ms", wanted, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private static void ensureMetadataIndexes(JdbcTemplate jdbcTemplate, String table) {
+        // Matches the "(metadata->>'userid')" expressions generated by the store's JSON filter mapper
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS %s_owner_idx ON %s ((metadata->>'userid'), (metadata->>'courseid'))"
+                .formatted(table, table));
+
+        // GIN needs jsonb; the default COMBINED_JSON storage uses a plain json column, where the B-tree above has to do
+        String metadataType = jdbcTemplate.queryForObject(
+                "SELECT data_type FROM information_schema.columns WHERE table_name = ? AND column_name = 'metadata'",
+                String.class, table);
+        if ("jsonb".equals(metadataType)) {
+            jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS %s_metadata_gin_idx ON %s USING gin (metadata jsonb_path_ops)"
+                    .formatted(table, table));
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package ch.frupp.tutorbot.ai;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.langchain4j.data.document.Metadata;
+
+import java.util.Map;
+
+/**
+ * Conversions for reading the pgvector table with plain JDBC. Vectors travel in pgvector's text format
+ * ({@code [0.1,-0.2,...]}) because the {@code PGvector} type needs the JDBC driver, which is only a runtime dependency.
+ */
+public final class PgVectors {
+
+    private static final TypeReference<Map<String, Object>> METADATA_TYPE = new TypeReference<>() {};
+
+    private PgVectors() {
+    }
+
+    public static float[] parse(String text) {
+        String values = text.substring(text.indexOf('[') + 1, text.lastIndexOf(']'));
+        if (values.isBlank()) return new float[0];
+        String[] parts = values.split(",");
+        float[] vector = new float[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            vector[i] = Float.parseFloat(parts[i].trim());
+        }
+        return vector;
+    }
+
+    public static String format(float[] vector) {
+        StringBuilder text = new StringBuilder(vector.length * 12).append('[');
+        for (int i = 0; i < vector.length; i++) {
+            if (i > 0) text.append(',');
+            text.append(vector[i]);
+        }
+        return text.append(']').toString();
+    }
+
+    // The metadata column as written by PgVectorEmbeddingStore (json or jsonb, read as text)
+    public static Metadata metadata(ObjectMapper objectMapper, String json) {
+        if (json == null) return new Metadata();
+        try {
+            return Metadata.from(objectMapper.readValue(json, METADATA_TYPE));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unreadable segment metadata", e);
+        }
+    }
+}
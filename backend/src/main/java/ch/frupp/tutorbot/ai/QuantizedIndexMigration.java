@@ -0,0 +1,81 @@
+package ch.frupp.tutorbot.ai;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Builds the ANN index of another {@code app.rag.storage.quantization} over the existing rows of the embedding table
+ * with {@code CREATE INDEX CONCURRENTLY}, so a running instance keeps serving searches and ingesting while it is
+ * built. Run with {@code --spring.profiles.active=rag-quantization-migration --app.rag.storage.migrate-to=binary}
+ * (or halfvec, none); the application exits when the index is built. Afterwards set the quantization to the same value
+ * and restart: startup finds the new index and drops the old one.
+ */
+@Slf4j
+@Component
+@Profile("rag-quantization-migration")
+public class QuantizedIndexMigration implements ApplicationRunner {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ConfigurableApplicationContext context;
+    private final VectorIndexProperties indexProperties;
+    private final VectorSearchProperties searchProperties;
+    private final VectorStorageProperties storageProperties;
+
+    public QuantizedIndexMigration(JdbcTemplate jdbcTemplate, ConfigurableApplicationContext context,
+                                   VectorIndexProperties indexProperties, VectorSearchProperties searchProperties,
+                                   VectorStorageProperties storageProperties) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.context = context;
+        this.indexProperties = indexProperties;
+        this.searchProperties = searchProperties;
+        this.storageProperties = storageProperties;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (storageProperties.migrateTo() == null) {
+            throw new IllegalStateException("app.rag.storage.migrate-to is not set");
+        }
+        String table = RAGConfiguration.EMBEDDING_TABLE;
+        Integer dimension = jdbcTemplate.queryForObject(
+                "SELECT atttypmod FROM pg_attribute WHERE attrelid = ?::regclass AND attname = 'embedding'", Integer.class, table);
+        VectorIndexSettings target = VectorIndexSettings.of(indexProperties, searchProperties, storageProperties.migrateTo(), dimension);
+        String index = target.indexName(table);
+        if (index == null) {
+            throw new IllegalStateException("app.rag.index.type is none, there is no index to build");
+        }
+
+        // An interrupted concurrent build leaves an invalid index behind that IF NOT EXISTS would keep
+        List<Boolean> valid = jdbcTemplate.queryForList(
+                "SELECT i.indisvalid FROM pg_index i JOIN pg_class c ON c.oid = i.indexrelid WHERE c.relname = ?", Boolean.class, index);
+        if (valid.contains(Boolean.FALSE)) {
+            log.info("Dropping invalid index {} left by an interrupted build", index);
+            jdbcTemplate.execute("DROP INDEX CONCURRENTLY IF EXISTS " + index);
+        }
+
+        Long rows = jdbcTemplate.queryForObject("SELECT count(*) FROM " + table, Long.class);
+        log.info("Quantization migration: building {} over {} segments of {}, this may take a while", index, rows, table);
+        long start = System.nanoTime();
+        jdbcTemplate.execute(target.createIndexSql(table, true));
+        jdbcTemplate.execute("ANALYZE " + table);
+        long buildMillis = (System.nanoTime() - start) / 1_000_000;
+
+        jdbcTemplate.query("""
+                SELECT c.relname, pg_relation_size(c.oid) AS bytes FROM pg_index i JOIN pg_class c ON c.oid = i.indexrelid
+                WHERE i.indrelid = ?::regclass AND pg_get_indexdef(c.oid) ~ 'USING (hnsw|ivfflat)'""", rs -> {
+            log.info("ANN index {}: {} MB", rs.getString("relname"), rs.getLong("bytes") / (1024 * 1024));
+        }, table);
+        log.info("Built {} in {} ms; set app.rag.storage.quantization={} and restart to switch to it and drop the previous index",
+                index, buildMillis, target.quantization().name().toLowerCase(Locale.ROOT));
+        System.exit(SpringApplication.exit(context, () -> 0));
+    }
+}
@@ -0,0 +1,191 @@
+package ch.frupp.tutorbot.ai;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingSearchResult;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import dev.langchain4j.store.embedding.filter.Filter;
+import dev.langchain4j.store.embedding.filter.comparison.IsEqualTo;
+import dev.langchain4j.store.embedding.filter.logical.And;
+import dev.langchain4j.store.embedding.filter.logical.Or;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Searches the pgvector table through its quantized ANN index ({@link VectorIndexSettings.Quantization}) and
+ * rescores the candidates with the full-precision vectors: the index returns {@code maxResults * rescoreFactor}
+ * rows ordered by the halfvec or hamming distance, which are then ranked by the exact cosine distance.
+ * Writes and searches with a filter the SQL mapping doesn't cover go to the delegate.
+ * <p>
+ * HNSW returns at most {@code hnsw.ef_search} rows per scan, so the setting is raised to the candidate count
+ * for the query when it is lower.
+ */
+public class QuantizedPgVectorEmbeddingStore implements EmbeddingStore<TextSegment> {
+
+    private static final Pattern METADATA_KEY = Pattern.compile("[A-Za-z0-9_]+");
+    private static final int MAX_EF_SEARCH = 1000;
+
+    private final EmbeddingStore<TextSegment> delegate;
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final String table;
+    private final VectorIndexSettings settings;
+    private final int rescoreFactor;
+
+    public QuantizedPgVectorEmbeddingStore(EmbeddingStore<TextSegment> delegate, DataSource dataSource, ObjectMapper objectMapper,
+                                           String table, VectorIndexSettings settings, int rescoreFactor) {
+        this.delegate = delegate;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.objectMapper = objectMapper;
+        this.table = table;
+        this.settings = settings;
+        this.rescoreFactor = Math.max(1, rescoreFactor);
+    }
+
+    @Override
+    public EmbeddingSearchResult<TextSegment> search(EmbeddingSearchRequest request) {
+        List<Object> filterParameters = new ArrayList<>();
+        String where = request.filter() == null ? "" : toSql(request.filter(), filterParameters);
+        if (where == null) {
+            return delegate.search(request);
+        }
+        int candidates = request.maxResults() * rescoreFactor;
+        String query = PgVectors.format(request.queryEmbedding().vector());
+        VectorIndexSettings.Quantization quantization = settings.quantization();
+        String sql = """
+                SELECT embedding_id, embedding::text AS embedding, text, metadata::text AS metadata, (2 - (embedding <=> ?::vector)) / 2 AS score
+                FROM (SELECT embedding_id, embedding, text, metadata FROM %s %s ORDER BY %s %s %s LIMIT ?) candidates
+                ORDER BY score DESC LIMIT ?""".formatted(
+                table, where.isEmpty() ? "" : "WHERE " + where,
+                quantization.expression("embedding", settings.dimension()), quantization.distanceOperator(),
+                quantization.expression("?::vector", settings.dimension()));
+
+        List<Object> parameters = new ArrayList<>();
+        parameters.add(query);
+        parameters.addAll(filterParameters);
+        parameters.add(query);
+        parameters.add(candidates);
+        parameters.add(request.maxResults());
+
+        List<EmbeddingMatch<TextSegment>> matches = jdbcTemplate.execute((ConnectionCallback<List<EmbeddingMatch<TextSegment>>>) connection -> {
+            // SET LOCAL only lasts for the transaction, the pooled connection keeps its configured ef_search
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try {
+                if (settings.type() == VectorIndexSettings.Type.HNSW && candidates > settings.efSearch()) {
+                    try (Statement statement = connection.createStatement()) {
+                        statement.execute("SET LOCAL hnsw.ef_search = " + Math.min(candidates, MAX_EF_SEARCH));
+                    }
+                }
+                List<EmbeddingMatch<TextSegment>> result = new ArrayList<>();
+                try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                    for (int i = 0; i < parameters.size(); i++) {
+                        statement.setObject(i + 1, parameters.get(i));
+                    }
+                    try (ResultSet rs = statement.executeQuery()) {
+                        while (rs.next()) {
+                            double score = rs.getDouble("score");
+                            if (score < request.minScore()) break;
+                            result.add(new EmbeddingMatch<>(score, rs.getString("embedding_id"),
+                                    Embedding.from(PgVectors.parse(rs.getString("embedding"))),
+                                    TextSegment.from(rs.getString("text"), PgVectors.metadata(objectMapper, rs.getString("metadata")))));
+                        }
+                    }
+                }
+                connection.commit();
+                return result;
+            } catch (RuntimeException | SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        });
+        return new EmbeddingSearchResult<>(matches);
+    }
+
+    /**
+     * The equality filters the retrievers use, in the form the owner metadata index matches
+     * ({@code metadata->>'userid' = ?}); null for any other filter.
+     */
+    private static String toSql(Filter filter, List<Object> parameters) {
+        if (filter instanceof IsEqualTo isEqualTo && METADATA_KEY.matcher(isEqualTo.key()).matches()) {
+            parameters.add(String.valueOf(isEqualTo.comparisonValue()));
+            return "metadata->>'%s' = ?".formatted(isEqualTo.key());
+        }
+        if (filter instanceof And and) {
+            String left = toSql(and.left(), parameters);
+            String right = left == null ? null : toSql(and.right(), parameters);
+            return right == null ? null : "(%s AND %s)".formatted(left, right);
+        }
+        if (filter instanceof Or or) {
+            String left = toSql(or.left(), parameters);
+            String right = left == null ? null : toSql(or.right(), parameters);
+            return right == null ? null : "(%s OR %s)".formatted(left, right);
+        }
+        return null;
+    }
+
+    @Override
+    public String add(Embedding embedding) {
+        return delegate.add(embedding);
+    }
+
+    @Override
+    public void add(String id, Embedding embedding) {
+        delegate.add(id, embedding);
+    }
+
+    @Override
+    public String add(Embedding embedding, TextSegment segment) {
+        return delegate.add(embedding, segment);
+    }
+
+    @Override
+    public List<String> addAll(List<Embedding> embeddings) {
+        return delegate.addAll(embeddings);
+    }
+
+    @Override
+    public List<String> addAll(List<Embedding> embeddings, List<TextSegment> segments) {
+        return delegate.addAll(embeddings, segments);
+    }
+
+    @Override
+    public void addAll(List<String> ids, List<Embedding> embeddings, List<TextSegment> segments) {
+        delegate.addAll(ids, embeddings, segments);
+    }
+
+    @Override
+    public void remove(String id) {
+        delegate.remove(id);
+    }
+
+    @Override
+    public void removeAll(Collection<String> ids) {
+        delegate.removeAll(ids);
+    }
+
+    @Override
+    public void removeAll(Filter filter) {
+        delegate.removeAll(filter);
+    }
+
+    @Override
+    public void removeAll() {
+        delegate.removeAll();
+    }
+}
@@ -0,0 +1,35 @@
+package ch.frupp.tutorbot.ai;
+
+import ch.frupp.tutorbot.course.topic.quiz.QuizBatchTemplate;
+import dev.langchain4j.service.SystemMessage;
+import dev.langchain4j.service.UserMessage;
+import dev.langchain4j.service.V;
+
+/**
+ * Generates several quiz questions in one call. Built without a content retriever: the caller retrieves
+ * the RAG context once and passes it to every call of a batch.
+ */
+public interface QuizBatchAssistant {
+
+    @SystemMessage("You are an expert question generator for educational content. Produce multiple-choice questions (with 4 answer options each) tailored to the provided topic and context. The output must be a single valid JSON object that matches the structure of the QuizBatchTemplate Java class. Do NOT output any additional text, commentary, or markdown. Keep language concise, factual, and appropriate for a student audience.")
+    @UserMessage("""
+        Generate exactly {{count}} multiple-choice questions about the topic: "{{topic}}".
+
+        Requirements:
+        - Produce a JSON object with a "quizzes" array; every element maps to the QuizAiTemplate class (question, choices array of length 4, correctAnswerIndex as an integer).
+        - Question length: prefer under 20 words.
+        - Every question must ask about a different fact; do not repeat or rephrase questions.
+        - Provide four distinct, plausible answer choices. One must be correct.
+        - The correctAnswerIndex must be a 0-based index into the choices array.
+        - This is part {{part}} of {{parts}} of a larger set: prefer facts from the corresponding part of the context, so the parts don't overlap.
+        - Prefer the context below as the source of facts. Do not include source citations or extra fields.
+
+        Context:
+        {{context}}
+
+        Example output (valid JSON):
+        {"quizzes":[{"question":"What is X?","choices":["A","B","C","D"],"correctAnswerIndex":2}]}
+        """)
+    QuizBatchTemplate generateQuizBatch(@V("topic") String topic, @V("count") int count,
+                                        @V("part") int part, @V("parts") int parts, @V("context") String context);
+}
@@ -1,38 +1,111 @@
 package ch.frupp.tutorbot.ai;
 
+import ch.frupp.tutorbot.ai.dataprocessing.SegmentsBulkLoadedEvent;
+import ch.frupp.tutorbot.ai.hotcache.HnswIndex;
+import ch.frupp.tutorbot.ai.hotcache.HotCourseEmbeddingStore;
+import ch.frupp.tutorbot.ai.hotcache.PgVectorCourseLoader;
+import ch.frupp.tutorbot.ai.metrics.MeteredEmbeddingModel;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zaxxer.hikari.HikariDataSource;
 import dev.langchain4j.data.segment.TextSegment;
 import dev.langchain4j.model.embedding.EmbeddingModel;
 import dev.langchain4j.model.embedding.onnx.allminilml6v2.AllMiniLmL6V2EmbeddingModel;
 import dev.langchain4j.store.embedding.EmbeddingStore;
 import dev.langchain4j.store.embedding.pgvector.PgVectorEmbeddingStore;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
 
 @Configuration
+@EnableConfigurationProperties({VectorIndexProperties.class, VectorSearchProperties.class, VectorStorageProperties.class,
+        HotCacheProperties.class, HybridRetrievalProperties.class})
 public class RAGConfiguration {
 
+    public static final String EMBEDDING_TABLE = "rag_embeddings";
+
+    // Own pool for the vector store, its connections carry the ANN search settings
+    private HikariDataSource vectorDataSource;
+    private HotCourseEmbeddingStore hotCourseStore;
+
+    private final MeterRegistry meterRegistry;
+
+    public RAGConfiguration(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
     @Bean
-    public EmbeddingStore<TextSegment> embeddingStore() {
+    @Profile("!loadtest")
+    public EmbeddingStore<TextSegment> embeddingStore(DataSourceProperties dataSourceProperties, ObjectMapper objectMapper,
+                                                      VectorIndexProperties indexProperties,
+                                                      VectorSearchProperties searchProperties,
+                                                      VectorStorageProperties storageProperties,
+                                                      HybridRetrievalProperties hybridProperties,
+                                                      HotCacheProperties hotCacheProperties) {
         // You can use an in-memory store for development/simple cases
         // For production, consider persistent vector databases like Pinecone, Chroma, etc.
         // which would require their respective LangChain4j integrations and configuration.
 //        return new InMemoryEmbeddingStore<>();
-        // TODO: After setting up environments, set these dynamically from ENV
-        return PgVectorEmbeddingStore.builder()
-                .host("localhost")
-                .port(5432)
-                .database("lecturevault")
-                .user("postgres")
-                .password("secret")
-                .table("rag_embeddings")
+        VectorIndexSettings indexSettings = VectorIndexSettings.of(indexProperties, searchProperties,
+                storageProperties.quantization(), embeddingModel().dimension());
+
+        // Same database as the JPA entities (the segment hash index queries the table directly)
+        vectorDataSource = dataSourceProperties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        vectorDataSource.setPoolName("rag-pgvector");
+        vectorDataSource.setConnectionInitSql(indexSettings.sessionSql());
+
+        PgVectorEmbeddingStore pgVectorStore = PgVectorEmbeddingStore.datasourceBuilder()
+                .datasource(vectorDataSource)
+                .table(EMBEDDING_TABLE)
                 .dimension(embeddingModel().dimension())
                 .build();
+        PgVectorIndexes.ensure(vectorDataSource, EMBEDDING_TABLE, indexSettings);
+        if (hybridProperties.enabled()) {
+            PgVectorIndexes.ensureFullTextIndex(vectorDataSource, EMBEDDING_TABLE, hybridProperties.textSearchConfig());
+        }
+        // The rows keep the full vectors, only the ANN index is quantized and its candidates are rescored exactly
+        EmbeddingStore<TextSegment> store = indexSettings.quantization() == VectorIndexSettings.Quantization.NONE
+                ? pgVectorStore
+                : new QuantizedPgVectorEmbeddingStore(pgVectorStore, vectorDataSource, objectMapper, EMBEDDING_TABLE, indexSettings,
+                        storageProperties.rescoreFactor());
+        if (!hotCacheProperties.enabled()) {
+            return store;
+        }
+        // Searches of active courses are answered in-process, the table stays the source of truth
+        HnswIndex.Settings hnswSettings = new HnswIndex.Settings(embeddingModel().dimension(), hotCacheProperties.hnsw().m(),
+                hotCacheProperties.hnsw().efConstruction(), hotCacheProperties.exactSearchLimit());
+        hotCourseStore = new HotCourseEmbeddingStore(store, new PgVectorCourseLoader(vectorDataSource, EMBEDDING_TABLE, objectMapper, hnswSettings),
+                hotCacheProperties.maxBytes(), hotCacheProperties.hnsw().efSearch(), meterRegistry);
+        return hotCourseStore;
+    }
+
+    // COPY loads bypass the store's write-through
+    @EventListener
+    public void onSegmentsBulkLoaded(SegmentsBulkLoadedEvent event) {
+        if (hotCourseStore != null) {
+            event.courses().forEach(hotCourseStore::invalidate);
+        }
+    }
 
+    @PreDestroy
+    public void closeVectorDataSource() {
+        if (vectorDataSource != null) {
+            vectorDataSource.close();
+        }
     }
 
+    // Primary: the cached query model in AiAssistantConfig is an EmbeddingModel as well
     @Bean
+    @Primary
     public EmbeddingModel embeddingModel() {
-        return new AllMiniLmL6V2EmbeddingModel();
+        // Embed in the calling thread: ingestion parallelizes across batches on its own embedding
+        // executor, a second per-segment pool inside the model would only oversubscribe the cores.
+        return new MeteredEmbeddingModel(new AllMiniLmL6V2EmbeddingModel(Runnable::run), meterRegistry);
         // Or: AllMiniLmL6V2QuantizedEmbeddingModel.builder().build(); // Smaller/faster
     }
 
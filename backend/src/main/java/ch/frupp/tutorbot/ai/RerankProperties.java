@@ -0,0 +1,17 @@
+package ch.frupp.tutorbot.ai;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Cross-encoder reranking of the retrieved segments, {@code app.rag.rerank.*}. Off by default because the model files
+ * are not shipped; without both files the segments are used as retrieved.
+ */
+@ConfigurationProperties("app.rag.rerank")
+public record RerankProperties(@DefaultValue("false") boolean enabled,
+                               String modelPath,
+                               String tokenizerPath,
+                               @DefaultValue("20") int candidates,
+                               @DefaultValue("1200") int tokenBudget,
+                               @DefaultValue("0.8") double duplicateThreshold) {
+}
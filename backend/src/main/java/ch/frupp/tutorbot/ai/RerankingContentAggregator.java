@@ -0,0 +1,120 @@
+package ch.frupp.tutorbot.ai;
+
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.TokenCountEstimator;
+import dev.langchain4j.model.scoring.ScoringModel;
+import dev.langchain4j.rag.content.Content;
+import dev.langchain4j.rag.content.ContentMetadata;
+import dev.langchain4j.rag.content.aggregator.ContentAggregator;
+import dev.langchain4j.rag.content.aggregator.ReciprocalRankFuser;
+import dev.langchain4j.rag.query.Query;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Second retrieval stage: the retriever over-fetches candidates, a cross-encoder scores each of them against the
+ * query, near-duplicate segments are dropped and the best ones are packed into the prompt until the token budget
+ * or {@code maxResults} is reached. The best segment is always kept, even when it alone exceeds the budget.
+ * <p>
+ * Segments are scored against the {@code keywords} invocation parameter when present, the query text of an
+ * AI service is the whole prompt. Metrics: {@code rag.rerank} and {@code rag.rerank.tokens}.
+ */
+public class RerankingContentAggregator implements ContentAggregator {
+
+    private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private final ScoringModel scoringModel;
+    private final TokenCountEstimator tokenCountEstimator;
+    private final int maxResults;
+    private final int tokenBudget;
+    private final double duplicateThreshold;
+    private final Timer rerankTimer;
+    private final DistributionSummary packedTokens;
+
+    public RerankingContentAggregator(ScoringModel scoringModel, TokenCountEstimator tokenCountEstimator, int maxResults,
+                                      int tokenBudget, double duplicateThreshold, MeterRegistry meterRegistry) {
+        this.scoringModel = scoringModel;
+        this.tokenCountEstimator = tokenCountEstimator;
+        this.maxResults = maxResults;
+        this.tokenBudget = tokenBudget;
+        this.duplicateThreshold = duplicateThreshold;
+        this.rerankTimer = Timer.builder("rag.rerank")
+                .description("Time to score the retrieved candidates with the cross-encoder")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.packedTokens = DistributionSummary.builder("rag.rerank.tokens")
+                .description("Estimated tokens of the segments passed to the prompt")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public List<Content> aggregate(Map<Query, Collection<List<Content>>> queryToContents) {
+        List<Content> packed = new ArrayList<>();
+        for (Map.Entry<Query, Collection<List<Content>>> entry : queryToContents.entrySet()) {
+            List<Content> candidates = ReciprocalRankFuser.fuse(entry.getValue());
+            if (!candidates.isEmpty()) {
+                packed.addAll(rerank(RetrievalQueries.keywords(entry.getKey()), candidates));
+            }
+        }
+        return packed;
+    }
+
+    private List<Content> rerank(String query, List<Content> candidates) {
+        List<TextSegment> segments = candidates.stream().map(Content::textSegment).toList();
+        List<Double> scores = rerankTimer.record(() -> scoringModel.scoreAll(segments, query).content());
+
+        List<Integer> ranked = new ArrayList<>();
+        for (int i = 0; i < candidates.size(); i++) ranked.add(i);
+        ranked.sort(Comparator.comparingDouble((Integer i) -> scores.get(i)).reversed());
+
+        List<Content> packed = new ArrayList<>();
+        List<Set<String>> packedWords = new ArrayList<>();
+        int tokens = 0;
+        for (int i : ranked) {
+            Content content = candidates.get(i);
+            if (packed.size() == maxResults) break;
+            Set<String> words = words(content.textSegment().text());
+            if (packedWords.stream().anyMatch(other -> jaccard(words, other) >= duplicateThreshold)) continue;
+            int segmentTokens = tokenCountEstimator.estimateTokenCountInText(content.textSegment().text());
+            // A smaller segment further down may still fit
+            if (!packed.isEmpty() && tokens + segmentTokens > tokenBudget) continue;
+
+            Map<ContentMetadata, Object> metadata = new HashMap<>(content.metadata());
+            metadata.put(ContentMetadata.RERANKED_SCORE, scores.get(i));
+            packed.add(Content.from(content.textSegment(), metadata));
+            packedWords.add(words);
+            tokens += segmentTokens;
+        }
+        packedTokens.record(tokens);
+        return packed;
+    }
+
+    private static Set<String> words(String text) {
+        Set<String> words = new HashSet<>();
+        for (String word : NON_WORD.split(text.toLowerCase(Locale.ROOT))) {
+            if (!word.isEmpty()) words.add(word);
+        }
+        return words;
+    }
+
+    private static double jaccard(Set<String> a, Set<String> b) {
+        if (a.isEmpty() && b.isEmpty()) return 1;
+        int intersection = 0;
+        for (String word : a.size() < b.size() ? a : b) {
+            if ((a.size() < b.size() ? b : a).contains(word)) intersection++;
+        }
+        return (double) intersection / (a.size() + b.size() - intersection);
+    }
+}
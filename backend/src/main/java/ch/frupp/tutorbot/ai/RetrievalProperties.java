@@ -0,0 +1,11 @@
+package ch.frupp.tutorbot.ai;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Segments that end up in a prompt, {@code app.rag.retrieval.*}.
+ */
+@ConfigurationProperties("app.rag.retrieval")
+public record RetrievalProperties(@DefaultValue("5") int maxResults) {
+}
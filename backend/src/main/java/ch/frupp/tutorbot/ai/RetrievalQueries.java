@@ -0,0 +1,66 @@
+package ch.frupp.tutorbot.ai;
+
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.invocation.InvocationContext;
+import dev.langchain4j.invocation.InvocationParameters;
+import dev.langchain4j.rag.AugmentationRequest;
+import dev.langchain4j.rag.RetrievalAugmentor;
+import dev.langchain4j.rag.content.Content;
+import dev.langchain4j.rag.query.Metadata;
+import dev.langchain4j.rag.query.Query;
+import dev.langchain4j.store.embedding.filter.Filter;
+
+import java.util.List;
+
+import static dev.langchain4j.store.embedding.filter.MetadataFilterBuilder.metadataKey;
+
+/**
+ * Builds retrieval queries outside of an AI service invocation, carrying the invocation parameters
+ * the content retriever's owner filter reads.
+ */
+public final class RetrievalQueries {
+
+    /**
+     * Optional invocation parameter with the terms the keyword search should look for. Inside an AI service
+     * the query text is the whole rendered prompt, whose template words would drown the topic name.
+     */
+    public static final String KEYWORDS = "keywords";
+
+    private RetrievalQueries() {}
+
+    public static Query of(String text, InvocationParameters parameters) {
+        return Query.from(text, metadata(text, parameters));
+    }
+
+    /**
+     * Runs the whole retrieval pipeline of the AI services (retriever and aggregator) and returns the contents
+     * that would be injected into the prompt.
+     */
+    public static List<Content> retrieve(RetrievalAugmentor retrievalAugmentor, String text, InvocationParameters parameters) {
+        return retrievalAugmentor.augment(new AugmentationRequest(UserMessage.from(text), metadata(text, parameters))).contents();
+    }
+
+    private static Metadata metadata(String text, InvocationParameters parameters) {
+        return Metadata.builder()
+                .chatMessage(UserMessage.from(text))
+                .invocationContext(InvocationContext.builder().invocationParameters(parameters).build())
+                .build();
+    }
+
+    // Callers without a course context still search all of the user's materials
+    public static Filter ownerFilter(Query query) {
+        InvocationParameters parameters = query.metadata().invocationParameters();
+        String userId = parameters.get("userid");
+        String courseId = parameters.get("courseid");
+        if (courseId == null) {
+            return metadataKey("userid").isEqualTo(userId);
+        }
+        return metadataKey("userid").isEqualTo(userId).and(metadataKey("courseid").isEqualTo(courseId));
+    }
+
+    public static String keywords(Query query) {
+        InvocationParameters parameters = query.metadata() == null ? null : query.metadata().invocationParameters();
+        String keywords = parameters == null ? null : parameters.get(KEYWORDS);
+        return keywords != null ? keywords : query.text();
+    }
+}
@@ -0,0 +1,101 @@
+package ch.frupp.tutorbot.ai;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.store.embedding.CosineSimilarity;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Cache of model responses for one AiAssistant method. Entries are grouped in buckets (scope plus
+ * course material version); within a bucket a prompt matches an earlier one when their embeddings'
+ * cosine similarity reaches the threshold, so "Integrals" can be answered with the summary of "integral".
+ * Size-bounded by the total number of entries, each entry expires after the TTL.
+ * Metrics: {@code ai.response.cache.requests{method,result}}, {@code ai.response.cache.time.saved{method}}
+ * (model time the hits would have cost) and the {@code cache.*} metrics of {@code ai-responses-<method>}.
+ */
+public class SemanticResponseCache<T> {
+
+    // Small buckets keep the linear similarity scan cheap, the oldest entry makes room for a new one
+    private static final int MAX_ENTRIES_PER_BUCKET = 32;
+
+    private final Cache<String, Bucket<T>> buckets;
+    private final Duration ttl;
+    private final double similarityThreshold;
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter timeSaved;
+
+    public SemanticResponseCache(String method, long maxEntries, Duration ttl, double similarityThreshold, MeterRegistry meterRegistry) {
+        this.ttl = ttl;
+        this.similarityThreshold = similarityThreshold;
+        this.buckets = Caffeine.newBuilder()
+                .maximumWeight(maxEntries)
+                .weigher((String key, Bucket<T> bucket) -> bucket.entries().size())
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, buckets, "ai-responses-" + method);
+        this.hits = Counter.builder("ai.response.cache.requests").tag("method", method).tag("result", "hit")
+                .register(meterRegistry);
+        this.misses = Counter.builder("ai.response.cache.requests").tag("method", method).tag("result", "miss")
+                .register(meterRegistry);
+        this.timeSaved = Counter.builder("ai.response.cache.time.saved").tag("method", method).baseUnit("seconds")
+                .description("Model latency avoided by cache hits").register(meterRegistry);
+    }
+
+    public Optional<T> get(String bucketKey, Embedding prompt) {
+        Bucket<T> bucket = buckets.getIfPresent(bucketKey);
+        Instant cutoff = Instant.now().minus(ttl);
+        Entry<T> best = null;
+        double bestSimilarity = similarityThreshold;
+        if (bucket != null) {
+            for (Entry<T> entry : bucket.entries()) {
+                if (entry.createdAt().isBefore(cutoff)) continue;
+                double similarity = CosineSimilarity.between(prompt, entry.prompt());
+                if (similarity >= bestSimilarity) {
+                    best = entry;
+                    bestSimilarity = similarity;
+                }
+            }
+        }
+        if (best == null) {
+            misses.increment();
+            return Optional.empty();
+        }
+        hits.increment();
+        timeSaved.increment(best.latency().toNanos() / 1e9);
+        return Optional.of(best.response());
+    }
+
+    public void put(String bucketKey, Embedding prompt, T response, Duration latency) {
+        Entry<T> entry = new Entry<>(prompt, response, latency, Instant.now());
+        // Buckets are immutable and replaced on every write, so Caffeine re-weighs them
+        buckets.asMap().compute(bucketKey, (key, bucket) -> {
+            List<Entry<T>> entries = new ArrayList<>(bucket == null ? List.of() : bucket.entries());
+            if (entries.size() >= MAX_ENTRIES_PER_BUCKET) {
+                entries.remove(0);
+            }
+            entries.add(entry);
+            return new Bucket<>(List.copyOf(entries));
+        });
+    }
+
+    public void invalidateAll() {
+        buckets.invalidateAll();
+    }
+
+    private record Bucket<T>(List<Entry<T>> entries) {
+    }
+
+    private record Entry<T>(Embedding prompt, T response, Duration latency, Instant createdAt) {
+    }
+}
@@ -0,0 +1,19 @@
+package ch.frupp.tutorbot.ai;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Build parameters of the ANN index of the embedding table, {@code app.rag.index.*}.
+ */
+@ConfigurationProperties("app.rag.index")
+public record VectorIndexProperties(@DefaultValue("hnsw") VectorIndexSettings.Type type,
+                                    @DefaultValue Hnsw hnsw,
+                                    @DefaultValue Ivfflat ivfflat) {
+
+    public record Hnsw(@DefaultValue("16") int m, @DefaultValue("64") int efConstruction) {
+    }
+
+    public record Ivfflat(@DefaultValue("100") int lists) {
+    }
+}
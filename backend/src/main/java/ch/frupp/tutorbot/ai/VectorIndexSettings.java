@@ -0,0 +1,110 @@
+package ch.frupp.tutorbot.ai;
+
+/**
+ * Approximate nearest neighbour index of the pgvector embedding table and the per-query search parameters.
+ * HNSW gives the best latency/recall trade-off and can be built on an empty table; IVFFlat builds faster and
+ * uses less memory, but its lists are clustered from the rows present at build time.
+ * <p>
+ * A quantized index is built over an expression of the float column: {@code halfvec} halves the index, binary
+ * quantization ({@code bit}, hamming distance) shrinks it 32-fold. The table keeps the full vectors, so
+ * {@link QuantizedPgVectorEmbeddingStore} can rescore the index candidates exactly.
+ */
+public record VectorIndexSettings(Type type, Quantization quantization, int dimension, int m, int efConstruction, int lists,
+                                  int efSearch, int probes, String iterativeScan) {
+
+    public enum Type { NONE, HNSW, IVFFLAT }
+
+    public enum Quantization {
+        NONE, HALFVEC, BINARY;
+
+        /**
+         * The indexed expression; searches have to order by exactly this expression to use the index.
+         */
+        public String expression(String column, int dimension) {
+            return switch (this) {
+                case NONE -> column;
+                case HALFVEC -> "(%s::halfvec(%d))".formatted(column, dimension);
+                case BINARY -> "(binary_quantize(%s)::bit(%d))".formatted(column, dimension);
+            };
+        }
+
+        public String distanceOperator() {
+            return this == BINARY ? "<~>" : "<=>";
+        }
+
+        String operatorClass() {
+            return switch (this) {
+                case NONE -> "vector_cosine_ops";
+                case HALFVEC -> "halfvec_cosine_ops";
+                case BINARY -> "bit_hamming_ops";
+            };
+        }
+
+        String nameSuffix() {
+            return switch (this) {
+                case NONE -> "";
+                case HALFVEC -> "_hv";
+                case BINARY -> "_bq";
+            };
+        }
+    }
+
+    public static VectorIndexSettings of(VectorIndexProperties index, VectorSearchProperties search, Quantization quantization,
+                                         int dimension) {
+        return new VectorIndexSettings(index.type(), quantization, dimension, index.hnsw().m(), index.hnsw().efConstruction(),
+                index.ivfflat().lists(), search.hnsw().efSearch(), search.ivfflat().probes(), search.iterativeScan());
+    }
+
+    public VectorIndexSettings withType(Type type) {
+        return new VectorIndexSettings(type, quantization, dimension, m, efConstruction, lists, efSearch, probes, iterativeScan);
+    }
+
+    public VectorIndexSettings withQuantization(Quantization quantization) {
+        return new VectorIndexSettings(type, quantization, dimension, m, efConstruction, lists, efSearch, probes, iterativeScan);
+    }
+
+    /**
+     * The build parameters are part of the name, so a configuration change results in a new index
+     * instead of silently keeping the old one.
+     */
+    public String indexName(String table) {
+        return switch (type) {
+            case NONE -> null;
+            case HNSW -> "%s_hnsw_m%d_ef%d%s_idx".formatted(table, m, efConstruction, quantization.nameSuffix());
+            case IVFFLAT -> "%s_ivfflat_l%d%s_idx".formatted(table, lists, quantization.nameSuffix());
+        };
+    }
+
+    public String createIndexSql(String table) {
+        return createIndexSql(table, false);
+    }
+
+    /**
+     * The store orders by cosine distance ({@code <=>}), so the float and halfvec indexes use the cosine operator
+     * class; binary codes are compared by hamming distance. {@code concurrently} builds without blocking writes.
+     */
+    public String createIndexSql(String table, boolean concurrently) {
+        String create = concurrently ? "CREATE INDEX CONCURRENTLY IF NOT EXISTS" : "CREATE INDEX IF NOT EXISTS";
+        String column = quantization.expression("embedding", dimension);
+        return switch (type) {
+            case NONE -> null;
+            case HNSW -> "%s %s ON %s USING hnsw (%s %s) WITH (m = %d, ef_construction = %d)"
+                    .formatted(create, indexName(table), table, column, quantization.operatorClass(), m, efConstruction);
+            case IVFFLAT -> "%s %s ON %s USING ivfflat (%s %s) WITH (lists = %d)"
+                    .formatted(create, indexName(table), table, column, quantization.operatorClass(), lists);
+        };
+    }
+
+    /**
+     * Executed on every connection of the embedding store. The settings of the other index type are harmless.
+     * Iterative scans (pgvector 0.8+) keep scanning the index until enough rows pass the owner filter,
+     * otherwise a filtered query on a small course may return fewer results than requested.
+     */
+    public String sessionSql() {
+        String sql = "SET hnsw.ef_search = %d; SET ivfflat.probes = %d".formatted(efSearch, probes);
+        if (iterativeScan != null && !iterativeScan.isBlank() && !"off".equalsIgnoreCase(iterativeScan)) {
+            sql += "; SET hnsw.iterative_scan = %s; SET ivfflat.iterative_scan = %s".formatted(iterativeScan, iterativeScan);
+        }
+        return sql;
+    }
+}
@@ -0,0 +1,19 @@
+package ch.frupp.tutorbot.ai;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Per-query search breadth of the ANN index, {@code app.rag.search.*}; set on every connection of the vector store's pool.
+ */
+@ConfigurationProperties("app.rag.search")
+public record VectorSearchProperties(@DefaultValue Hnsw hnsw,
+                                     @DefaultValue Ivfflat ivfflat,
+                                     @DefaultValue("relaxed_order") String iterativeScan) {
+
+    public record Hnsw(@DefaultValue("40") int efSearch) {
+    }
+
+    public record Ivfflat(@DefaultValue("10") int probes) {
+    }
+}
@@ -0,0 +1,14 @@
+package ch.frupp.tutorbot.ai;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Quantization of the ANN index, {@code app.rag.storage.*}. {@code migrateTo} is only read by the
+ * rag-quantization-migration profile.
+ */
+@ConfigurationProperties("app.rag.storage")
+public record VectorStorageProperties(@DefaultValue("none") VectorIndexSettings.Quantization quantization,
+                                      @DefaultValue("4") int rescoreFactor,
+                                      VectorIndexSettings.Quantization migrateTo) {
+}
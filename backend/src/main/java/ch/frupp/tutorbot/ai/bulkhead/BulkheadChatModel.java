@@ -0,0 +1,57 @@
+package ch.frupp.tutorbot.ai.bulkhead;
+
+import dev.langchain4j.model.ModelProvider;
+import dev.langchain4j.model.chat.Capability;
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.listener.ChatModelListener;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.request.ChatRequestParameters;
+import dev.langchain4j.model.chat.response.ChatResponse;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * ChatModel decorator that runs every call through the {@link LlmBulkhead}.
+ */
+public class BulkheadChatModel implements ChatModel {
+
+    private final ChatModel delegate;
+    private final LlmBulkhead bulkhead;
+
+    public BulkheadChatModel(ChatModel delegate, LlmBulkhead bulkhead) {
+        this.delegate = delegate;
+        this.bulkhead = bulkhead;
+    }
+
+    @Override
+    public ChatResponse chat(ChatRequest chatRequest) {
+        bulkhead.acquire();
+        try {
+            return delegate.chat(chatRequest);
+        } finally {
+            bulkhead.release();
+        }
+    }
+
+    @Override
+    public ChatRequestParameters defaultRequestParameters() {
+        return delegate.defaultRequestParameters();
+    }
+
+    // The delegate notifies its listeners itself
+    @Override
+    public List<ChatModelListener> listeners() {
+        return List.of();
+    }
+
+    @Override
+    public ModelProvider provider() {
+        return delegate.provider();
+    }
+
+    @Override
+    public Set<Capability> supportedCapabilities() {
+        return delegate.supportedCapabilities();
+    }
+}
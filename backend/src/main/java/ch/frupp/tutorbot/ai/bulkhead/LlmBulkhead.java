@@ -0,0 +1,164 @@
+package ch.frupp.tutorbot.ai.bulkhead;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Limits the number of concurrent model calls. Calls beyond {@code maxInFlight} wait in a queue ordered by
+ * priority and arrival; a call is rejected right away when the queue is full and after its deadline when it
+ * waited too long, so request threads don't pile up behind a model server that handles one request at a time.
+ * Permits are handed directly to the next waiter on release.
+ * Metrics: {@code llm.bulkhead.in.flight}, {@code llm.bulkhead.queue.depth}, {@code llm.bulkhead.wait{priority}}
+ * and {@code llm.bulkhead.rejected{priority,reason}}.
+ */
+public class LlmBulkhead {
+
+    private final int maxInFlight;
+    private final int maxQueued;
+    private final Map<LlmPriority, Duration> deadlines;
+    private final Duration retryAfter;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final PriorityQueue<Waiter> queue = new PriorityQueue<>(
+            Comparator.comparing(Waiter::priority).thenComparingLong(Waiter::sequence));
+    private int inFlight;
+    private long sequence;
+
+    private final Map<LlmPriority, Timer> waitTimers = new EnumMap<>(LlmPriority.class);
+    private final MeterRegistry meterRegistry;
+
+    public LlmBulkhead(int maxInFlight, int maxQueued, Map<LlmPriority, Duration> deadlines, Duration retryAfter, MeterRegistry meterRegistry) {
+        this.maxInFlight = maxInFlight;
+        this.maxQueued = maxQueued;
+        this.deadlines = deadlines;
+        this.retryAfter = retryAfter;
+        this.meterRegistry = meterRegistry;
+        for (LlmPriority priority : LlmPriority.values()) {
+            waitTimers.put(priority, Timer.builder("llm.bulkhead.wait").tag("priority", priority.name().toLowerCase())
+                    .description("Time model calls waited for a free slot").register(meterRegistry));
+        }
+        Gauge.builder("llm.bulkhead.in.flight", this, LlmBulkhead::inFlight).register(meterRegistry);
+        Gauge.builder("llm.bulkhead.queue.depth", this, LlmBulkhead::queueDepth).register(meterRegistry);
+    }
+
+    /**
+     * Blocks until the call may proceed; every successful acquire must be followed by {@link #release()}.
+     *
+     * @throws LlmOverloadedException if the queue is full or the deadline of the current priority passed
+     */
+    public void acquire() {
+        LlmPriority priority = LlmPriority.current();
+        long start = System.nanoTime();
+        lock.lock();
+        try {
+            if (inFlight < maxInFlight && queue.isEmpty()) {
+                inFlight++;
+                waitTimers.get(priority).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                return;
+            }
+            if (queue.size() >= maxQueued) {
+                throw reject(priority, "queue_full", "Too many model requests are queued");
+            }
+
+            Waiter waiter = new Waiter(priority, sequence++, lock.newCondition());
+            queue.add(waiter);
+            long remaining = deadlines.get(priority).toNanos();
+            try {
+                while (!waiter.granted) {
+                    if (remaining <= 0) {
+                        queue.remove(waiter);
+                        throw reject(priority, "deadline", "Model request waited longer than " + deadlines.get(priority));
+                    }
+                    remaining = waiter.condition.awaitNanos(remaining);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                if (waiter.granted) {
+                    releaseLocked();
+                } else {
+                    queue.remove(waiter);
+                }
+                throw new IllegalStateException("Interrupted while waiting for the model", e);
+            }
+            waitTimers.get(priority).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void release() {
+        lock.lock();
+        try {
+            releaseLocked();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void releaseLocked() {
+        Waiter next = queue.poll();
+        if (next != null) {
+            // Hand the slot over, inFlight stays the same
+            next.granted = true;
+            next.condition.signal();
+        } else {
+            inFlight--;
+        }
+    }
+
+    private LlmOverloadedException reject(LlmPriority priority, String reason, String message) {
+        Counter.builder("llm.bulkhead.rejected").tag("priority", priority.name().toLowerCase()).tag("reason", reason)
+                .register(meterRegistry).increment();
+        return new LlmOverloadedException(message, retryAfter);
+    }
+
+    private int inFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private int queueDepth() {
+        lock.lock();
+        try {
+            return queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static final class Waiter {
+        private final LlmPriority priority;
+        private final long sequence;
+        private final Condition condition;
+        private boolean granted;
+
+        private Waiter(LlmPriority priority, long sequence, Condition condition) {
+            this.priority = priority;
+            this.sequence = sequence;
+            this.condition = condition;
+        }
+
+        LlmPriority priority() {
+            return priority;
+        }
+
+        long sequence() {
+            return sequence;
+        }
+    }
+}
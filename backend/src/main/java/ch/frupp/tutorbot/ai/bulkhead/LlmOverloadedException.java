@@ -0,0 +1,20 @@
+package ch.frupp.tutorbot.ai.bulkhead;
+
+import lombok.Getter;
+
+import java.time.Duration;
+
+/**
+ * Thrown when a model call is rejected because the bulkhead queue is full or the call's deadline passed
+ * while it was queued. Answered with 429 and a Retry-After header.
+ */
+@Getter
+public class LlmOverloadedException extends RuntimeException {
+
+    private final Duration retryAfter;
+
+    public LlmOverloadedException(String message, Duration retryAfter) {
+        super(message);
+        this.retryAfter = retryAfter;
+    }
+}
@@ -0,0 +1,40 @@
+package ch.frupp.tutorbot.ai.bulkhead;
+
+import java.util.function.Supplier;
+
+/**
+ * Priority of the model calls made by the current thread. Requests a user is waiting for are INTERACTIVE
+ * (the default), work like the quiz pool refill runs as BACKGROUND and only gets the model when no
+ * interactive request is queued.
+ */
+public enum LlmPriority {
+    INTERACTIVE,
+    BACKGROUND;
+
+    private static final ThreadLocal<LlmPriority> CURRENT = ThreadLocal.withInitial(() -> INTERACTIVE);
+
+    public static LlmPriority current() {
+        return CURRENT.get();
+    }
+
+    public <T> T call(Supplier<T> action) {
+        LlmPriority previous = CURRENT.get();
+        CURRENT.set(this);
+        try {
+            return action.get();
+        } finally {
+            CURRENT.set(previous);
+        }
+    }
+
+    /**
+     * TaskDecorator for executors that make model calls on behalf of the submitting thread.
+     */
+    public static Runnable propagate(Runnable task) {
+        LlmPriority priority = current();
+        return () -> priority.call(() -> {
+            task.run();
+            return null;
+        });
+    }
+}
@@ -0,0 +1,214 @@
+package ch.frupp.tutorbot.ai.dataprocessing;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Embedding stage of the ingestion pipeline. Segments are grouped into batches which are embedded
+ * concurrently on the embedding executor, and each batch is written to the embedding store as soon
+ * as it completes. The number of pending batches per ingestion is bounded, so a large document
+ * never holds more than a few batches of embeddings in memory.
+ * <p>
+ * Once a session has submitted {@code bulkAfterSegments} segments, the following batches are streamed into
+ * one {@link SegmentBulkWriter} load instead, which becomes visible when the session finishes.
+ */
+@Slf4j
+@Component
+public class EmbeddingPipeline {
+
+    private final EmbeddingModel embeddingModel;
+    private final EmbeddingStore<TextSegment> embeddingStore;
+    private final SegmentBulkWriter bulkWriter;
+    private final TaskExecutor embeddingExecutor;
+
+    @Value("${app.ingestion.embedding.batch-size:32}")
+    private int batchSize = 32;
+
+    // Batches queued or running per ingestion before the producer has to wait
+    @Value("${app.ingestion.embedding.max-pending-batches:8}")
+    private int maxPendingBatches = 8;
+
+    // Segments a session writes through the embedding store before it switches to a bulk load
+    @Value("${app.ingestion.bulk.min-segments:1000}")
+    private int bulkMinSegments = 1000;
+
+    public EmbeddingPipeline(EmbeddingModel embeddingModel,
+                             EmbeddingStore<TextSegment> embeddingStore,
+                             SegmentBulkWriter bulkWriter,
+                             @Qualifier("embeddingExecutor") TaskExecutor embeddingExecutor) {
+        this.embeddingModel = embeddingModel;
+        this.embeddingStore = embeddingStore;
+        this.bulkWriter = bulkWriter;
+        this.embeddingExecutor = embeddingExecutor;
+    }
+
+    public IngestionResult embedAndStore(List<TextSegment> segments, IngestionProgressListener listener) {
+        // The size is known up front, so a large ingestion is loaded in bulk from the first segment on
+        Session session = start(listener, segments.size() >= bulkMinSegments ? 0 : Integer.MAX_VALUE);
+        try {
+            segments.forEach(session::add);
+        } catch (RuntimeException e) {
+            session.abort();
+            throw e;
+        }
+        return session.finish();
+    }
+
+    /**
+     * Opens a session that segments can be fed into one by one, e.g. while a document is still being parsed.
+     * Not thread-safe: a session must be fed from a single thread. A session that isn't finished has to be aborted.
+     */
+    public Session start(IngestionProgressListener listener) {
+        return start(listener, bulkMinSegments);
+    }
+
+    /**
+     * @param bulkAfterSegments segments to write through the embedding store before switching to a bulk load,
+     *                          0 loads everything in bulk
+     */
+    public Session start(IngestionProgressListener listener, int bulkAfterSegments) {
+        return new Session(listener, bulkAfterSegments);
+    }
+
+    public final class Session {
+
+        private final IngestionProgressListener listener;
+        private final int bulkAfterSegments;
+        private final Semaphore pendingBatches = new Semaphore(maxPendingBatches);
+        private final List<CompletableFuture<Void>> running = new ArrayList<>();
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+        private final AtomicInteger segmentsEmbedded = new AtomicInteger();
+        private final AtomicInteger tokensUsed = new AtomicInteger();
+        private final long startedAt = System.nanoTime();
+
+        private List<TextSegment> buffer = new ArrayList<>(batchSize);
+        private int segmentsSubmitted;
+        private SegmentBulkWriter.Load bulkLoad;
+
+        private Session(IngestionProgressListener listener, int bulkAfterSegments) {
+            this.listener = listener;
+            this.bulkAfterSegments = bulkAfterSegments;
+        }
+
+        public void add(TextSegment segment) {
+            buffer.add(segment);
+            if (buffer.size() >= batchSize) {
+                flush();
+            }
+        }
+
+        /**
+         * Submits the remaining segments, waits for all batches to be stored, commits the bulk load
+         * and reports the throughput.
+         */
+        public IngestionResult finish() {
+            try {
+                flush();
+                awaitRunning();
+                throwIfFailed();
+                if (bulkLoad != null) {
+                    bulkLoad.commit();
+                }
+            } finally {
+                abort();
+            }
+
+            int segments = segmentsEmbedded.get();
+            int tokens = tokensUsed.get();
+            double seconds = (System.nanoTime() - startedAt) / 1_000_000_000d;
+            double segmentsPerSecond = seconds > 0 ? segments / seconds : 0;
+            log.info("Embedded {} segments in {} ms ({} segments/s, batch size {}{})",
+                    segments, Math.round(seconds * 1000), Math.round(segmentsPerSecond), batchSize, bulkLoad != null ? ", bulk load" : "");
+
+            return new IngestionResult(tokens, 0, tokens, segments, 0, segmentsPerSecond);
+        }
+
+        /**
+         * Waits for the batches still running and discards the bulk load of a session that failed. Segments already
+         * written through the store stay, the caller removes them. No-op once the session is finished.
+         */
+        public void abort() {
+            // Even without a bulk load: a batch finishing later would store its segments after the caller's cleanup
+            awaitRunning();
+            if (bulkLoad != null) {
+                bulkLoad.close();
+            }
+        }
+
+        private void awaitRunning() {
+            try {
+                CompletableFuture.allOf(running.toArray(CompletableFuture[]::new)).join();
+            } catch (CompletionException e) {
+                failure.compareAndSet(null, e.getCause());
+            }
+        }
+
+        private void flush() {
+            if (buffer.isEmpty()) return;
+            throwIfFailed();
+
+            List<TextSegment> batch = buffer;
+            buffer = new ArrayList<>(batchSize);
+            if (bulkLoad == null && segmentsSubmitted >= bulkAfterSegments) {
+                bulkLoad = bulkWriter.open();
+            }
+            SegmentBulkWriter.Load load = bulkLoad;
+            segmentsSubmitted += batch.size();
+
+            // Back-pressure: wait until one of our batches is stored before queueing another one
+            pendingBatches.acquireUninterruptibly();
+            CompletableFuture<Void> future;
+            try {
+                future = CompletableFuture.runAsync(() -> embedBatch(batch, load), embeddingExecutor);
+            } catch (RuntimeException e) {
+                pendingBatches.release();
+                throw e;
+            }
+            running.add(future.whenComplete((ignored, e) -> {
+                pendingBatches.release();
+                if (e != null) {
+                    failure.compareAndSet(null, e instanceof CompletionException ? e.getCause() : e);
+                }
+            }));
+            running.removeIf(CompletableFuture::isDone);
+        }
+
+        private void embedBatch(List<TextSegment> batch, SegmentBulkWriter.Load load) {
+            Response<List<Embedding>> response = embeddingModel.embedAll(batch);
+            if (load != null) {
+                load.write(response.content(), batch);
+            } else {
+                embeddingStore.addAll(response.content(), batch);
+            }
+
+            Integer tokens = response.tokenUsage() == null ? null : response.tokenUsage().inputTokenCount();
+            int batchTokens = tokens == null ? 0 : tokens;
+            segmentsEmbedded.addAndGet(batch.size());
+            tokensUsed.addAndGet(batchTokens);
+            listener.onSegmentsEmbedded(batch.size(), batchTokens);
+        }
+
+        private void throwIfFailed() {
+            Throwable cause = failure.get();
+            if (cause != null) {
+                throw new IllegalStateException("Embedding batch failed: " + cause.getMessage(), cause);
+            }
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package ch.frupp.tutorbot.ai.dataprocessing;
+
+import ch.frupp.tutorbot.ai.PgVectorIndexes;
+import ch.frupp.tutorbot.ai.RAGConfiguration;
+import ch.frupp.tutorbot.ai.VectorIndexProperties;
+import ch.frupp.tutorbot.ai.VectorIndexSettings;
+import ch.frupp.tutorbot.ai.VectorSearchProperties;
+import ch.frupp.tutorbot.ai.VectorStorageProperties;
+import ch.frupp.tutorbot.course.material.CourseMaterial;
+import ch.frupp.tutorbot.course.material.CourseMaterialRepository;
+import ch.frupp.tutorbot.course.material.MaterialStatus;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Re-ingests every material from its stored file, e.g. after a change of the splitter or the embedding model.
+ * The ANN index is dropped first and built once at the end, which is much faster than maintaining it for every
+ * row, and all segments are written with COPY bulk loads. Segments of materials without a stored file are kept.
+ * Searches fall back to exact scans while the index is missing, so run it with the application stopped:
+ * {@code --spring.profiles.active=rag-reindex}; the application exits when the re-index is done.
+ */
+@Slf4j
+@Component
+@Profile("rag-reindex")
+public class FullReindexRunner implements ApplicationRunner {
+
+    private final PDFIngestionService ingestionService;
+    private final CourseMaterialRepository courseMaterialRepository;
+    private final MaterialFileStorage materialFileStorage;
+    private final DataSource dataSource;
+    private final EmbeddingModel embeddingModel;
+    private final ConfigurableApplicationContext context;
+    private final VectorIndexProperties indexProperties;
+    private final VectorSearchProperties searchProperties;
+    private final VectorStorageProperties storageProperties;
+
+    public FullReindexRunner(PDFIngestionService ingestionService, CourseMaterialRepository courseMaterialRepository,
+                             MaterialFileStorage materialFileStorage, DataSource dataSource, EmbeddingModel embeddingModel,
+                             ConfigurableApplicationContext context, VectorIndexProperties indexProperties,
+                             VectorSearchProperties searchProperties, VectorStorageProperties storageProperties) {
+        this.ingestionService = ingestionService;
+        this.courseMaterialRepository = courseMaterialRepository;
+        this.materialFileStorage = materialFileStorage;
+        this.dataSource = dataSource;
+        this.embeddingModel = embeddingModel;
+        this.context = context;
+        this.indexProperties = indexProperties;
+        this.searchProperties = searchProperties;
+        this.storageProperties = storageProperties;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        String table = RAGConfiguration.EMBEDDING_TABLE;
+        VectorIndexSettings settings = VectorIndexSettings.of(indexProperties, searchProperties,
+                storageProperties.quantization(), embeddingModel.dimension());
+
+        List<CourseMaterial> materials = courseMaterialRepository.findAllWithCourse().stream()
+                .filter(material -> materialFileStorage.find(material.getId()).isPresent())
+                .toList();
+        log.info("Full re-index: {} materials with a stored file, dropping the ANN index of {} until the end", materials.size(), table);
+        PgVectorIndexes.ensure(dataSource, table, settings.withType(VectorIndexSettings.Type.NONE));
+
+        // Remove everything first, otherwise deduplication would skip segments other materials still have stored
+        materials.forEach(material -> ingestionService.removeMaterialEmbeddings(
+                material.getCourse().getUser().getId(), material.getCourse().getId(), material.getId()));
+
+        long start = System.nanoTime();
+        long segments = 0;
+        int failed = 0;
+        for (CourseMaterial material : materials) {
+            Optional<Path> storedFile = materialFileStorage.find(material.getId());
+            if (storedFile.isEmpty()) continue;
+            try {
+                material.setStatus(MaterialStatus.INDEXING);
+                courseMaterialRepository.save(material);
+                IngestionResult result = ingestionService.ingestPdf(storedFile.get(), material.getFilename(),
+                        material.getCourse().getUser().getId(), material.getCourse().getId(), material.getId(),
+                        IngestionProgressListener.NONE, true);
+                material.setSegmentsEmbedded(result.segmentsEmbedded());
+                material.setSegmentsSkipped(result.segmentsSkipped());
+                material.setStatus(MaterialStatus.READY);
+                segments += result.segmentsEmbedded();
+            } catch (Exception e) {
+                log.error("Full re-index: material {} ({}) failed", material.getId(), material.getFilename(), e);
+                material.setStatus(MaterialStatus.FAILED);
+                failed++;
+            }
+            courseMaterialRepository.save(material);
+        }
+        double seconds = (System.nanoTime() - start) / 1_000_000_000d;
+        log.info("Full re-index: {} segments of {} materials ({} failed) in {} s, {} rows/s",
+                segments, materials.size(), failed, Math.round(seconds), Math.round(seconds > 0 ? segments / seconds : 0));
+
+        long buildStart = System.nanoTime();
+        PgVectorIndexes.ensure(dataSource, table, settings);
+        new JdbcTemplate(dataSource).execute("ANALYZE " + table);
+        log.info("Full re-index: rebuilt the ANN index in {} ms", (System.nanoTime() - buildStart) / 1_000_000);
+
+        int exitCode = failed > 0 ? 1 : 0;
+        System.exit(SpringApplication.exit(context, () -> exitCode));
+    }
+}
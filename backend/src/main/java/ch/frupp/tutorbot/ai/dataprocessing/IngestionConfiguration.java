@@ -0,0 +1,40 @@
+package ch.frupp.tutorbot.ai.dataprocessing;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+@Configuration
+public class IngestionConfiguration {
+
+    // Bounded pool for background PDF ingestion: uploads beyond workers + queue capacity are rejected
+    // instead of piling up parsed documents in memory.
+    @Bean
+    public ThreadPoolTaskExecutor ingestionExecutor(@Value("${app.ingestion.workers:2}") int workers,
+                                                    @Value("${app.ingestion.queue-capacity:16}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(workers);
+        executor.setMaxPoolSize(workers);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("ingestion-");
+        return executor;
+    }
+
+    // Worker pool of the embedding stage, sized to the available cores unless configured.
+    // When its queue is full the submitting ingestion thread embeds the batch itself.
+    @Bean
+    public ThreadPoolTaskExecutor embeddingExecutor(@Value("${app.ingestion.embedding.workers:0}") int workers,
+                                                    @Value("${app.ingestion.embedding.queue-capacity:64}") int queueCapacity) {
+        int poolSize = workers > 0 ? workers : Runtime.getRuntime().availableProcessors();
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setThreadNamePrefix("embedding-");
+        return executor;
+    }
+}
@@ -0,0 +1,117 @@
+package ch.frupp.tutorbot.ai.dataprocessing;
+
+import ch.frupp.tutorbot.course.material.MaterialStatus;
+import lombok.Getter;
+
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * In-memory progress of a single background PDF ingestion.
+ * Written by the ingestion worker, read by request threads polling or streaming the job.
+ */
+@Getter
+public class IngestionJob implements IngestionProgressListener {
+
+    private final String id = UUID.randomUUID().toString();
+    private final Integer userId;
+    private final Integer courseId;
+    private final Integer materialId;
+    private final String filename;
+    private final String contentHash;
+    private final Instant createdAt = Instant.now();
+    private final Kind kind;
+
+    private volatile MaterialStatus status = MaterialStatus.PENDING;
+    private volatile String error;
+    private volatile Instant finishedAt;
+    private volatile IngestionResult result;
+    // True when the upload was identical to an existing material and linked to it instead of ingested
+    private volatile boolean deduplicated;
+
+    private final AtomicInteger pagesParsed = new AtomicInteger();
+    private final AtomicInteger segmentsTotal = new AtomicInteger();
+    private final AtomicInteger segmentsEmbedded = new AtomicInteger();
+    private final AtomicInteger segmentsSkipped = new AtomicInteger();
+    private final AtomicInteger tokensUsed = new AtomicInteger();
+
+    // Notified after every change so subscribers can be updated
+    private final Consumer<IngestionJob> onChange;
+
+    public IngestionJob(Integer userId, Integer courseId, Integer materialId, String filename, String contentHash,
+                        Consumer<IngestionJob> onChange) {
+        this(Kind.INGEST, userId, courseId, materialId, filename, contentHash, onChange);
+    }
+
+    public IngestionJob(Kind kind, Integer userId, Integer courseId, Integer materialId, String filename, String contentHash,
+                        Consumer<IngestionJob> onChange) {
+        this.kind = kind;
+        this.userId = userId;
+        this.courseId = courseId;
+        this.materialId = materialId;
+        this.filename = filename;
+        this.contentHash = contentHash;
+        this.onChange = onChange;
+    }
+
+    public boolean isFinished() {
+        return status.isFinished();
+    }
+
+    public void setResult(IngestionResult result) {
+        this.result = result;
+    }
+
+    /**
+     * Marks the job as finished without ingesting anything: all of the material's segments are already stored.
+     */
+    public void markDeduplicated(int segments) {
+        this.deduplicated = true;
+        segmentsTotal.set(segments);
+        segmentsSkipped.set(segments);
+        updateStatus(MaterialStatus.READY, null);
+    }
+
+    public void updateStatus(MaterialStatus status, String error) {
+        this.status = status;
+        this.error = error;
+        if (status.isFinished()) {
+            this.finishedAt = Instant.now();
+        }
+        onChange.accept(this);
+    }
+
+    @Override
+    public void onPagesParsed(int pages) {
+        pagesParsed.addAndGet(pages);
+        onChange.accept(this);
+    }
+
+    @Override
+    public void onSegmentsSplit(int segments) {
+        segmentsTotal.addAndGet(segments);
+        onChange.accept(this);
+    }
+
+    @Override
+    public void onSegmentsSkipped(int segments) {
+        segmentsSkipped.addAndGet(segments);
+        onChange.accept(this);
+    }
+
+    @Override
+    public void onSegmentsEmbedded(int segments, int tokens) {
+        segmentsEmbedded.addAndGet(segments);
+        tokensUsed.addAndGet(tokens);
+        onChange.accept(this);
+    }
+
+    public enum Kind {
+        // Indexes the material from scratch, it is INDEXING until the job finishes
+        INGEST,
+        // Embeds only the segments a READY material is missing, it stays READY and searchable meanwhile
+        REPAIR
+    }
+}
@@ -0,0 +1,44 @@
+package ch.frupp.tutorbot.ai.dataprocessing;
+
+import ch.frupp.tutorbot.course.material.MaterialStatus;
+
+import java.time.Instant;
+
+public record IngestionJobDto(
+        String jobId,
+        Integer materialId,
+        Integer courseId,
+        String filename,
+        MaterialStatus status,
+        int pagesParsed,
+        int segmentsTotal,
+        int segmentsEmbedded,
+        int segmentsSkipped,
+        boolean deduplicated,
+        int tokensUsed,
+        Double segmentsPerSecond,
+        String error,
+        Instant createdAt,
+        Instant finishedAt
+) {
+    public static IngestionJobDto fromJob(IngestionJob job) {
+        if (job == null) return null;
+        return new IngestionJobDto(
+                job.getId(),
+                job.getMaterialId(),
+                job.getCourseId(),
+                job.getFilename(),
+                job.getStatus(),
+                job.getPagesParsed().get(),
+                job.getSegmentsTotal().get(),
+                job.getSegmentsEmbedded().get(),
+                job.getSegmentsSkipped().get(),
+                job.isDeduplicated(),
+                job.getTokensUsed().get(),
+                job.getResult() == null ? null : job.getResult().segmentsPerSecond(),
+                job.getError(),
+                job.getCreatedAt(),
+                job.getFinishedAt()
+        );
+    }
+}
@@ -0,0 +1,338 @@
+package ch.frupp.tutorbot.ai.dataprocessing;
+
+import ch.frupp.tutorbot.course.CourseRepository;
+import ch.frupp.tutorbot.course.material.CourseMaterial;
+import ch.frupp.tutorbot.course.material.CourseMaterialRepository;
+import ch.frupp.tutorbot.course.material.MaterialStatus;
+import ch.frupp.tutorbot.user.User;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Runs PDF ingestion on the bounded ingestion executor and keeps track of the running jobs,
+ * so uploads can return immediately and clients poll or stream the progress.
+ */
+@Slf4j
+@Service
+public class IngestionJobService {
+
+    private final PDFIngestionService ingestionService;
+    private final CourseMaterialRepository courseMaterialRepository;
+    private final CourseRepository courseRepository;
+    private final MaterialFileStorage materialFileStorage;
+    private final TaskExecutor ingestionExecutor;
+
+    private final Map<String, IngestionJob> jobs = new ConcurrentHashMap<>();
+    private final Map<String, List<SseEmitter>> emitters = new ConcurrentHashMap<>();
+
+    // How long finished jobs stay queryable
+    @Value("${app.ingestion.job-retention:PT1H}")
+    private Duration jobRetention = Duration.ofHours(1);
+
+    @Value("${app.ingestion.sse-timeout:PT30M}")
+    private Duration sseTimeout = Duration.ofMinutes(30);
+
+    public IngestionJobService(PDFIngestionService ingestionService,
+                               CourseMaterialRepository courseMaterialRepository,
+                               CourseRepository courseRepository,
+                               MaterialFileStorage materialFileStorage,
+                               @Qualifier("ingestionExecutor") TaskExecutor ingestionExecutor) {
+        this.ingestionService = ingestionService;
+        this.courseMaterialRepository = courseMaterialRepository;
+        this.courseRepository = courseRepository;
+        this.materialFileStorage = materialFileStorage;
+        this.ingestionExecutor = ingestionExecutor;
+    }
+
+    /**
+     * Registers the upload as a PENDING course material and queues its ingestion.
+     *
+     * @throws NoSuchElementException if the course does not exist
+     * @throws AccessDeniedException if the course belongs to another user
+     * @throws TaskRejectedException if the ingestion queue is full
+     */
+    public IngestionJob submit(MultipartFile file, Integer userId, Integer courseId) throws IOException {
+        // Before hashing: the deduplication below must never link to, or reveal, another user's materials
+        if (!courseRepository.existsByIdAndUserId(courseId, userId)) {
+            if (!courseRepository.existsById(courseId)) {
+                throw new NoSuchElementException("No course with id " + courseId);
+            }
+            throw new AccessDeniedException("The course " + courseId + " does not belong to the user " + userId);
+        }
+        purgeFinishedJobs();
+
+        // The multipart file is cleaned up when the request completes, so the worker needs its own copy
+        Path pdfFile = Files.createTempFile("uploaded", ".pdf");
+        String contentHash;
+        try {
+            contentHash = copyAndHash(file, pdfFile);
+        } catch (IOException e) {
+            deleteQuietly(pdfFile);
+            throw e;
+        }
+
+        // Identical file already being processed or indexed for this course: link instead of re-ingesting
+        Optional<IngestionJob> running = jobs.values().stream()
+                .filter(job -> !job.isFinished() && Objects.equals(job.getCourseId(), courseId) && contentHash.equals(job.getContentHash()))
+                .findFirst();
+        if (running.isPresent()) {
+            deleteQuietly(pdfFile);
+            log.info("Upload {} is identical to material {} which is still being ingested", file.getOriginalFilename(), running.get().getMaterialId());
+            return running.get();
+        }
+        Optional<CourseMaterial> existing = courseMaterialRepository.findFirstByCourseIdAndContentHashAndStatus(courseId, contentHash, MaterialStatus.READY);
+        if (existing.isPresent()) {
+            deleteQuietly(pdfFile);
+            return linkToExisting(existing.get(), userId, courseId);
+        }
+
+        // Create a CourseMaterial db entry to keep track of the file
+        CourseMaterial courseMaterial = courseMaterialRepository.save(CourseMaterial.builder()
+                .filename(file.getOriginalFilename())
+                .course(courseRepository.getReferenceById(courseId))
+                .status(MaterialStatus.PENDING)
+                .contentHash(contentHash)
+                .build());
+        log.info("Course db entry created: {}", courseMaterial);
+
+        // Keep the original file, so the material can be re-indexed later on
+        Path storedFile;
+        try {
+            storedFile = materialFileStorage.store(courseMaterial.getId(), pdfFile);
+        } catch (IOException e) {
+            courseMaterialRepository.delete(courseMaterial);
+            deleteQuietly(pdfFile);
+            throw e;
+        }
+
+        try {
+            return enqueue(courseMaterial, userId, courseId, storedFile);
+        } catch (TaskRejectedException e) {
+            log.warn("Ingestion queue full, rejecting upload {} (userId={}, courseId={})", courseMaterial.getFilename(), userId, courseId);
+            courseMaterialRepository.delete(courseMaterial);
+            materialFileStorage.delete(courseMaterial.getId());
+            throw e;
+        }
+    }
+
+    /**
+     * Drops the material's vectors and ingests its stored file again, leaving the rest of the course untouched.
+     *
+     * @throws IllegalStateException if the material is still being ingested or its original file is not available
+     * @throws TaskRejectedException if the ingestion queue is full
+     */
+    public IngestionJob reindex(CourseMaterial material) {
+        purgeFinishedJobs();
+        if (findRunningJob(material.getId()).isPresent()) {
+            throw new IllegalStateException("Material " + material.getId() + " is already being ingested");
+        }
+        Path storedFile = materialFileStorage.find(material.getId())
+                .orElseThrow(() -> new IllegalStateException("The original file of material " + material.getId() + " is not available"));
+
+        Integer userId = material.getCourse().getUser().getId();
+        Integer courseId = material.getCourse().getId();
+        ingestionService.removeMaterialEmbeddings(userId, courseId, material.getId());
+        material.setStatus(MaterialStatus.PENDING);
+        courseMaterialRepository.save(material);
+        log.info("Re-indexing material {} ({})", material.getId(), material.getFilename());
+        return enqueue(material, userId, courseId, storedFile);
+    }
+
+    /**
+     * Deletes the material with its vectors and stored file. Materials of the same course whose segments were
+     * skipped as duplicates may have relied on the deleted vectors, so they are repaired in the background: they stay
+     * READY and thanks to deduplication only the segments that are now missing get embedded and added to their counts.
+     */
+    public void deleteMaterial(User user, Integer materialId) throws Exception {
+        CourseMaterial deleted = ingestionService.deleteMaterialById(user, materialId);
+        Integer courseId = deleted.getCourse().getId();
+
+        for (CourseMaterial material : courseMaterialRepository.findByCourseId(courseId)) {
+            boolean mayShareSegments = material.getStatus() == MaterialStatus.READY
+                    && Objects.requireNonNullElse(material.getSegmentsSkipped(), 0) > 0;
+            if (!mayShareSegments || findRunningJob(material.getId()).isPresent()) continue;
+
+            Optional<Path> storedFile = materialFileStorage.find(material.getId());
+            if (storedFile.isEmpty()) continue;
+            try {
+                enqueue(IngestionJob.Kind.REPAIR, material, user.getId(), courseId, storedFile.get());
+            } catch (TaskRejectedException e) {
+                log.warn("Ingestion queue full, material {} may be missing segments shared with deleted material {}",
+                        material.getId(), materialId);
+            }
+        }
+    }
+
+    private IngestionJob enqueue(CourseMaterial material, Integer userId, Integer courseId, Path pdfFile) {
+        return enqueue(IngestionJob.Kind.INGEST, material, userId, courseId, pdfFile);
+    }
+
+    private IngestionJob enqueue(IngestionJob.Kind kind, CourseMaterial material, Integer userId, Integer courseId, Path pdfFile) {
+        IngestionJob job = new IngestionJob(kind, userId, courseId, material.getId(), material.getFilename(), material.getContentHash(), this::publish);
+        jobs.put(job.getId(), job);
+        try {
+            ingestionExecutor.execute(() -> runJob(job, pdfFile));
+        } catch (TaskRejectedException e) {
+            jobs.remove(job.getId());
+            throw e;
+        }
+        return job;
+    }
+
+    private Optional<IngestionJob> findRunningJob(Integer materialId) {
+        return jobs.values().stream()
+                .filter(job -> !job.isFinished() && Objects.equals(job.getMaterialId(), materialId))
+                .findFirst();
+    }
+
+    private IngestionJob linkToExisting(CourseMaterial material, Integer userId, Integer courseId) {
+        int segments = Objects.requireNonNullElse(material.getSegmentsEmbedded(), 0)
+                + Objects.requireNonNullElse(material.getSegmentsSkipped(), 0);
+        log.info("Upload is identical to material {} ({}), linking instead of re-ingesting {} segments",
+                material.getId(), material.getFilename(), segments);
+        IngestionJob job = new IngestionJob(userId, courseId, material.getId(), material.getFilename(), material.getContentHash(), this::publish);
+        job.markDeduplicated(segments);
+        jobs.put(job.getId(), job);
+        return job;
+    }
+
+    public Optional<IngestionJob> findJob(String jobId, Integer userId, Integer courseId) {
+        return Optional.ofNullable(jobs.get(jobId))
+                .filter(job -> Objects.equals(job.getUserId(), userId) && Objects.equals(job.getCourseId(), courseId));
+    }
+
+    /**
+     * Streams the job's progress as server-sent events. The current state is sent immediately,
+     * the stream completes once the job is READY or FAILED.
+     */
+    public SseEmitter subscribe(IngestionJob job) {
+        SseEmitter emitter = new SseEmitter(sseTimeout.toMillis());
+        List<SseEmitter> jobEmitters = emitters.computeIfAbsent(job.getId(), id -> new CopyOnWriteArrayList<>());
+        jobEmitters.add(emitter);
+        emitter.onCompletion(() -> jobEmitters.remove(emitter));
+        emitter.onTimeout(emitter::complete);
+        emitter.onError(e -> jobEmitters.remove(emitter));
+
+        send(emitter, job);
+        if (job.isFinished()) {
+            emitter.complete();
+        }
+        return emitter;
+    }
+
+    private void runJob(IngestionJob job, Path pdfFile) {
+        updateStatus(job, MaterialStatus.INDEXING, null);
+        try {
+            IngestionResult result = ingestionService.ingestPdf(pdfFile, job.getFilename(), job.getUserId(), job.getCourseId(), job.getMaterialId(), job);
+            job.setResult(result);
+            courseMaterialRepository.findById(job.getMaterialId()).ifPresent(material -> {
+                if (job.getKind() == IngestionJob.Kind.REPAIR) {
+                    // Everything else was skipped as already stored, only the embedded segments were missing
+                    int embedded = Objects.requireNonNullElse(material.getSegmentsEmbedded(), 0) + result.segmentsEmbedded();
+                    int skipped = Objects.requireNonNullElse(material.getSegmentsSkipped(), 0) - result.segmentsEmbedded();
+                    material.setSegmentsEmbedded(embedded);
+                    material.setSegmentsSkipped(Math.max(skipped, 0));
+                } else {
+                    material.setSegmentsEmbedded(result.segmentsEmbedded());
+                    material.setSegmentsSkipped(result.segmentsSkipped());
+                }
+                courseMaterialRepository.save(material);
+            });
+            updateStatus(job, MaterialStatus.READY, null);
+            log.info("Ingestion job {} ({}) for material {} finished: {}", job.getId(), job.getKind(), job.getMaterialId(), result);
+        } catch (Exception e) {
+            log.error("Ingestion job {} ({}) for material {} failed", job.getId(), job.getKind(), job.getMaterialId(), e);
+            // Segments stored before the failure would stay searchable under a FAILED material. A failed repair
+            // leaves the material READY with its own vectors intact, it only keeps missing the deleted ones.
+            if (job.getKind() == IngestionJob.Kind.INGEST) {
+                ingestionService.removeMaterialEmbeddings(job.getUserId(), job.getCourseId(), job.getMaterialId());
+            }
+            updateStatus(job, MaterialStatus.FAILED, e.getMessage());
+        } finally {
+            // The material was deleted while it was being indexed, don't leave its vectors behind
+            if (!courseMaterialRepository.existsById(job.getMaterialId())) {
+                ingestionService.removeMaterialEmbeddings(job.getUserId(), job.getCourseId(), job.getMaterialId());
+                materialFileStorage.delete(job.getMaterialId());
+            }
+        }
+    }
+
+    private void updateStatus(IngestionJob job, MaterialStatus status, String error) {
+        if (job.getKind() == IngestionJob.Kind.REPAIR) {
+            // The material stays READY while its missing segments are embedded
+            job.updateStatus(status, error);
+            return;
+        }
+        // The material may have been deleted while it was still being indexed
+        courseMaterialRepository.findById(job.getMaterialId()).ifPresent(material -> {
+            material.setStatus(status);
+            courseMaterialRepository.save(material);
+        });
+        job.updateStatus(status, error);
+    }
+
+    private void publish(IngestionJob job) {
+        List<SseEmitter> jobEmitters = emitters.get(job.getId());
+        if (jobEmitters == null) return;
+        for (SseEmitter emitter : jobEmitters) {
+            send(emitter, job);
+            if (job.isFinished()) {
+                emitter.complete();
+            }
+        }
+        if (job.isFinished()) {
+            emitters.remove(job.getId());
+        }
+    }
+
+    private void send(SseEmitter emitter, IngestionJob job) {
+        try {
+            emitter.send(SseEmitter.event().name("progress").data(IngestionJobDto.fromJob(job)));
+        } catch (IOException | IllegalStateException e) {
+            // Client went away, drop the subscription
+            emitter.completeWithError(e);
+        }
+    }
+
+    private void purgeFinishedJobs() {
+        Instant cutoff = Instant.now().minus(jobRetention);
+        jobs.values().removeIf(job -> job.getFinishedAt() != null && job.getFinishedAt().isBefore(cutoff));
+        emitters.keySet().retainAll(jobs.keySet());
+    }
+
+    private String copyAndHash(MultipartFile file, Path target) throws IOException {
+        MessageDigest digest = ContentHash.newDigest();
+        try (InputStream in = new DigestInputStream(file.getInputStream(), digest)) {
+            Files.copy(in, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        return ContentHash.toHex(digest);
+    }
+
+    private void deleteQuietly(Path file) {
+        try { Files.deleteIfExists(file); } catch (IOException ignored) {}
+    }
+}
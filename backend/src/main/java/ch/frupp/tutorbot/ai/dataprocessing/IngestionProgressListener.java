@@ -0,0 +1,19 @@
+package ch.frupp.tutorbot.ai.dataprocessing;
+
+/**
+ * Receives progress updates while a document is being parsed, split and embedded.
+ * Implementations must be thread-safe: {@link #onSegmentsEmbedded} is called from the embedding executor threads,
+ * possibly concurrently, the other callbacks on the ingestion worker thread.
+ */
+public interface IngestionProgressListener {
+
+    IngestionProgressListener NONE = new IngestionProgressListener() {};
+
+    default void onPagesParsed(int pages) {}
+
+    default void onSegmentsSplit(int segments) {}
+
+    default void onSegmentsSkipped(int segments) {}
+
+    default void onSegmentsEmbedded(int segments, int tokens) {}
+}
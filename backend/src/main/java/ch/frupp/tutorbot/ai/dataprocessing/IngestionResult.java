@@ -1,9 +1,13 @@
 package ch.frupp.tutorbot.ai.dataprocessing;
 
-public record IngestionResult(Integer inputTokens, Integer outputTokens, Integer totalTokens) {
+public record IngestionResult(Integer inputTokens, Integer outputTokens, Integer totalTokens,
+                              int segmentsEmbedded, int segmentsSkipped, double segmentsPerSecond) {
 
     public static IngestionResult empty() {
-        return new IngestionResult(0, 0, 0);
+        return new IngestionResult(0, 0, 0, 0, 0, 0);
     }
-}
 
+    public IngestionResult withSegmentsSkipped(int segmentsSkipped) {
+        return new IngestionResult(inputTokens, outputTokens, totalTokens, segmentsEmbedded, segmentsSkipped, segmentsPerSecond);
+    }
+}
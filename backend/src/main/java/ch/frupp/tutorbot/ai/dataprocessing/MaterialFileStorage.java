@@ -0,0 +1,50 @@
+package ch.frupp.tutorbot.ai.dataprocessing;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Optional;
+
+/**
+ * Keeps the original file of every uploaded course material, so a single material can be
+ * re-indexed without the user uploading it again.
+ */
+@Slf4j
+@Component
+public class MaterialFileStorage {
+
+    private final Path storageDirectory;
+
+    public MaterialFileStorage(@Value("${app.ingestion.storage-dir:uploads}") String storageDir) {
+        // Relative paths are resolved against the application's working directory, like the 'pdfs' directory
+        this.storageDirectory = Paths.get(System.getProperty("user.dir")).resolve(storageDir);
+    }
+
+    public Path store(Integer materialId, Path source) throws IOException {
+        Files.createDirectories(storageDirectory);
+        return Files.move(source, pathOf(materialId), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    public Optional<Path> find(Integer materialId) {
+        Path path = pathOf(materialId);
+        return Files.exists(path) ? Optional.of(path) : Optional.empty();
+    }
+
+    public void delete(Integer materialId) {
+        try {
+            Files.deleteIfExists(pathOf(materialId));
+        } catch (IOException e) {
+            log.warn("Could not delete stored file of material {}", materialId, e);
+        }
+    }
+
+    private Path pathOf(Integer materialId) {
+        return storageDirectory.resolve(materialId + ".pdf");
+    }
+}
@@ -1,33 +1,48 @@
 package ch.frupp.tutorbot.ai.dataprocessing;
 
-import ch.frupp.tutorbot.course.CourseRepository;
+import ch.frupp.tutorbot.course.CollectionVersion;
+import ch.frupp.tutorbot.course.KeysetPage;
 import ch.frupp.tutorbot.course.material.CourseMaterial;
+import ch.frupp.tutorbot.course.material.CourseMaterialDto;
 import ch.frupp.tutorbot.course.material.CourseMaterialRepository;
 import ch.frupp.tutorbot.user.User;
 import dev.langchain4j.data.document.Document;
+import dev.langchain4j.data.document.DocumentSplitter;
+import dev.langchain4j.data.document.Metadata;
 import dev.langchain4j.data.document.loader.FileSystemDocumentLoader;
-import dev.langchain4j.data.document.parser.TextDocumentParser;
-import dev.langchain4j.data.document.parser.apache.pdfbox.ApachePdfBoxDocumentParser;
 import dev.langchain4j.data.document.splitter.DocumentSplitters;
 import dev.langchain4j.data.segment.TextSegment;
-import dev.langchain4j.model.embedding.EmbeddingModel;
-import dev.langchain4j.model.output.TokenUsage;
 import dev.langchain4j.store.embedding.EmbeddingStore;
-import dev.langchain4j.store.embedding.EmbeddingStoreIngestor;
 import dev.langchain4j.store.embedding.filter.comparison.IsEqualTo;
 import dev.langchain4j.store.embedding.filter.logical.And;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.annotation.PostConstruct;
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.io.IOUtils;
+import org.apache.pdfbox.io.RandomAccessReadBufferedFile;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.text.PDFTextStripper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Component;
-import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 @Component
 public class PDFIngestionService {
@@ -36,17 +51,37 @@ public class PDFIngestionService {
     private final Logger logger = LoggerFactory.getLogger(PDFIngestionService.class);
 
     private final EmbeddingStore<TextSegment> embeddingStore;
-    private final EmbeddingModel embeddingModel;
+    private final EmbeddingPipeline embeddingPipeline;
+    private final SegmentHashIndex segmentHashIndex;
+    private final MaterialFileStorage materialFileStorage;
+    private final MeterRegistry meterRegistry;
+
+    // Ingestion metrics carry no user or course tags
+    private final Counter pagesParsed;
+    private final DistributionSummary pdfBytes;
+
+    // Metadata key of the 1-based page a segment was extracted from
+    public static final String PAGE_NUMBER = "page_number";
+    public static final String MATERIAL_ID = "materialid";
+
+    private final DocumentSplitter documentSplitter = DocumentSplitters.recursive(300, 30);
 
     // Resolve the 'pdfs' directory relative to the application's working directory.
     private final Path pdfsDirectory = Paths.get(System.getProperty("user.dir")).resolve("pdfs");
-    private final CourseRepository courseRepository;
 
-    public PDFIngestionService(EmbeddingStore<TextSegment> embeddingStore, EmbeddingModel embeddingModel, CourseMaterialRepository courseMaterialRepository, CourseRepository courseRepository) {
+    public PDFIngestionService(EmbeddingStore<TextSegment> embeddingStore, EmbeddingPipeline embeddingPipeline, SegmentHashIndex segmentHashIndex,
+                               MaterialFileStorage materialFileStorage, CourseMaterialRepository courseMaterialRepository,
+                               MeterRegistry meterRegistry) {
         this.embeddingStore = embeddingStore;
-        this.embeddingModel = embeddingModel;
+        this.embeddingPipeline = embeddingPipeline;
+        this.segmentHashIndex = segmentHashIndex;
+        this.materialFileStorage = materialFileStorage;
         this.courseMaterialRepository = courseMaterialRepository;
-        this.courseRepository = courseRepository;
+        this.meterRegistry = meterRegistry;
+        this.pagesParsed = Counter.builder("ingestion.pages")
+                .description("PDF pages parsed").register(meterRegistry);
+        this.pdfBytes = DistributionSummary.builder("ingestion.bytes")
+                .baseUnit("bytes").description("Size of ingested PDF files").register(meterRegistry);
     }
 
     @PostConstruct
@@ -77,110 +112,223 @@ public class PDFIngestionService {
     }
 
     public IngestionResult ingestDocuments(List<Document> documents, Integer userId, Integer courseId) {
+        return ingestDocuments(documents, userId, courseId, IngestionProgressListener.NONE);
+    }
+
+    public IngestionResult ingestDocuments(List<Document> documents, Integer userId, Integer courseId, IngestionProgressListener listener) {
         if (documents == null || documents.isEmpty()) {
             logger.info("No documents provided for ingestion (userId={}).", userId);
             return IngestionResult.empty();
         }
+        long start = System.nanoTime();
 
         List<Document> sanitizedDocuments = documents.stream()
+                .filter(Objects::nonNull)
                 .map(doc -> {
-                    if (doc == null || doc.text() == null) {
+                    if (doc.text() == null) {
                         return doc;
                     }
 
-                    logger.info("DEBUG: sanitizing document: {}", doc.text());
-
-                    String cleanText = doc.text().replace("\u0000", "");
-                    if (cleanText.equals(doc.text())) return doc;
+                    String cleanText = sanitize(doc.text());
+                    // sanitize() hands back the same instance when there was nothing to remove
+                    if (cleanText == doc.text()) return doc;
                     return Document.from(cleanText, doc.metadata());
                 })
                 .toList();
 
-        EmbeddingStoreIngestor ingestor = EmbeddingStoreIngestor.builder()
-                .documentSplitter(DocumentSplitters.recursive(300, 30))
-                .embeddingModel(embeddingModel)
-                .embeddingStore(embeddingStore)
-                .documentTransformer(document -> {
-                    if (userId != null) {
-                        document.metadata().put("userid", String.valueOf(userId));
-                    }
-                    if (courseId != null) {
-                        document.metadata().put("courseid", String.valueOf(courseId));
-                    }
-                    return document;
-                })
-                .build();
+        sanitizedDocuments.forEach(document -> tagOwner(document.metadata(), userId, courseId, null));
 
-        dev.langchain4j.store.embedding.IngestionResult result = ingestor.ingest(sanitizedDocuments);
-        TokenUsage usage = result.tokenUsage();
+        List<TextSegment> segments = documentSplitter.splitAll(sanitizedDocuments);
+        listener.onSegmentsSplit(segments.size());
 
-        Integer inputCount = usage.inputTokenCount();
-        Integer outputCount = usage.outputTokenCount();
-        Integer totalCount = usage.totalTokenCount();
+        List<TextSegment> newSegments = withoutKnownSegments(segments, new HashSet<>(), userId, courseId);
+        int skipped = segments.size() - newSegments.size();
+        if (skipped > 0) {
+            listener.onSegmentsSkipped(skipped);
+        }
 
-        logger.info("Document ingestion complete for userId={}: Input tokens: {} Output tokens: {} Total tokens: {}",
-                userId, inputCount, outputCount, totalCount);
+        IngestionResult result;
+        try {
+            result = embeddingPipeline.embedAndStore(newSegments, listener).withSegmentsSkipped(skipped);
+        } catch (RuntimeException e) {
+            recordDuration("documents", "failure", start);
+            throw e;
+        }
+        recordResult("documents", result, start);
+
+        logger.info("Document ingestion complete for userId={}: {} segments embedded, {} skipped, {} tokens, {} segments/s",
+                userId, result.segmentsEmbedded(), result.segmentsSkipped(), result.totalTokens(), Math.round(result.segmentsPerSecond()));
 
-        return new IngestionResult(inputCount, outputCount, totalCount);
+        return result;
     }
 
-    public IngestionResult ingestUploadedPdf(MultipartFile file, Integer userId, Integer courseId) throws IOException {
-        if (file == null || file.isEmpty()) {
-            logger.warn("Empty upload received for ingestion (userId={}).", userId);
-            return IngestionResult.empty();
+    /**
+     * Streams a PDF from disk into the embedding store page by page: each page is extracted, sanitized
+     * and split on its own and its segments are fed straight into the embedding stage, so peak heap
+     * depends on the page size rather than the document size. Segments are tagged with the material id,
+     * so they can later be removed or re-indexed per material. Called from the background ingestion job.
+     * Large documents switch to a COPY bulk load after {@code app.ingestion.bulk.min-segments} segments.
+     */
+    public IngestionResult ingestPdf(Path pdfFile, String filename, Integer userId, Integer courseId, Integer materialId,
+                                     IngestionProgressListener listener) throws IOException {
+        return ingestPdf(pdfFile, filename, userId, courseId, materialId, listener, false);
+    }
+
+    /**
+     * @param bulkLoad write all segments in one bulk load, e.g. when the whole table is re-indexed
+     */
+    public IngestionResult ingestPdf(Path pdfFile, String filename, Integer userId, Integer courseId, Integer materialId,
+                                     IngestionProgressListener listener, boolean bulkLoad) throws IOException {
+        long start = System.nanoTime();
+        pdfBytes.record(Files.size(pdfFile));
+        EmbeddingPipeline.Session session = bulkLoad ? embeddingPipeline.start(listener, 0) : embeddingPipeline.start(listener);
+        Set<String> seenHashes = new HashSet<>();
+        int skipped = 0;
+
+        IngestionResult result;
+        try {
+            // Back the parsed document with a temp file instead of the heap
+            try (PDDocument pdf = Loader.loadPDF(new RandomAccessReadBufferedFile(pdfFile.toFile()), IOUtils.createTempFileOnlyStreamCache())) {
+                PDFTextStripper stripper = new PDFTextStripper();
+                int pages = pdf.getNumberOfPages();
+                for (int page = 1; page <= pages; page++) {
+                    stripper.setStartPage(page);
+                    stripper.setEndPage(page);
+                    String text = sanitize(stripper.getText(pdf));
+                    listener.onPagesParsed(1);
+                    pagesParsed.increment();
+                    if (text.isBlank()) continue;
+
+                    Metadata metadata = Metadata.from(Document.FILE_NAME, filename).put(PAGE_NUMBER, page);
+                    tagOwner(metadata, userId, courseId, materialId);
+                    List<TextSegment> segments = documentSplitter.split(Document.from(text, metadata));
+                    listener.onSegmentsSplit(segments.size());
+
+                    List<TextSegment> newSegments = withoutKnownSegments(segments, seenHashes, userId, courseId);
+                    if (newSegments.size() < segments.size()) {
+                        skipped += segments.size() - newSegments.size();
+                        listener.onSegmentsSkipped(segments.size() - newSegments.size());
+                    }
+                    newSegments.forEach(session::add);
+                }
+            }
+            result = session.finish().withSegmentsSkipped(skipped);
+        } catch (IOException | RuntimeException e) {
+            session.abort();
+            recordDuration("pdf", "failure", start);
+            throw e;
+        }
+        recordResult("pdf", result, start);
+        logger.info("PDF ingestion complete for userId={} courseId={}: {} segments embedded, {} skipped, {} tokens, {} segments/s",
+                userId, courseId, result.segmentsEmbedded(), result.segmentsSkipped(), result.totalTokens(), Math.round(result.segmentsPerSecond()));
+        return result;
+    }
+
+    private void recordResult(String source, IngestionResult result, long start) {
+        recordDuration(source, "success", start);
+        Counter.builder("ingestion.segments").tag("source", source).tag("result", "embedded")
+                .description("Segments embedded or skipped as already stored").register(meterRegistry)
+                .increment(result.segmentsEmbedded());
+        Counter.builder("ingestion.segments").tag("source", source).tag("result", "skipped")
+                .description("Segments embedded or skipped as already stored").register(meterRegistry)
+                .increment(result.segmentsSkipped());
+        if (result.totalTokens() != null) {
+            Counter.builder("ingestion.tokens").tag("source", source).baseUnit("tokens")
+                    .description("Tokens embedded").register(meterRegistry)
+                    .increment(result.totalTokens());
         }
+    }
 
-        // Create a CourseMaterial db entry to keep track of the file
-        CourseMaterial courseMaterial = CourseMaterial.builder()
-                .filename(file.getOriginalFilename())
-                .course(courseRepository.getReferenceById(courseId))
-                .build();
-        courseMaterialRepository.save(courseMaterial);
-        logger.info("Course db entry created: {}", courseMaterial);
+    private void recordDuration(String source, String outcome, long start) {
+        Timer.builder("ingestion.duration").tag("source", source).tag("outcome", outcome)
+                .description("Time to parse, split, embed and store a document").publishPercentileHistogram()
+                .register(meterRegistry).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
 
-        Path tempDir = Files.createTempDirectory("pdfs");
-        Path tempFile = Files.createTempFile(tempDir, "uploaded", ".pdf");
-        try {
-            file.transferTo(tempFile.toFile());
-            List<Document> documents = FileSystemDocumentLoader.loadDocuments(tempDir, new ApachePdfBoxDocumentParser());
-            logger.info("Course successfully ingested: {}", courseMaterial);
-            return ingestDocuments(documents, userId, courseId);
-        } finally {
-            try { Files.deleteIfExists(tempDir); } catch (IOException ignored) {}
+    // Tags every segment with the hash of its text and drops segments that were already seen in this
+    // ingestion or are already stored for the course, so a re-uploaded or updated file only embeds what is new.
+    private List<TextSegment> withoutKnownSegments(List<TextSegment> segments, Set<String> seenHashes, Integer userId, Integer courseId) {
+        Map<String, TextSegment> segmentsByHash = new LinkedHashMap<>();
+        for (TextSegment segment : segments) {
+            String hash = ContentHash.sha256(segment.text());
+            segment.metadata().put(SegmentHashIndex.METADATA_KEY, hash);
+            if (seenHashes.add(hash)) {
+                segmentsByHash.put(hash, segment);
+            }
         }
+        if (userId != null && courseId != null && !segmentsByHash.isEmpty()) {
+            segmentsByHash.keySet().removeAll(segmentHashIndex.findExisting(userId, courseId, segmentsByHash.keySet()));
+        }
+        return List.copyOf(segmentsByHash.values());
+    }
+
+    private static void tagOwner(Metadata metadata, Integer userId, Integer courseId, Integer materialId) {
+        if (userId != null) {
+            metadata.put("userid", String.valueOf(userId));
+        }
+        if (courseId != null) {
+            metadata.put("courseid", String.valueOf(courseId));
+        }
+        // Lets a single material's vectors be deleted or re-indexed without touching the rest of the course
+        if (materialId != null) {
+            metadata.put(MATERIAL_ID, String.valueOf(materialId));
+        }
+    }
+
+    // PDF text may contain NUL characters, which Postgres rejects in text columns.
+    // Only copies the text when there is something to remove. Public for the benchmarks module.
+    public static String sanitize(String text) {
+        return text.indexOf('\u0000') < 0 ? text : text.replace("\u0000", "");
     }
 
-    public List<CourseMaterial> getMaterialsByCourse(User user, Integer courseId) {
-        var materials = courseMaterialRepository.findByCourseId(courseId);
-        logger.info("Course materials found for user {} : {}", user, materials);
-        return materials;
+    public KeysetPage<CourseMaterialDto> getMaterialsByCourse(User user, Integer courseId, Integer after, int limit) {
+        var rows = courseMaterialRepository.findPageByCourseId(courseId, user.getId(), after == null ? 0 : after, Limit.of(limit + 1));
+        logger.info("{} course materials found for user {} in course {} after id {}", Math.min(rows.size(), limit), user.getId(), courseId, after);
+        return KeysetPage.of(rows, limit, CourseMaterialDto::id);
     }
 
-    public void deleteMaterialById(User user, Integer materialId) throws Exception {
-        CourseMaterial courseMaterial = courseMaterialRepository.findById(materialId).orElseThrow();
-        // Validation: Check user owns material
-        if (Objects.equals(user.getId(), courseMaterial.getCourse().getUser().getId())) {
-            this.deleteMaterial(courseMaterial);
-        } else {
-            throw new Exception("The Course Material to be deleted does not belong to the user {}");
+    public CollectionVersion materialsVersion(User user, Integer courseId) {
+        return courseMaterialRepository.findVersionByCourseId(courseId, user.getId());
+    }
+
+    public CourseMaterial findOwnedMaterial(User user, Integer materialId) throws Exception {
+        Optional<CourseMaterial> owned = courseMaterialRepository.findOwnedById(materialId, user.getId());
+        if (owned.isPresent()) {
+            return owned.get();
+        }
+        // Only the failure path needs a second query, to tell a missing material from someone else's
+        if (!courseMaterialRepository.existsById(materialId)) {
+            throw new NoSuchElementException("No course material with id " + materialId);
         }
+        throw new Exception("The Course Material does not belong to the user " + user.getId());
+    }
 
+    public CourseMaterial deleteMaterialById(User user, Integer materialId) throws Exception {
+        CourseMaterial courseMaterial = findOwnedMaterial(user, materialId);
+        this.deleteMaterial(courseMaterial);
+        return courseMaterial;
     }
 
     public void deleteMaterial(CourseMaterial courseMaterial) {
 
-        // Remove from the embedding store
-        String userId = String.valueOf(courseMaterial.getCourse().getUser().getId());
-        String courseId = String.valueOf(courseMaterial.getCourse().getId());
-        embeddingStore.removeAll(new And(
-                new IsEqualTo("userid", userId),
-                new IsEqualTo("courseid", courseId)
-        ));
+        // Remove only this material's vectors from the embedding store
+        removeMaterialEmbeddings(courseMaterial.getCourse().getUser().getId(), courseMaterial.getCourse().getId(), courseMaterial.getId());
 
         // Remove from the DB
         courseMaterialRepository.delete(courseMaterial);
+        materialFileStorage.delete(courseMaterial.getId());
         logger.info("Course db entry and embeddings deleted: {}", courseMaterial);
 
     }
 
+    public void removeMaterialEmbeddings(Integer userId, Integer courseId, Integer materialId) {
+        embeddingStore.removeAll(new And(
+                new And(
+                        new IsEqualTo("userid", String.valueOf(userId)),
+                        new IsEqualTo("courseid", String.valueOf(courseId))
+                ),
+                new IsEqualTo(MATERIAL_ID, String.valueOf(materialId))
+        ));
+    }
+
 }
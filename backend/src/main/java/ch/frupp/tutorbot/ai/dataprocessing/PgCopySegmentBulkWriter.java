@@ -0,0 +1,203 @@
+package ch.frupp.tutorbot.ai.dataprocessing;
+
+import ch.frupp.tutorbot.ai.RAGConfiguration;
+import ch.frupp.tutorbot.ai.hotcache.CourseScope;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Streams segments into the pgvector table with {@code COPY ... FROM STDIN (FORMAT binary)}: no per-row statement
+ * parsing, JSON rendering in the driver or text parsing of the vectors on the server, and a single transaction per load.
+ * Rows are encoded in the layout of the table created by {@code PgVectorEmbeddingStore} (uuid, vector, text and
+ * json or jsonb metadata). Metrics: {@code ingestion.bulk.rows} and {@code ingestion.bulk.duration}.
+ */
+@Slf4j
+@Component
+@Profile("!loadtest")
+public class PgCopySegmentBulkWriter implements SegmentBulkWriter {
+
+    private static final String COPY_SQL = "COPY %s (embedding_id, embedding, text, metadata) FROM STDIN (FORMAT binary)"
+            .formatted(RAGConfiguration.EMBEDDING_TABLE);
+
+    // Signature, flags and header extension length of the binary COPY format
+    private static final byte[] HEADER = {'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xFF, '\r', '\n', 0, 0, 0, 0, 0, 0, 0, 0, 0};
+    private static final byte[] TRAILER = {(byte) 0xFF, (byte) 0xFF};
+    private static final byte JSONB_VERSION = 1;
+
+    private final DataSource dataSource;
+    private final ObjectMapper objectMapper;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Counter rowsWritten;
+    private final Timer loadTimer;
+
+    private volatile Boolean jsonbMetadata;
+
+    public PgCopySegmentBulkWriter(DataSource dataSource, ObjectMapper objectMapper, ApplicationEventPublisher eventPublisher,
+                                   MeterRegistry meterRegistry) {
+        this.dataSource = dataSource;
+        this.objectMapper = objectMapper;
+        this.eventPublisher = eventPublisher;
+        this.rowsWritten = Counter.builder("ingestion.bulk.rows")
+                .description("Segments written with COPY").register(meterRegistry);
+        this.loadTimer = Timer.builder("ingestion.bulk.duration")
+                .description("Time from opening a COPY load to its commit, including the embedding of its segments")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Load open() {
+        if (jsonbMetadata == null) {
+            jsonbMetadata = "jsonb".equals(new JdbcTemplate(dataSource).queryForObject(
+                    "SELECT data_type FROM information_schema.columns WHERE table_name = ? AND column_name = 'metadata'",
+                    String.class, RAGConfiguration.EMBEDDING_TABLE));
+        }
+        Connection connection = null;
+        try {
+            connection = dataSource.getConnection();
+            CopyIn copyIn = connection.unwrap(PGConnection.class).getCopyAPI().copyIn(COPY_SQL);
+            copyIn.writeToCopy(HEADER, 0, HEADER.length);
+            return new CopyLoad(connection, copyIn, jsonbMetadata);
+        } catch (SQLException e) {
+            closeQuietly(connection);
+            throw new IllegalStateException("Could not start COPY into " + RAGConfiguration.EMBEDDING_TABLE, e);
+        }
+    }
+
+    // One tuple per segment: field count, then length-prefixed uuid, vector, text and metadata
+    static byte[] encode(ObjectMapper objectMapper, boolean jsonb, List<Embedding> embeddings, List<TextSegment> segments) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(segments.size() * 2048);
+        try (DataOutputStream out = new DataOutputStream(buffer)) {
+            for (int i = 0; i < segments.size(); i++) {
+                float[] vector = embeddings.get(i).vector();
+                byte[] text = segments.get(i).text().getBytes(StandardCharsets.UTF_8);
+                byte[] metadata = objectMapper.writeValueAsBytes(segments.get(i).metadata().toMap());
+                UUID id = UUID.randomUUID();
+
+                out.writeShort(4);
+                out.writeInt(16);
+                out.writeLong(id.getMostSignificantBits());
+                out.writeLong(id.getLeastSignificantBits());
+                // pgvector's binary format: dimension, unused, then the floats
+                out.writeInt(4 + 4 * vector.length);
+                out.writeShort(vector.length);
+                out.writeShort(0);
+                for (float value : vector) out.writeFloat(value);
+                out.writeInt(text.length);
+                out.write(text);
+                if (jsonb) {
+                    out.writeInt(metadata.length + 1);
+                    out.writeByte(JSONB_VERSION);
+                } else {
+                    out.writeInt(metadata.length);
+                }
+                out.write(metadata);
+            }
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unserializable segment metadata", e);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return buffer.toByteArray();
+    }
+
+    private void closeQuietly(Connection connection) {
+        if (connection == null) return;
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            log.warn("Could not close the COPY connection", e);
+        }
+    }
+
+    private final class CopyLoad implements Load {
+
+        private final Connection connection;
+        private final CopyIn copyIn;
+        private final boolean jsonb;
+        private final Set<CourseScope> courses = ConcurrentHashMap.newKeySet();
+        private final long startedAt = System.nanoTime();
+        private boolean finished;
+
+        private CopyLoad(Connection connection, CopyIn copyIn, boolean jsonb) {
+            this.connection = connection;
+            this.copyIn = copyIn;
+            this.jsonb = jsonb;
+        }
+
+        @Override
+        public void write(List<Embedding> embeddings, List<TextSegment> segments) {
+            // Encoded outside the lock, the workers only serialize on the stream itself
+            byte[] rows = encode(objectMapper, jsonb, embeddings, segments);
+            segments.forEach(segment -> CourseScope.of(segment.metadata()).ifPresent(courses::add));
+            synchronized (this) {
+                if (finished) throw new IllegalStateException("The COPY load is already finished");
+                try {
+                    copyIn.writeToCopy(rows, 0, rows.length);
+                } catch (SQLException e) {
+                    throw new IllegalStateException("COPY into " + RAGConfiguration.EMBEDDING_TABLE + " failed", e);
+                }
+            }
+        }
+
+        @Override
+        public synchronized long commit() {
+            if (finished) throw new IllegalStateException("The COPY load is already finished");
+            long rows;
+            try {
+                copyIn.writeToCopy(TRAILER, 0, TRAILER.length);
+                rows = copyIn.endCopy();
+            } catch (SQLException e) {
+                throw new IllegalStateException("COPY into " + RAGConfiguration.EMBEDDING_TABLE + " failed", e);
+            } finally {
+                finished = true;
+                closeQuietly(connection);
+            }
+            long nanos = System.nanoTime() - startedAt;
+            loadTimer.record(nanos, TimeUnit.NANOSECONDS);
+            rowsWritten.increment(rows);
+            double seconds = nanos / 1_000_000_000d;
+            log.info("Bulk loaded {} segments into {} in {} ms ({} rows/s)",
+                    rows, RAGConfiguration.EMBEDDING_TABLE, Math.round(seconds * 1000), Math.round(seconds > 0 ? rows / seconds : 0));
+            eventPublisher.publishEvent(new SegmentsBulkLoadedEvent(Set.copyOf(courses), rows));
+            return rows;
+        }
+
+        @Override
+        public synchronized void close() {
+            if (finished) return;
+            finished = true;
+            try {
+                if (copyIn.isActive()) copyIn.cancelCopy();
+            } catch (SQLException e) {
+                log.warn("Could not cancel the COPY into {}", RAGConfiguration.EMBEDDING_TABLE, e);
+            } finally {
+                closeQuietly(connection);
+            }
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package ch.frupp.tutorbot.ai.dataprocessing;
+
+import ch.frupp.tutorbot.ai.RAGConfiguration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Reads segment hashes straight from the pgvector table: the EmbeddingStore API can only search by
+ * similarity, not list metadata.
+ */
+@Component
+@Profile("!loadtest")
+public class PgVectorSegmentHashIndex implements SegmentHashIndex {
+
+    // Keep the IN list well below the JDBC parameter limit
+    private static final int LOOKUP_CHUNK_SIZE = 1000;
+
+    private static final String FIND_EXISTING_SQL = "SELECT DISTINCT metadata->>'" + METADATA_KEY + "' FROM " + RAGConfiguration.EMBEDDING_TABLE +
+            " WHERE metadata->>'userid' = :userId AND metadata->>'courseid' = :courseId" +
+            " AND metadata->>'" + METADATA_KEY + "' IN (:hashes)";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public PgVectorSegmentHashIndex(NamedParameterJdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public Set<String> findExisting(Integer userId, Integer courseId, Collection<String> segmentHashes) {
+        Set<String> existing = new HashSet<>();
+        List<String> hashes = List.copyOf(segmentHashes);
+        for (int from = 0; from < hashes.size(); from += LOOKUP_CHUNK_SIZE) {
+            MapSqlParameterSource params = new MapSqlParameterSource()
+                    .addValue("userId", String.valueOf(userId))
+                    .addValue("courseId", String.valueOf(courseId))
+                    .addValue("hashes", hashes.subList(from, Math.min(from + LOOKUP_CHUNK_SIZE, hashes.size())));
+            existing.addAll(jdbcTemplate.queryForList(FIND_EXISTING_SQL, params, String.class));
+        }
+        return existing;
+    }
+}
@@ -0,0 +1,34 @@
+package ch.frupp.tutorbot.ai.dataprocessing;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+
+import java.util.List;
+
+/**
+ * Write path of large ingestions: streams embedded segments into the vector table in one load instead of
+ * batched {@code EmbeddingStore.addAll} calls. The segments become visible when the load is committed.
+ */
+public interface SegmentBulkWriter {
+
+    Load open();
+
+    interface Load extends AutoCloseable {
+
+        /**
+         * Thread-safe, the embedding workers write their batches concurrently.
+         */
+        void write(List<Embedding> embeddings, List<TextSegment> segments);
+
+        /**
+         * Makes the written segments visible and returns their number.
+         */
+        long commit();
+
+        /**
+         * Discards the load unless it was committed.
+         */
+        @Override
+        void close();
+    }
+}
@@ -0,0 +1,15 @@
+package ch.frupp.tutorbot.ai.dataprocessing;
+
+import java.util.Collection;
+import java.util.Set;
+
+/**
+ * Looks up which segment content hashes are already stored in the embedding store for a course,
+ * so re-uploaded or updated material only embeds new segments.
+ */
+public interface SegmentHashIndex {
+
+    String METADATA_KEY = "segmenthash";
+
+    Set<String> findExisting(Integer userId, Integer courseId, Collection<String> segmentHashes);
+}
@@ -0,0 +1,12 @@
+package ch.frupp.tutorbot.ai.dataprocessing;
+
+import ch.frupp.tutorbot.ai.hotcache.CourseScope;
+
+import java.util.Set;
+
+/**
+ * Published after a bulk load was committed. The rows bypassed the embedding store, so caches of the
+ * affected courses have to be dropped.
+ */
+public record SegmentsBulkLoadedEvent(Set<CourseScope> courses, long rows) {
+}
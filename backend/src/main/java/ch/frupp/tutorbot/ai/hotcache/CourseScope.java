@@ -0,0 +1,43 @@
+package ch.frupp.tutorbot.ai.hotcache;
+
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.store.embedding.filter.Filter;
+import dev.langchain4j.store.embedding.filter.comparison.IsEqualTo;
+import dev.langchain4j.store.embedding.filter.logical.And;
+
+import java.util.Optional;
+
+/**
+ * The segments of one course, identified by the {@code userid} and {@code courseid} metadata every segment carries.
+ */
+public record CourseScope(String userId, String courseId) {
+
+    /**
+     * The scope of the retriever's course filter ({@code userid = ? AND courseid = ?}); empty for any other filter.
+     */
+    public static Optional<CourseScope> of(Filter filter) {
+        if (!(filter instanceof And and)
+                || !(and.left() instanceof IsEqualTo left)
+                || !(and.right() instanceof IsEqualTo right)) {
+            return Optional.empty();
+        }
+        String userId = value("userid", left, right);
+        String courseId = value("courseid", left, right);
+        return userId == null || courseId == null ? Optional.empty() : Optional.of(new CourseScope(userId, courseId));
+    }
+
+    public static Optional<CourseScope> of(Metadata metadata) {
+        if (metadata == null) return Optional.empty();
+        Object userId = metadata.toMap().get("userid");
+        Object courseId = metadata.toMap().get("courseid");
+        return userId == null || courseId == null
+                ? Optional.empty()
+                : Optional.of(new CourseScope(userId.toString(), courseId.toString()));
+    }
+
+    private static String value(String key, IsEqualTo left, IsEqualTo right) {
+        if (key.equals(left.key())) return String.valueOf(left.comparisonValue());
+        if (key.equals(right.key())) return String.valueOf(right.comparisonValue());
+        return null;
+    }
+}
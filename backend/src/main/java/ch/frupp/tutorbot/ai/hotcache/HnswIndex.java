@@ -0,0 +1,414 @@
+package ch.frupp.tutorbot.ai.hotcache;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.RelevanceScore;
+import dev.langchain4j.store.embedding.filter.Filter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory HNSW graph over the segments of one course. Vectors are normalized on insert and kept in a single
+ * flat {@code float[]}, so cosine similarity is a dot product over primitive memory; layer 0 links live in one
+ * flat {@code int[]} as well. Small courses are searched exactly, the graph is only built once the course has
+ * more than {@code exactSearchLimit} segments. Only the normalized vectors are kept, so the embedding of a match
+ * is the unit-length copy of the vector that was added, not the original.
+ * <p>
+ * Removed segments stay in the graph as tombstones that searches walk through but never return;
+ * {@link #needsRebuild()} tells the owner when so many are deleted that the index should be loaded again.
+ * Searches share a read lock, writes take the write lock.
+ */
+public final class HnswIndex {
+
+    public record Settings(int dimension, int m, int efConstruction, int exactSearchLimit) {
+    }
+
+    // Object headers, the id string and the segment's text and metadata map besides the raw characters
+    private static final int SEGMENT_OVERHEAD_BYTES = 256;
+
+    private final int dimension;
+    private final int m;
+    private final int maxConnections0;
+    private final int efConstruction;
+    private final int exactSearchLimit;
+    private final double levelMultiplier;
+    private final Random random = new Random(42);
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private float[] vectors = new float[0];
+    private String[] ids = new String[0];
+    private TextSegment[] segments = new TextSegment[0];
+    private int[] levels = new int[0];
+    // Per node: link count followed by maxConnections0 slots
+    private int[] layer0 = new int[0];
+    // Per node and layer >= 1: link count followed by m slots; null for nodes that only live on layer 0
+    private int[][][] upperLayers = new int[0][][];
+    private final BitSet deleted = new BitSet();
+    private final Map<String, Integer> nodesById = new HashMap<>();
+
+    private int size;
+    private int deletedCount;
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+    private boolean graph;
+    private long textBytes;
+    private long upperLayerBytes;
+
+    public HnswIndex(Settings settings) {
+        this.dimension = settings.dimension();
+        this.m = settings.m();
+        this.maxConnections0 = 2 * settings.m();
+        this.efConstruction = settings.efConstruction();
+        this.exactSearchLimit = settings.exactSearchLimit();
+        this.levelMultiplier = 1 / Math.log(settings.m());
+    }
+
+    /**
+     * Adds a segment; an id that is already present replaces the old entry.
+     */
+    public void add(String id, float[] vector, TextSegment segment) {
+        checkDimension(vector);
+        lock.writeLock().lock();
+        try {
+            Integer existing = nodesById.get(id);
+            if (existing != null) {
+                markDeleted(existing);
+            }
+            int node = size;
+            ensureCapacity(node + 1);
+            size++;
+            normalizeInto(vector, vectors, node * dimension);
+            ids[node] = id;
+            segments[node] = segment;
+            levels[node] = (int) (-Math.log(1 - random.nextDouble()) * levelMultiplier);
+            nodesById.put(id, node);
+            textBytes += segment == null ? 0 : 2L * segment.text().length();
+
+            if (graph) {
+                link(node);
+            } else if (size > exactSearchLimit) {
+                graph = true;
+                for (int i = 0; i < size; i++) {
+                    link(i);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int remove(Collection<String> removedIds) {
+        lock.writeLock().lock();
+        try {
+            int removed = 0;
+            for (String id : removedIds) {
+                Integer node = nodesById.get(id);
+                if (node != null) {
+                    markDeleted(node);
+                    removed++;
+                }
+            }
+            return removed;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int removeMatching(Filter filter) {
+        lock.writeLock().lock();
+        try {
+            int removed = 0;
+            for (int node = 0; node < size; node++) {
+                if (!deleted.get(node) && segments[node] != null && filter.test(segments[node].metadata())) {
+                    markDeleted(node);
+                    removed++;
+                }
+            }
+            return removed;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns up to {@code maxResults} matches from the most to the least similar; their embeddings are normalized.
+     */
+    public List<EmbeddingMatch<TextSegment>> search(float[] queryVector, int maxResults, double minScore, int efSearch) {
+        checkDimension(queryVector);
+        float[] query = new float[dimension];
+        normalizeInto(queryVector, query, 0);
+        lock.readLock().lock();
+        try {
+            int[] nodes = graph ? searchGraph(query, Math.max(efSearch, maxResults)) : searchExact(query, maxResults);
+            List<EmbeddingMatch<TextSegment>> matches = new ArrayList<>(Math.min(maxResults, nodes.length));
+            for (int node : nodes) {
+                if (matches.size() == maxResults) break;
+                if (deleted.get(node)) continue;
+                double score = RelevanceScore.fromCosineSimilarity(dot(query, 0, node));
+                // Nodes come in descending similarity order
+                if (score < minScore) break;
+                int offset = node * dimension;
+                matches.add(new EmbeddingMatch<>(score, ids[node],
+                        Embedding.from(Arrays.copyOfRange(vectors, offset, offset + dimension)), segments[node]));
+            }
+            return matches;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size - deletedCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * True once a quarter of the nodes are tombstones: they still cost memory and search time.
+     */
+    public boolean needsRebuild() {
+        lock.readLock().lock();
+        try {
+            return deletedCount > 64 && deletedCount * 4 > size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long estimatedBytes() {
+        lock.readLock().lock();
+        try {
+            return 4L * vectors.length + 4L * layer0.length + 4L * levels.length + upperLayerBytes
+                    + 8L * (ids.length + segments.length + upperLayers.length)
+                    + textBytes + (long) SEGMENT_OVERHEAD_BYTES * size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void checkDimension(float[] vector) {
+        if (vector.length != dimension) {
+            throw new IllegalArgumentException("Expected a vector of dimension " + dimension + " but got " + vector.length);
+        }
+    }
+
+    private void markDeleted(int node) {
+        if (!deleted.get(node)) {
+            deleted.set(node);
+            deletedCount++;
+        }
+        nodesById.remove(ids[node], node);
+    }
+
+    private int[] searchExact(float[] query, int maxResults) {
+        NodeHeap best = new NodeHeap(maxResults + 1, false);
+        for (int node = 0; node < size; node++) {
+            if (deleted.get(node)) continue;
+            float score = dot(query, 0, node);
+            if (best.size() < maxResults || score > best.peekScore()) {
+                best.push(node, score);
+                if (best.size() > maxResults) best.pop();
+            }
+        }
+        return best.drainDescending();
+    }
+
+    private int[] searchGraph(float[] query, int ef) {
+        int entry = entryPoint;
+        for (int level = maxLevel; level > 0; level--) {
+            entry = greedyClosest(query, 0, entry, level);
+        }
+        return searchLayer(query, 0, entry, ef, 0, true);
+    }
+
+    private void link(int node) {
+        int level = levels[node];
+        if (entryPoint < 0) {
+            entryPoint = node;
+            maxLevel = level;
+            allocateUpperLayers(node, level);
+            return;
+        }
+        allocateUpperLayers(node, level);
+        int queryOffset = node * dimension;
+        int entry = entryPoint;
+        for (int l = maxLevel; l > level; l--) {
+            entry = greedyClosest(vectors, queryOffset, entry, l);
+        }
+        for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+            // Tombstones stay linkable, they keep their neighbourhood connected
+            int[] candidates = searchLayer(vectors, queryOffset, entry, efConstruction, l, false);
+            int[] selected = selectNeighbours(node, candidates, m);
+            int[] links = links(node, l);
+            int base = linkBase(node, l);
+            System.arraycopy(selected, 0, links, base + 1, selected.length);
+            links[base] = selected.length;
+            for (int neighbour : selected) {
+                connect(neighbour, node, l);
+            }
+            if (candidates.length > 0) entry = candidates[0];
+        }
+        if (level > maxLevel) {
+            maxLevel = level;
+            entryPoint = node;
+        }
+    }
+
+    // Adds the reverse link; a full neighbour list is pruned again with the selection heuristic
+    private void connect(int from, int to, int level) {
+        int[] links = links(from, level);
+        int base = linkBase(from, level);
+        int capacity = level == 0 ? maxConnections0 : m;
+        int count = links[base];
+        if (count < capacity) {
+            links[base + 1 + count] = to;
+            links[base] = count + 1;
+            return;
+        }
+        NodeHeap closest = new NodeHeap(count + 1, false);
+        int fromOffset = from * dimension;
+        closest.push(to, dot(vectors, fromOffset, to));
+        for (int i = 0; i < count; i++) {
+            int neighbour = links[base + 1 + i];
+            closest.push(neighbour, dot(vectors, fromOffset, neighbour));
+        }
+        int[] selected = selectNeighbours(from, closest.drainDescending(), capacity);
+        System.arraycopy(selected, 0, links, base + 1, selected.length);
+        links[base] = selected.length;
+    }
+
+    /**
+     * The HNSW neighbour heuristic: walking the candidates from the most similar, a candidate is kept only if it
+     * is closer to the node than to every neighbour kept so far. Links then point in different directions instead
+     * of into one dense cluster, which keeps the graph navigable.
+     */
+    private int[] selectNeighbours(int node, int[] candidatesDescending, int max) {
+        int nodeOffset = node * dimension;
+        int[] selected = new int[Math.min(max, candidatesDescending.length)];
+        int count = 0;
+        for (int candidate : candidatesDescending) {
+            if (count == selected.length) break;
+            if (candidate == node) continue;
+            float similarity = dot(vectors, nodeOffset, candidate);
+            int candidateOffset = candidate * dimension;
+            boolean diverse = true;
+            for (int i = 0; i < count && diverse; i++) {
+                diverse = dot(vectors, candidateOffset, selected[i]) < similarity;
+            }
+            if (diverse) selected[count++] = candidate;
+        }
+        return Arrays.copyOf(selected, count);
+    }
+
+    private int greedyClosest(float[] query, int queryOffset, int entry, int level) {
+        int current = entry;
+        float best = dot(query, queryOffset, current);
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            int[] links = links(current, level);
+            int base = linkBase(current, level);
+            for (int i = 0; i < links[base]; i++) {
+                int neighbour = links[base + 1 + i];
+                float score = dot(query, queryOffset, neighbour);
+                if (score > best) {
+                    best = score;
+                    current = neighbour;
+                    improved = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Beam search on one layer, returns up to ef nodes from the most to the least similar. With {@code liveOnly}
+     * tombstones are still traversed but don't take a place in the results, so deletions can't shorten them.
+     */
+    private int[] searchLayer(float[] query, int queryOffset, int entry, int ef, int level, boolean liveOnly) {
+        BitSet visited = new BitSet(size);
+        visited.set(entry);
+        float entryScore = dot(query, queryOffset, entry);
+        NodeHeap candidates = new NodeHeap(ef * 2, true);
+        NodeHeap results = new NodeHeap(ef + 1, false);
+        candidates.push(entry, entryScore);
+        if (!liveOnly || !deleted.get(entry)) {
+            results.push(entry, entryScore);
+        }
+        while (candidates.size() > 0) {
+            if (results.size() >= ef && candidates.peekScore() < results.peekScore()) break;
+            int current = candidates.pop();
+            int[] links = links(current, level);
+            int base = linkBase(current, level);
+            for (int i = 0; i < links[base]; i++) {
+                int neighbour = links[base + 1 + i];
+                if (visited.get(neighbour)) continue;
+                visited.set(neighbour);
+                float score = dot(query, queryOffset, neighbour);
+                if (results.size() < ef || score > results.peekScore()) {
+                    candidates.push(neighbour, score);
+                    if (!liveOnly || !deleted.get(neighbour)) {
+                        results.push(neighbour, score);
+                        if (results.size() > ef) results.pop();
+                    }
+                }
+            }
+        }
+        return results.drainDescending();
+    }
+
+    private int[] links(int node, int level) {
+        return level == 0 ? layer0 : upperLayers[node][level - 1];
+    }
+
+    private int linkBase(int node, int level) {
+        return level == 0 ? node * (maxConnections0 + 1) : 0;
+    }
+
+    private void allocateUpperLayers(int node, int level) {
+        if (level == 0 || upperLayers[node] != null) return;
+        upperLayers[node] = new int[level][m + 1];
+        upperLayerBytes += (long) level * 4 * (m + 1);
+    }
+
+    private float dot(float[] query, int queryOffset, int node) {
+        int offset = node * dimension;
+        float sum = 0;
+        for (int i = 0; i < dimension; i++) {
+            sum += query[queryOffset + i] * vectors[offset + i];
+        }
+        return sum;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= ids.length) return;
+        int grown = Math.max(capacity, Math.max(16, ids.length + (ids.length >> 1)));
+        vectors = Arrays.copyOf(vectors, grown * dimension);
+        ids = Arrays.copyOf(ids, grown);
+        segments = Arrays.copyOf(segments, grown);
+        levels = Arrays.copyOf(levels, grown);
+        layer0 = Arrays.copyOf(layer0, grown * (maxConnections0 + 1));
+        upperLayers = Arrays.copyOf(upperLayers, grown);
+    }
+
+    private static void normalizeInto(float[] vector, float[] target, int offset) {
+        double norm = 0;
+        for (float v : vector) norm += v * v;
+        float inverse = norm == 0 ? 0 : (float) (1 / Math.sqrt(norm));
+        for (int i = 0; i < vector.length; i++) {
+            target[offset + i] = vector[i] * inverse;
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package ch.frupp.tutorbot.ai.hotcache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingSearchResult;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import dev.langchain4j.store.embedding.filter.Filter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * EmbeddingStore decorator that answers course-scoped searches (the retriever's {@code userid}/{@code courseid}
+ * filter) from in-memory HNSW indexes of recently used courses. A course is loaded from the delegate's table on
+ * its first search; courses are evicted once their estimated size exceeds {@code maxBytes}. Writes go to the
+ * delegate first and are then applied to the loaded indexes, so a cached course never misses its new segments.
+ * Searches without a course scope go straight to the delegate.
+ * <p>
+ * Metrics: {@code cache.gets{cache=rag-hot-courses}} (hit ratio), {@code cache.evictions},
+ * {@code rag.hotcache.memory}, {@code rag.hotcache.segments}, {@code rag.hotcache.load} and {@code rag.hotcache.bypassed}.
+ */
+@Slf4j
+public class HotCourseEmbeddingStore implements EmbeddingStore<TextSegment> {
+
+    public static final String CACHE_NAME = "rag-hot-courses";
+    private static final int MAX_LOAD_ATTEMPTS = 3;
+
+    private final EmbeddingStore<TextSegment> delegate;
+    private final Function<CourseScope, HnswIndex> loader;
+    private final Cache<CourseScope, HnswIndex> indexes;
+    private final int efSearch;
+    private final Timer loadTimer;
+    private final Counter bypassed;
+
+    // Removals that happen while a course is read from the table may be missed by the load, which then reads again
+    private final AtomicLong removals = new AtomicLong();
+
+    public HotCourseEmbeddingStore(EmbeddingStore<TextSegment> delegate, Function<CourseScope, HnswIndex> loader, long maxBytes,
+                                   int efSearch, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.loader = loader;
+        this.efSearch = efSearch;
+        this.indexes = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((CourseScope scope, HnswIndex index) -> (int) Math.min(Integer.MAX_VALUE, index.estimatedBytes()))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, indexes, CACHE_NAME);
+        Gauge.builder("rag.hotcache.memory", indexes, cache -> cache.policy().eviction()
+                        .map(eviction -> eviction.weightedSize().orElse(0L)).orElse(0L))
+                .description("Estimated heap used by the cached course indexes")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("rag.hotcache.segments", indexes, cache -> cache.asMap().values().stream().mapToLong(HnswIndex::size).sum())
+                .description("Segments held by the cached course indexes")
+                .register(meterRegistry);
+        this.loadTimer = Timer.builder("rag.hotcache.load")
+                .description("Time to read a course's segments and build its index")
+                .register(meterRegistry);
+        this.bypassed = Counter.builder("rag.hotcache.bypassed")
+                .description("Searches without a course scope, sent to the delegate")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public EmbeddingSearchResult<TextSegment> search(EmbeddingSearchRequest request) {
+        Optional<CourseScope> scope = CourseScope.of(request.filter());
+        if (scope.isEmpty()) {
+            bypassed.increment();
+            return delegate.search(request);
+        }
+        HnswIndex index = indexes.get(scope.get(), this::load);
+        if (index.needsRebuild()) {
+            indexes.invalidate(scope.get());
+            index = indexes.get(scope.get(), this::load);
+        }
+        return new EmbeddingSearchResult<>(index.search(request.queryEmbedding().vector(), request.maxResults(), request.minScore(), efSearch));
+    }
+
+    /**
+     * Drops a course whose rows were written past this store, it is loaded again on its next search.
+     */
+    public void invalidate(CourseScope scope) {
+        indexes.invalidate(scope);
+    }
+
+    private HnswIndex load(CourseScope scope) {
+        return loadTimer.record(() -> {
+            HnswIndex index = null;
+            for (int attempt = 0; attempt < MAX_LOAD_ATTEMPTS; attempt++) {
+                long removalsBefore = removals.get();
+                index = loader.apply(scope);
+                if (removals.get() == removalsBefore) break;
+            }
+            log.debug("Loaded {} segments of course {} into the hot cache", index.size(), scope.courseId());
+            return index;
+        });
+    }
+
+    @Override
+    public String add(Embedding embedding) {
+        return delegate.add(embedding);
+    }
+
+    @Override
+    public void add(String id, Embedding embedding) {
+        delegate.add(id, embedding);
+    }
+
+    @Override
+    public String add(Embedding embedding, TextSegment segment) {
+        String id = delegate.add(embedding, segment);
+        addToLoaded(List.of(id), List.of(embedding), List.of(segment));
+        return id;
+    }
+
+    @Override
+    public List<String> addAll(List<Embedding> embeddings) {
+        return delegate.addAll(embeddings);
+    }
+
+    @Override
+    public List<String> addAll(List<Embedding> embeddings, List<TextSegment> segments) {
+        List<String> ids = delegate.generateIds(embeddings.size());
+        addAll(ids, embeddings, segments);
+        return ids;
+    }
+
+    @Override
+    public void addAll(List<String> ids, List<Embedding> embeddings, List<TextSegment> segments) {
+        delegate.addAll(ids, embeddings, segments);
+        addToLoaded(ids, embeddings, segments);
+    }
+
+    @Override
+    public void remove(String id) {
+        removeAll(List.of(id));
+    }
+
+    @Override
+    public void removeAll(Collection<String> ids) {
+        delegate.removeAll(ids);
+        removals.incrementAndGet();
+        indexes.asMap().values().forEach(index -> index.remove(ids));
+    }
+
+    @Override
+    public void removeAll(Filter filter) {
+        delegate.removeAll(filter);
+        removals.incrementAndGet();
+        indexes.asMap().values().forEach(index -> index.removeMatching(filter));
+    }
+
+    @Override
+    public void removeAll() {
+        delegate.removeAll();
+        removals.incrementAndGet();
+        indexes.invalidateAll();
+    }
+
+    // computeIfPresent waits for a load of the same course in progress, an id the index already has is replaced
+    private void addToLoaded(List<String> ids, List<Embedding> embeddings, List<TextSegment> segments) {
+        if (segments == null) return;
+        Map<CourseScope, List<Integer>> byScope = new LinkedHashMap<>();
+        for (int i = 0; i < segments.size(); i++) {
+            int position = i;
+            CourseScope.of(segments.get(i).metadata())
+                    .ifPresent(scope -> byScope.computeIfAbsent(scope, s -> new ArrayList<>()).add(position));
+        }
+        // Returning the index re-weighs it against the memory cap
+        byScope.forEach((scope, positions) -> indexes.asMap().computeIfPresent(scope, (s, index) -> {
+            positions.forEach(i -> index.add(ids.get(i), embeddings.get(i).vector(), segments.get(i)));
+            return index;
+        }));
+    }
+}
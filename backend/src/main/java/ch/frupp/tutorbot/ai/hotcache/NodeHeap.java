@@ -0,0 +1,80 @@
+package ch.frupp.tutorbot.ai.hotcache;
+
+import java.util.Arrays;
+
+/**
+ * Binary heap of graph nodes keyed by similarity, on primitive arrays so the HNSW search doesn't box a
+ * candidate object per visited node. {@code max} heaps pop the most similar node first, min heaps the least.
+ */
+final class NodeHeap {
+
+    private final boolean max;
+    private int[] nodes;
+    private float[] scores;
+    private int size;
+
+    NodeHeap(int capacity, boolean max) {
+        this.max = max;
+        this.nodes = new int[Math.max(capacity, 4)];
+        this.scores = new float[nodes.length];
+    }
+
+    int size() {
+        return size;
+    }
+
+    float peekScore() {
+        return scores[0];
+    }
+
+    void push(int node, float score) {
+        if (size == nodes.length) {
+            nodes = Arrays.copyOf(nodes, size * 2);
+            scores = Arrays.copyOf(scores, size * 2);
+        }
+        int i = size++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!before(score, scores[parent])) break;
+            nodes[i] = nodes[parent];
+            scores[i] = scores[parent];
+            i = parent;
+        }
+        nodes[i] = node;
+        scores[i] = score;
+    }
+
+    int pop() {
+        int top = nodes[0];
+        int lastNode = nodes[--size];
+        float lastScore = scores[size];
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) break;
+            if (child + 1 < size && before(scores[child + 1], scores[child])) child++;
+            if (!before(scores[child], lastScore)) break;
+            nodes[i] = nodes[child];
+            scores[i] = scores[child];
+            i = child;
+        }
+        nodes[i] = lastNode;
+        scores[i] = lastScore;
+        return top;
+    }
+
+    /**
+     * Empties a min heap into an array ordered from the most to the least similar node.
+     */
+    int[] drainDescending() {
+        int[] drained = new int[size];
+        for (int i = drained.length - 1; i >= 0; i--) {
+            drained[i] = pop();
+        }
+        return drained;
+    }
+
+    private boolean before(float a, float b) {
+        return max ? a > b : a < b;
+    }
+}
@@ -0,0 +1,39 @@
+package ch.frupp.tutorbot.ai.hotcache;
+
+import ch.frupp.tutorbot.ai.PgVectors;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.langchain4j.data.segment.TextSegment;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.util.function.Function;
+
+/**
+ * Reads all segments of a course from the pgvector table into a new {@link HnswIndex}. Uses the owner
+ * metadata index, the same rows the retriever's course filter selects.
+ */
+public class PgVectorCourseLoader implements Function<CourseScope, HnswIndex> {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final HnswIndex.Settings settings;
+    private final String selectSql;
+
+    public PgVectorCourseLoader(DataSource dataSource, String table, ObjectMapper objectMapper, HnswIndex.Settings settings) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.objectMapper = objectMapper;
+        this.settings = settings;
+        this.selectSql = "SELECT embedding_id, embedding::text AS embedding, text, metadata::text AS metadata FROM %s WHERE metadata->>'userid' = ? AND metadata->>'courseid' = ?"
+                .formatted(table);
+    }
+
+    @Override
+    public HnswIndex apply(CourseScope scope) {
+        HnswIndex index = new HnswIndex(settings);
+        jdbcTemplate.query(selectSql, rs -> {
+            float[] vector = PgVectors.parse(rs.getString("embedding"));
+            index.add(rs.getString("embedding_id"), vector, TextSegment.from(rs.getString("text"), PgVectors.metadata(objectMapper, rs.getString("metadata"))));
+        }, scope.userId(), scope.courseId());
+        return index;
+    }
+}
@@ -0,0 +1,90 @@
+package ch.frupp.tutorbot.ai.metrics;
+
+import dev.langchain4j.model.chat.listener.ChatModelErrorContext;
+import dev.langchain4j.model.chat.listener.ChatModelListener;
+import dev.langchain4j.model.chat.listener.ChatModelRequestContext;
+import dev.langchain4j.model.chat.listener.ChatModelResponseContext;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.output.TokenUsage;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Chat model listener that records the latency and token usage of every model request, tagged with the
+ * model and the AI service method that caused it ({@code none} for direct calls). Time spent waiting in the
+ * bulkhead is not included. Metrics: {@code ai.llm.request{model,method,outcome}} and
+ * {@code ai.llm.tokens{model,method,type}}.
+ */
+public class ChatModelMetrics implements ChatModelListener {
+
+    private static final String START = "metrics.start";
+    private static final String METHOD = "metrics.method";
+
+    private final MeterRegistry meterRegistry;
+
+    public ChatModelMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    // Called on the thread that sends the request, the response may arrive on another one
+    @Override
+    public void onRequest(ChatModelRequestContext context) {
+        context.attributes().put(START, System.nanoTime());
+        String method = MeteredAiService.currentMethod();
+        context.attributes().put(METHOD, method != null ? method : "none");
+    }
+
+    @Override
+    public void onResponse(ChatModelResponseContext context) {
+        String model = model(context.chatRequest());
+        String method = method(context.attributes());
+        record(context.attributes(), model, method, "success");
+
+        TokenUsage usage = context.chatResponse().tokenUsage();
+        if (usage != null) {
+            countTokens(model, method, "input", usage.inputTokenCount());
+            countTokens(model, method, "output", usage.outputTokenCount());
+        }
+    }
+
+    @Override
+    public void onError(ChatModelErrorContext context) {
+        record(context.attributes(), model(context.chatRequest()), method(context.attributes()), "error");
+    }
+
+    private void record(Map<Object, Object> attributes, String model, String method, String outcome) {
+        if (!(attributes.get(START) instanceof Long start)) return;
+        Timer.builder("ai.llm.request")
+                .tag("model", model)
+                .tag("method", method)
+                .tag("outcome", outcome)
+                .description("Time the model took to answer a request")
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    private void countTokens(String model, String method, String type, Integer count) {
+        if (count == null) return;
+        Counter.builder("ai.llm.tokens")
+                .tag("model", model)
+                .tag("method", method)
+                .tag("type", type)
+                .baseUnit("tokens")
+                .description("Tokens processed by the model")
+                .register(meterRegistry)
+                .increment(count);
+    }
+
+    private static String model(ChatRequest request) {
+        return request != null && request.modelName() != null ? request.modelName() : "unknown";
+    }
+
+    private static String method(Map<Object, Object> attributes) {
+        return attributes.get(METHOD) instanceof String method ? method : "none";
+    }
+}
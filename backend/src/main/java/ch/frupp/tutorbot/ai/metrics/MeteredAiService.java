@@ -0,0 +1,203 @@
+package ch.frupp.tutorbot.ai.metrics;
+
+import ch.frupp.tutorbot.ai.bulkhead.LlmOverloadedException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.rag.content.Content;
+import dev.langchain4j.service.TokenStream;
+import dev.langchain4j.service.output.OutputParsingException;
+import dev.langchain4j.service.tool.ToolExecution;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Wraps an AiServices proxy and times every method. TokenStream methods are timed from {@code start()} to the
+ * complete response or error, and their time to the first token is recorded as well. The current method is
+ * exposed through {@link #currentMethod()} so {@link ChatModelMetrics} can tag the model calls it causes.
+ * Metrics: {@code ai.assistant.invocation{service,method,outcome}}, {@code ai.assistant.first.token{service,method}}
+ * and {@code ai.assistant.parse.failures{service,method}} (responses that were not valid JSON for the return type).
+ */
+public final class MeteredAiService implements InvocationHandler {
+
+    private static final ThreadLocal<String> CURRENT_METHOD = new ThreadLocal<>();
+
+    private final Object target;
+    private final String service;
+    private final MeterRegistry meterRegistry;
+
+    private MeteredAiService(Object target, String service, MeterRegistry meterRegistry) {
+        this.target = target;
+        this.service = service;
+        this.meterRegistry = meterRegistry;
+    }
+
+    public static <T> T wrap(Class<T> type, T target, MeterRegistry meterRegistry) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                new MeteredAiService(target, type.getSimpleName(), meterRegistry)));
+    }
+
+    /**
+     * The AI service method running on this thread, or null.
+     */
+    public static String currentMethod() {
+        return CURRENT_METHOD.get();
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        if (method.getDeclaringClass() == Object.class) {
+            return method.invoke(target, args);
+        }
+        String name = method.getName();
+        if (TokenStream.class.equals(method.getReturnType())) {
+            return new MeteredTokenStream((TokenStream) call(method, args), name);
+        }
+
+        String previous = CURRENT_METHOD.get();
+        CURRENT_METHOD.set(name);
+        long start = System.nanoTime();
+        try {
+            Object result = call(method, args);
+            record(name, "success", start);
+            return result;
+        } catch (Throwable e) {
+            record(name, failed(name, e), start);
+            throw e;
+        } finally {
+            CURRENT_METHOD.set(previous);
+        }
+    }
+
+    private Object call(Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private void record(String method, String outcome, long start) {
+        Timer.builder("ai.assistant.invocation")
+                .tag("service", service)
+                .tag("method", method)
+                .tag("outcome", outcome)
+                .description("AI service calls including retrieval and model time")
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    private String failed(String method, Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof LlmOverloadedException) {
+                return "overloaded";
+            }
+            if (cause instanceof OutputParsingException || cause instanceof JsonProcessingException) {
+                Counter.builder("ai.assistant.parse.failures")
+                        .tag("service", service)
+                        .tag("method", method)
+                        .description("Model responses that could not be parsed into the return type")
+                        .register(meterRegistry)
+                        .increment();
+                return "parse_error";
+            }
+        }
+        return "error";
+    }
+
+    /**
+     * Times a streamed response. Only the handlers the caller registers are wrapped, so the stream keeps
+     * its own validation of missing error handlers.
+     */
+    private final class MeteredTokenStream implements TokenStream {
+
+        private final TokenStream delegate;
+        private final String method;
+        private final AtomicBoolean firstToken = new AtomicBoolean();
+        private volatile long start;
+
+        private MeteredTokenStream(TokenStream delegate, String method) {
+            this.delegate = delegate;
+            this.method = method;
+        }
+
+        @Override
+        public TokenStream onPartialResponse(Consumer<String> handler) {
+            delegate.onPartialResponse(token -> {
+                if (firstToken.compareAndSet(false, true)) {
+                    Timer.builder("ai.assistant.first.token")
+                            .tag("service", service)
+                            .tag("method", method)
+                            .description("Time from starting a stream to its first token")
+                            .publishPercentileHistogram()
+                            .register(meterRegistry)
+                            .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                }
+                handler.accept(token);
+            });
+            return this;
+        }
+
+        @Override
+        public TokenStream onRetrieved(Consumer<List<Content>> handler) {
+            delegate.onRetrieved(handler);
+            return this;
+        }
+
+        @Override
+        public TokenStream onToolExecuted(Consumer<ToolExecution> handler) {
+            delegate.onToolExecuted(handler);
+            return this;
+        }
+
+        @Override
+        public TokenStream onCompleteResponse(Consumer<ChatResponse> handler) {
+            delegate.onCompleteResponse(response -> {
+                record(method, "success", start);
+                handler.accept(response);
+            });
+            return this;
+        }
+
+        @Override
+        public TokenStream onError(Consumer<Throwable> handler) {
+            delegate.onError(error -> {
+                record(method, failed(method, error), start);
+                handler.accept(error);
+            });
+            return this;
+        }
+
+        @Override
+        public TokenStream ignoreErrors() {
+            delegate.ignoreErrors();
+            return this;
+        }
+
+        @Override
+        public void start() {
+            String previous = CURRENT_METHOD.get();
+            CURRENT_METHOD.set(method);
+            start = System.nanoTime();
+            try {
+                delegate.start();
+            } catch (RuntimeException e) {
+                // E.g. rejected by the bulkhead before the request was sent
+                record(method, failed(method, e), start);
+                throw e;
+            } finally {
+                CURRENT_METHOD.set(previous);
+            }
+        }
+    }
+}
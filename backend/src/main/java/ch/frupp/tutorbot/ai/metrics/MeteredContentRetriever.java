@@ -0,0 +1,64 @@
+package ch.frupp.tutorbot.ai.metrics;
+
+import dev.langchain4j.invocation.InvocationParameters;
+import dev.langchain4j.rag.content.Content;
+import dev.langchain4j.rag.content.ContentMetadata;
+import dev.langchain4j.rag.content.retriever.ContentRetriever;
+import dev.langchain4j.rag.query.Query;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.List;
+
+/**
+ * ContentRetriever decorator that records retrieval latency, the number of results and their similarity
+ * scores. Queries are tagged by filter scope ({@code course} or {@code user}) only, never by user or course id.
+ * Metrics: {@code rag.retrieval{scope}}, {@code rag.retrieval.results{scope}} and {@code rag.retrieval.score{scope}}.
+ */
+public class MeteredContentRetriever implements ContentRetriever {
+
+    private static final double[] SCORE_BUCKETS = {0.3, 0.4, 0.5, 0.6, 0.7, 0.8, 0.9, 0.95};
+
+    private final ContentRetriever delegate;
+    private final MeterRegistry meterRegistry;
+
+    public MeteredContentRetriever(ContentRetriever delegate, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public List<Content> retrieve(Query query) {
+        String scope = scope(query);
+        List<Content> contents = Timer.builder("rag.retrieval")
+                .tag("scope", scope)
+                .description("Time to embed the query and search the embedding store")
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(() -> delegate.retrieve(query));
+
+        DistributionSummary.builder("rag.retrieval.results")
+                .tag("scope", scope)
+                .description("Segments returned per retrieval")
+                .register(meterRegistry)
+                .record(contents.size());
+        DistributionSummary scores = DistributionSummary.builder("rag.retrieval.score")
+                .tag("scope", scope)
+                .description("Similarity score of the retrieved segments")
+                .serviceLevelObjectives(SCORE_BUCKETS)
+                .register(meterRegistry);
+        for (Content content : contents) {
+            if (content.metadata().get(ContentMetadata.SCORE) instanceof Number score) {
+                scores.record(score.doubleValue());
+            }
+        }
+        return contents;
+    }
+
+    private static String scope(Query query) {
+        InvocationParameters parameters = query.metadata() == null ? null : query.metadata().invocationParameters();
+        if (parameters == null || parameters.get("userid") == null) return "none";
+        return parameters.get("courseid") != null ? "course" : "user";
+    }
+}
@@ -0,0 +1,70 @@
+package ch.frupp.tutorbot.ai.metrics;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.List;
+
+/**
+ * EmbeddingModel decorator that times the model. Metrics: {@code embedding.model.embed{model,operation}}
+ * (latency of single and batch calls) and {@code embedding.model.batch.size{model}} (segments per batch call).
+ */
+public class MeteredEmbeddingModel implements EmbeddingModel {
+
+    private final EmbeddingModel delegate;
+    private final Timer singleTimer;
+    private final Timer batchTimer;
+    private final DistributionSummary batchSize;
+
+    public MeteredEmbeddingModel(EmbeddingModel delegate, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        String model = delegate.modelName() != null ? delegate.modelName() : delegate.getClass().getSimpleName();
+        this.singleTimer = embedTimer(model, "single", meterRegistry);
+        this.batchTimer = embedTimer(model, "batch", meterRegistry);
+        this.batchSize = DistributionSummary.builder("embedding.model.batch.size")
+                .tag("model", model)
+                .description("Segments per embedAll call")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Response<Embedding> embed(String text) {
+        return singleTimer.record(() -> delegate.embed(text));
+    }
+
+    @Override
+    public Response<Embedding> embed(TextSegment textSegment) {
+        return singleTimer.record(() -> delegate.embed(textSegment));
+    }
+
+    @Override
+    public Response<List<Embedding>> embedAll(List<TextSegment> textSegments) {
+        batchSize.record(textSegments.size());
+        return batchTimer.record(() -> delegate.embedAll(textSegments));
+    }
+
+    @Override
+    public int dimension() {
+        return delegate.dimension();
+    }
+
+    @Override
+    public String modelName() {
+        return delegate.modelName();
+    }
+
+    private static Timer embedTimer(String model, String operation, MeterRegistry meterRegistry) {
+        return Timer.builder("embedding.model.embed")
+                .tag("model", model)
+                .tag("operation", operation)
+                .description("Time spent in the embedding model")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+}
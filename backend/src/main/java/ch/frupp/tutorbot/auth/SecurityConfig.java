@@ -1,6 +1,9 @@
 package ch.frupp.tutorbot.auth;
 
 import ch.frupp.tutorbot.auth.demo.DemoReadOnlyFilter;
+import ch.frupp.tutorbot.auth.demo.DemoResponseCacheFilter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.autoconfigure.security.servlet.EndpointRequest;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -19,6 +22,7 @@ import org.springframework.security.web.authentication.logout.HeaderWriterLogout
 import org.springframework.security.web.context.HttpSessionSecurityContextRepository;
 import org.springframework.security.web.context.SecurityContextRepository;
 import org.springframework.security.web.header.writers.ClearSiteDataHeaderWriter;
+import org.springframework.security.web.util.matcher.AndRequestMatcher;
 
 @Configuration
 @EnableWebSecurity
@@ -49,12 +53,18 @@ public class SecurityConfig {
     @Bean
     SecurityFilterChain securityFilterChain(HttpSecurity http, AuthenticationProvider authenticationProvider,
                                            SecurityContextRepository securityContextRepository,
-                                           DemoReadOnlyFilter demoReadOnlyFilter) throws Exception {
+                                           DemoReadOnlyFilter demoReadOnlyFilter,
+                                           DemoResponseCacheFilter demoResponseCacheFilter,
+                                           @Value("${management.server.port:-1}") int managementPort) throws Exception {
 
         http.csrf(AbstractHttpConfigurer::disable);
         http.authorizeHttpRequests(auth ->
                 auth
                         .requestMatchers("/api/auth/register", "/api/auth/login").permitAll()
+                        // Scraped by Prometheus, the metrics carry no user data. Only on the management port, which
+                        // is not published: the scraper has to be on the same network as the backend
+                        .requestMatchers(new AndRequestMatcher(EndpointRequest.to("health", "prometheus"),
+                                request -> request.getLocalPort() == managementPort)).permitAll()
                         .requestMatchers("/api/**").authenticated()
                         .anyRequest().authenticated()
         );
@@ -63,6 +73,8 @@ public class SecurityConfig {
         http.securityContext(ctx -> ctx.securityContextRepository(securityContextRepository));
 
         http.addFilterBefore(demoReadOnlyFilter, AuthorizationFilter.class);
+        // Demo GETs are answered from memory once the user is known to be the demo account
+        http.addFilterAfter(demoResponseCacheFilter, DemoReadOnlyFilter.class);
 
         http.sessionManagement(session -> {
                 session.maximumSessions(1).maxSessionsPreventsLogin(true);
@@ -18,12 +18,7 @@ public class DemoReadOnlyFilter extends OncePerRequestFilter {
 	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
 			throws ServletException, IOException {
 
-		Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-
-		boolean isDemoUser = authentication != null
-				&& authentication.isAuthenticated()
-				&& authentication.getAuthorities().stream()
-				.anyMatch(authority -> "ROLE_DEMO".equals(authority.getAuthority()));
+		boolean isDemoUser = isDemoUser(SecurityContextHolder.getContext().getAuthentication());
 
 		boolean isMutatingRequest = switch (request.getMethod()) {
 			case "POST", "PUT", "PATCH", "DELETE" -> true;
@@ -39,4 +34,11 @@ public class DemoReadOnlyFilter extends OncePerRequestFilter {
 
 		filterChain.doFilter(request, response);
 	}
+
+	static boolean isDemoUser(Authentication authentication) {
+		return authentication != null
+				&& authentication.isAuthenticated()
+				&& authentication.getAuthorities().stream()
+				.anyMatch(authority -> "ROLE_DEMO".equals(authority.getAuthority()));
+	}
 }
@@ -0,0 +1,187 @@
+package ch.frupp.tutorbot.auth.demo;
+
+import ch.frupp.tutorbot.bootstrap.demo.DemoDataSeededEvent;
+import ch.frupp.tutorbot.course.CourseController;
+import ch.frupp.tutorbot.course.CourseDto;
+import ch.frupp.tutorbot.course.KeysetPage;
+import ch.frupp.tutorbot.course.material.CourseMaterialController;
+import ch.frupp.tutorbot.course.topic.TopicController;
+import ch.frupp.tutorbot.course.topic.TopicDto;
+import ch.frupp.tutorbot.course.topic.quiz.QuizController;
+import ch.frupp.tutorbot.course.topic.summary.SummaryStatus;
+import ch.frupp.tutorbot.user.User;
+import ch.frupp.tutorbot.user.UserRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * Responses of the GET endpoints for the read-only demo account, keyed by path and query. The demo data only
+ * changes when {@code DemoDataSeeder} runs, so there is no expiry: the cache is filled at startup by calling the
+ * controllers as the demo user and rebuilt when the seeder publishes {@link DemoDataSeededEvent}. Requests
+ * that weren't pre-warmed (other pages, single quizzes) are added on first use by {@link DemoResponseCacheFilter}.
+ * <p>
+ * The seeder usually runs as its own process before the app starts; seeding a running app from outside needs
+ * a restart to be picked up.
+ */
+@Component
+@Slf4j
+public class DemoResponseCache {
+
+	public static final String CACHE_NAME = "demo-responses";
+	private static final String DEMO_ROLE = "DEMO";
+	private static final int ENTRY_OVERHEAD_BYTES = 256;
+
+	private final Cache<String, CachedResponse> cache;
+	private final UserRepository userRepository;
+	private final CourseController courseController;
+	private final CourseMaterialController courseMaterialController;
+	private final TopicController topicController;
+	private final QuizController quizController;
+	private final ObjectMapper objectMapper;
+	private final boolean enabled;
+
+	public DemoResponseCache(UserRepository userRepository, CourseController courseController,
+							 CourseMaterialController courseMaterialController, TopicController topicController,
+							 QuizController quizController, ObjectMapper objectMapper, MeterRegistry meterRegistry,
+							 @Value("${app.demo.response-cache.enabled:true}") boolean enabled,
+							 @Value("${app.demo.response-cache.max-bytes:16777216}") long maxBytes) {
+		this.userRepository = userRepository;
+		this.courseController = courseController;
+		this.courseMaterialController = courseMaterialController;
+		this.topicController = topicController;
+		this.quizController = quizController;
+		this.objectMapper = objectMapper;
+		this.enabled = enabled;
+		this.cache = Caffeine.newBuilder()
+				.maximumWeight(maxBytes)
+				.weigher((String key, CachedResponse response) -> ENTRY_OVERHEAD_BYTES + key.length() * 2 + response.body().length)
+				.recordStats()
+				.build();
+		CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public CachedResponse get(String key) {
+		return cache.getIfPresent(key);
+	}
+
+	public void put(String key, CachedResponse response) {
+		cache.put(key, response);
+	}
+
+	@EventListener(ApplicationReadyEvent.class)
+	public void warmOnStartup() {
+		warm();
+	}
+
+	@TransactionalEventListener(fallbackExecution = true)
+	public void onDemoDataSeeded(DemoDataSeededEvent event) {
+		log.info("Demo data seeded, rebuilding the demo response cache");
+		warm();
+	}
+
+	/**
+	 * Drops all entries and stores the responses the frontend loads for each demo course and topic.
+	 */
+	public void warm() {
+		cache.invalidateAll();
+		if (!enabled) return;
+		Optional<User> demoUser = userRepository.findByRole(DEMO_ROLE);
+		if (demoUser.isEmpty()) {
+			log.info("No demo user, the demo response cache stays empty");
+			return;
+		}
+		User user = demoUser.get();
+		Authentication auth = UsernamePasswordAuthenticationToken.authenticated(user, null, user.getAuthorities());
+		int limit = Integer.parseInt(KeysetPage.DEFAULT_LIMIT);
+
+		ResponseEntity<List<CourseDto>> courses = store("/api/courses",
+				() -> courseController.findAllByUserId(auth, null, limit, null));
+		if (courses == null || courses.getBody() == null) return;
+		for (CourseDto course : courses.getBody()) {
+			String coursePath = "/api/courses/" + course.id();
+			store(coursePath, () -> courseController.findById(course.id()));
+			store(coursePath + "/materials", () -> courseMaterialController.findAllByCourseId(course.id(), auth, null, limit, null));
+			ResponseEntity<List<TopicDto>> topics = store(coursePath + "/topics",
+					() -> topicController.listTopics(auth, course.id(), null, limit, null));
+			if (topics == null || topics.getBody() == null) continue;
+			for (TopicDto topic : topics.getBody()) {
+				String topicPath = coursePath + "/topics/" + topic.id();
+				store(topicPath + "/quizzes", () -> quizController.getQuizzes(course.id(), topic.id(), null, limit, auth, null));
+				// A finished summary is streamed as a single "done" event, the same bytes every time
+				if (topic.summaryStatus() == SummaryStatus.READY) {
+					storeEvent(topicPath + "/summary/stream", "done", topic);
+				}
+			}
+		}
+		log.info("Demo response cache warmed with {} responses", cache.estimatedSize());
+	}
+
+	private <T> ResponseEntity<T> store(String path, Supplier<ResponseEntity<T>> request) {
+		ResponseEntity<T> response;
+		try {
+			response = request.get();
+		} catch (RuntimeException e) {
+			// e.g. a list with more than one page, its next link needs a request; cached on first use instead
+			log.debug("Not pre-warming {}: {}", path, e.getMessage());
+			return null;
+		}
+		if (!response.getStatusCode().is2xxSuccessful() || response.getBody() == null) {
+			return response;
+		}
+		Map<String, List<String>> headers = new LinkedHashMap<>(response.getHeaders());
+		try {
+			put(path, new CachedResponse(MediaType.APPLICATION_JSON_VALUE, headers, objectMapper.writeValueAsBytes(response.getBody())));
+		} catch (JsonProcessingException e) {
+			log.warn("Could not serialize the demo response of {}", path, e);
+		}
+		return response;
+	}
+
+	private void storeEvent(String path, String name, Object data) {
+		try {
+			// Same framing as SseEmitter.event().name(name).data(data)
+			String event = "event:" + name + "\ndata:" + objectMapper.writeValueAsString(data) + "\n\n";
+			put(path, new CachedResponse(MediaType.TEXT_EVENT_STREAM_VALUE,
+					Map.of(HttpHeaders.CACHE_CONTROL, List.of("no-cache")), event.getBytes(StandardCharsets.UTF_8)));
+		} catch (JsonProcessingException e) {
+			log.warn("Could not serialize the demo event of {}", path, e);
+		}
+	}
+
+	/**
+	 * Status is always 200; {@code headers} keeps ETag, Cache-Control and pagination links of the original.
+	 */
+	public record CachedResponse(String contentType, Map<String, List<String>> headers, byte[] body) {
+
+		public String etag() {
+			List<String> etag = headers.get(HttpHeaders.ETAG);
+			return etag == null || etag.isEmpty() ? null : etag.get(0);
+		}
+	}
+}
@@ -0,0 +1,111 @@
+package ch.frupp.tutorbot.auth.demo;
+
+import ch.frupp.tutorbot.course.CollectionVersion;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Serves GET requests of demo users from {@link DemoResponseCache}, so demo traffic doesn't reach the database
+ * or the model. Runs in the security chain after authentication; everyone else passes straight through.
+ */
+@Component
+public class DemoResponseCacheFilter extends OncePerRequestFilter {
+
+	static final String CACHE_HEADER = "X-Demo-Cache";
+
+	private final DemoResponseCache cache;
+
+	// Larger responses are served but not cached
+	@Value("${app.demo.response-cache.max-body-bytes:1048576}")
+	private int maxBodyBytes = 1048576;
+
+	public DemoResponseCacheFilter(DemoResponseCache cache) {
+		this.cache = cache;
+	}
+
+	@Override
+	protected boolean shouldNotFilter(HttpServletRequest request) {
+		String path = request.getRequestURI();
+		return !cache.isEnabled()
+				|| !"GET".equals(request.getMethod())
+				|| !path.startsWith("/api/")
+				|| path.startsWith("/api/auth/");
+	}
+
+	@Override
+	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+			throws ServletException, IOException {
+
+		if (!DemoReadOnlyFilter.isDemoUser(SecurityContextHolder.getContext().getAuthentication())) {
+			filterChain.doFilter(request, response);
+			return;
+		}
+
+		String key = request.getQueryString() == null ? request.getRequestURI() : request.getRequestURI() + "?" + request.getQueryString();
+		DemoResponseCache.CachedResponse cached = cache.get(key);
+		if (cached != null) {
+			write(cached, request, response);
+			return;
+		}
+
+		// Streams are only cached when pre-warmed, buffering a live stream would hold it back until completion
+		String accept = request.getHeader(HttpHeaders.ACCEPT);
+		if (accept != null && accept.contains(MediaType.TEXT_EVENT_STREAM_VALUE)) {
+			filterChain.doFilter(request, response);
+			return;
+		}
+
+		ContentCachingResponseWrapper wrapper = new ContentCachingResponseWrapper(response);
+		wrapper.setHeader(CACHE_HEADER, "MISS");
+		filterChain.doFilter(request, wrapper);
+		if (wrapper.getStatus() == HttpServletResponse.SC_OK && !request.isAsyncStarted()
+				&& wrapper.getContentType() != null && wrapper.getContentType().startsWith(MediaType.APPLICATION_JSON_VALUE)
+				&& wrapper.getContentSize() <= maxBodyBytes) {
+			cache.put(key, new DemoResponseCache.CachedResponse(wrapper.getContentType(), headersOf(wrapper), wrapper.getContentAsByteArray()));
+		}
+		wrapper.copyBodyToResponse();
+	}
+
+	private static void write(DemoResponseCache.CachedResponse cached, HttpServletRequest request, HttpServletResponse response)
+			throws IOException {
+		cached.headers().forEach((name, values) -> values.forEach(value -> response.addHeader(name, value)));
+		response.setHeader(CACHE_HEADER, "HIT");
+		String etag = cached.etag();
+		if (etag != null && CollectionVersion.matches(request.getHeader(HttpHeaders.IF_NONE_MATCH), etag)) {
+			response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+			return;
+		}
+		response.setStatus(HttpServletResponse.SC_OK);
+		response.setContentType(cached.contentType());
+		response.setContentLength(cached.body().length);
+		response.getOutputStream().write(cached.body());
+	}
+
+	private static Map<String, List<String>> headersOf(HttpServletResponse response) {
+		Map<String, List<String>> headers = new LinkedHashMap<>();
+		for (String name : response.getHeaderNames()) {
+			// Per-response headers that must not be replayed
+			if (name.equalsIgnoreCase(CACHE_HEADER) || name.equalsIgnoreCase(HttpHeaders.SET_COOKIE)
+					|| name.equalsIgnoreCase(HttpHeaders.CONTENT_LENGTH) || name.equalsIgnoreCase(HttpHeaders.CONTENT_TYPE)) {
+				continue;
+			}
+			headers.put(name, new ArrayList<>(response.getHeaders(name)));
+		}
+		return headers;
+	}
+}
@@ -0,0 +1,8 @@
+package ch.frupp.tutorbot.bootstrap.demo;
+
+/**
+ * Published by {@link DemoDataSeeder} after it created the demo data, delivered to transactional listeners
+ * once the seed is committed.
+ */
+public record DemoDataSeededEvent(Integer demoUserId) {
+}
@@ -4,10 +4,12 @@ import ch.frupp.tutorbot.course.Course;
 import ch.frupp.tutorbot.course.CourseRepository;
 import ch.frupp.tutorbot.course.topic.Topic;
 import ch.frupp.tutorbot.course.topic.TopicRepository;
+import ch.frupp.tutorbot.course.topic.summary.SummaryStatus;
 import ch.frupp.tutorbot.user.User;
 import ch.frupp.tutorbot.user.UserRepository;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.CommandLineRunner;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.annotation.Profile;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Component;
@@ -32,15 +34,18 @@ public class DemoDataSeeder implements CommandLineRunner {
 	private final CourseRepository courseRepository;
 	private final TopicRepository topicRepository;
 	private final PasswordEncoder passwordEncoder;
+	private final ApplicationEventPublisher eventPublisher;
 
 	public DemoDataSeeder(UserRepository userRepository,
 						  CourseRepository courseRepository,
 						  TopicRepository topicRepository,
-						  PasswordEncoder passwordEncoder) {
+						  PasswordEncoder passwordEncoder,
+						  ApplicationEventPublisher eventPublisher) {
 		this.userRepository = userRepository;
 		this.courseRepository = courseRepository;
 		this.topicRepository = topicRepository;
 		this.passwordEncoder = passwordEncoder;
+		this.eventPublisher = eventPublisher;
 	}
 
 	@Override
@@ -79,13 +84,17 @@ public class DemoDataSeeder implements CommandLineRunner {
 				.build();
 		courseRepository.save(demoCourse);
 
-		// Create demo Topic
+		// Create demo Topic, its summary is final: demo users must never trigger a generation
 		Topic demoTopic = Topic.builder()
 				.name(TOPIC_NAME)
 				.summary(TOPIC_SUMMARY)
+				.summaryStatus(SummaryStatus.READY)
 				.course(demoCourse)
 				.build();
 		topicRepository.save(demoTopic);
 
+		// Lets the demo response cache reload once the seed is committed
+		eventPublisher.publishEvent(new DemoDataSeededEvent(demoUser.getId()));
+
 	}
 }
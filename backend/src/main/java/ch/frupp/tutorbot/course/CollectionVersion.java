@@ -0,0 +1,49 @@
+package ch.frupp.tutorbot.course;
+
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.time.Instant;
+
+/**
+ * Cheap fingerprint of a list endpoint's rows: row count, highest id and latest {@code updatedAt}, read with one
+ * aggregate query instead of loading the rows. Inserts raise the id, updates the timestamp and deletes the count,
+ * so any change produces a different ETag and unchanged lists can be answered with 304.
+ */
+public record CollectionVersion(long count, Integer maxId, Instant lastModified) {
+
+    // Per-user data: only the browser may store it, and it has to revalidate (If-None-Match) before each reuse
+    public static final CacheControl CACHE_CONTROL = CacheControl.noCache().cachePrivate();
+
+    /**
+     * Weak ETag of one page of the list; the page parameters are part of it, since every page of an unchanged
+     * list is unchanged as well.
+     */
+    public String etag(Integer after, int limit) {
+        long modified = lastModified == null ? 0 : lastModified.getEpochSecond() * 1_000_000_000L + lastModified.getNano();
+        return "W/\"" + count + "-" + (maxId == null ? 0 : maxId) + "-" + Long.toHexString(modified)
+                + "-" + (after == null ? 0 : after) + "-" + limit + "\"";
+    }
+
+    /**
+     * Weak comparison (RFC 9110) of the request's {@code If-None-Match} header with the current ETag.
+     */
+    public static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null || ifNoneMatch.isBlank()) return false;
+        String current = opaque(etag);
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*") || opaque(tag).equals(current)) return true;
+        }
+        return false;
+    }
+
+    private static String opaque(String etag) {
+        return etag.startsWith("W/") ? etag.substring(2) : etag;
+    }
+
+    public static <T> ResponseEntity<T> notModified(String etag) {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(CACHE_CONTROL).build();
+    }
+}
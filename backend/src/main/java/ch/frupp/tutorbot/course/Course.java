@@ -7,7 +7,9 @@ import ch.frupp.tutorbot.user.User;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.UpdateTimestamp;
 
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -37,6 +39,11 @@ public class Course {
     @OneToMany(mappedBy = "course", cascade = CascadeType.ALL, orphanRemoval = true, fetch = FetchType.LAZY)
     private List<Topic> topics = new ArrayList<>();
 
+    // Set on every insert and update; the list endpoints roll it up into their ETag (CollectionVersion)
+    @JsonIgnore
+    @UpdateTimestamp
+    private Instant updatedAt;
+
     // A Course belongs to a User
     @JsonIgnore
     @ManyToOne(fetch = FetchType.LAZY, optional = false)
@@ -1,6 +1,8 @@
 package ch.frupp.tutorbot.course;
 
 import ch.frupp.tutorbot.user.User;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
@@ -13,15 +15,26 @@ public class CourseController {
 
     private final CourseService courseService;
 
+    @Value("${app.pagination.max-limit:200}")
+    private int maxPageSize = 200;
+
     public CourseController(CourseService courseService) {
         this.courseService = courseService;
     }
 
     @GetMapping
-    public List<Course> findAllByUserId(Authentication authentication) {
+    public ResponseEntity<List<CourseDto>> findAllByUserId(Authentication authentication,
+                                                           @RequestParam(required = false) Integer after,
+                                                           @RequestParam(defaultValue = KeysetPage.DEFAULT_LIMIT) int limit, @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         User user = (User) authentication.getPrincipal();
         Integer userId = user.getId();
-        return courseService.findByUserId(userId);
+        int pageSize = KeysetPage.clampLimit(limit, maxPageSize);
+        // Revalidation only costs the aggregate query, the courses are loaded when something changed
+        String etag = courseService.listVersion(userId).etag(after, pageSize);
+        if (CollectionVersion.matches(ifNoneMatch, etag)) {
+            return CollectionVersion.notModified(etag);
+        }
+        return courseService.findByUserId(userId, after, pageSize).toResponse(pageSize, etag);
     }
 
     @GetMapping("/{id}")
@@ -1,5 +1,12 @@
 package ch.frupp.tutorbot.course;
 
+// Request body of the create endpoint (only the name is read) and list projection
 public record CourseDto (
+        Integer id,
         String name
-) {}
+) {
+    public static CourseDto fromCourse(Course c) {
+        if (c == null) return null;
+        return new CourseDto(c.getId(), c.getName());
+    }
+}
@@ -1,10 +1,21 @@
 package ch.frupp.tutorbot.course;
 
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
 import java.util.List;
 
 public interface CourseRepository extends JpaRepository<Course, Integer> {
-    List<Course> findByUserId(Integer userId);
+    // Keyset page, selects only the projected columns
+    List<CourseDto> findByUserIdAndIdGreaterThanOrderByIdAsc(Integer userId, int afterId, Limit limit);
+
+    @Query("select new ch.frupp.tutorbot.course.CollectionVersion(count(c), max(c.id), max(c.updatedAt)) from Course c where c.user.id = :userId")
+    CollectionVersion findVersionByUserId(@Param("userId") Integer userId);
+
+    boolean existsByIdAndUserId(Integer id, Integer userId);
+
     void deleteById(Integer id);
 }
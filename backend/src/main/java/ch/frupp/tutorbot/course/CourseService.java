@@ -8,9 +8,9 @@ import ch.frupp.tutorbot.user.User;
 import lombok.extern.slf4j.Slf4j;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 
-import java.util.List;
 import java.util.Optional;
 
 @Slf4j
@@ -32,14 +32,14 @@ public class CourseService {
     }
 
 
-    public List<Course> findByUserId(Integer userId) {
-        var courses = courseRepository.findByUserId(userId);
-        if (courses == null || courses.isEmpty()) {
-            log.info("Found 0 courses for user with UID {}", userId);
-        } else {
-            log.info("Found {} courses for user with UID {}. First: {}", courses.size(), userId, courses.getFirst().toString());
-        }
-        return courses;
+    public KeysetPage<CourseDto> findByUserId(Integer userId, Integer after, int limit) {
+        var rows = courseRepository.findByUserIdAndIdGreaterThanOrderByIdAsc(userId, after == null ? 0 : after, Limit.of(limit + 1));
+        log.info("Found {} courses for user with UID {} after id {}", Math.min(rows.size(), limit), userId, after);
+        return KeysetPage.of(rows, limit, CourseDto::id);
+    }
+
+    public CollectionVersion listVersion(Integer userId) {
+        return courseRepository.findVersionByUserId(userId);
     }
 
     public Optional<Course> findById(Integer id) {
@@ -0,0 +1,60 @@
+package ch.frupp.tutorbot.course;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * One page of a list endpoint, paginated by id: the client passes the last id it has seen as {@code after}
+ * and gets the rows with larger ids. Unlike offsets this stays an index range scan however deep the client
+ * pages, and rows created or deleted meanwhile don't shift the pages.
+ * <p>
+ * The body stays a plain JSON array; the next page is announced in a {@code Link: <...>; rel="next"} header
+ * and, for clients that can't read Link headers, as the {@code X-Next-Cursor} value. Both are absent on the
+ * last page.
+ */
+public record KeysetPage<T>(List<T> items, Integer nextCursor) {
+
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    // Page size when the client doesn't pass a limit (a String for @RequestParam defaults)
+    public static final String DEFAULT_LIMIT = "50";
+
+    /**
+     * @param rows rows with an id greater than the cursor in id order, queried with {@code limit + 1} so a
+     *             further page can be detected without a count query
+     */
+    public static <T> KeysetPage<T> of(List<T> rows, int limit, Function<T, Integer> id) {
+        if (rows.size() <= limit) {
+            return new KeysetPage<>(rows, null);
+        }
+        List<T> items = rows.subList(0, limit);
+        return new KeysetPage<>(items, id.apply(items.get(limit - 1)));
+    }
+
+    // Requested page size, clamped to [1, max]
+    public static int clampLimit(int limit, int max) {
+        return Math.max(1, Math.min(limit, max));
+    }
+
+    // 200 with the page, its ETag (see CollectionVersion) and, unless this is the last page, the next links
+    public ResponseEntity<List<T>> toResponse(int limit, String etag) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(CollectionVersion.CACHE_CONTROL);
+        if (nextCursor == null) {
+            return response.body(items);
+        }
+        String next = ServletUriComponentsBuilder.fromCurrentRequest()
+                .replaceQueryParam("after", nextCursor)
+                .replaceQueryParam("limit", limit)
+                .build().toUriString();
+        return response
+                .header(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"")
+                .header(NEXT_CURSOR_HEADER, String.valueOf(nextCursor))
+                .body(items);
+    }
+}
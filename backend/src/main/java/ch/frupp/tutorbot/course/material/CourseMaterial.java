@@ -4,9 +4,12 @@ import ch.frupp.tutorbot.course.Course;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.time.Instant;
 
 @Entity
-@Table(name = "course_materials")
+@Table(name = "course_materials", indexes = @Index(name = "idx_course_materials_course_hash", columnList = "course_id, content_hash"))
 @Builder
 @AllArgsConstructor
 @NoArgsConstructor
@@ -20,6 +23,26 @@ public class CourseMaterial {
     @Column(nullable = false, length = 255)
     private String filename;
 
+    // Ingestion state of the material's embeddings, updated by the background ingestion job
+    @Enumerated(EnumType.STRING)
+    @Column(length = 16)
+    @Builder.Default
+    private MaterialStatus status = MaterialStatus.PENDING;
+
+    // SHA-256 of the uploaded file, an identical re-upload is linked to this material instead of re-ingested
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
+
+    // Segments embedded for this material, and segments skipped because the course already had them
+    private Integer segmentsEmbedded;
+
+    private Integer segmentsSkipped;
+
+    // Set on every insert and update; the list endpoints roll it up into their ETag (CollectionVersion)
+    @JsonIgnore
+    @UpdateTimestamp
+    private Instant updatedAt;
+
     // A CourseMaterial (PDF) belongs to a Course
     @JsonIgnore
     @ManyToOne(optional = false, fetch = FetchType.LAZY)
@@ -1,19 +1,28 @@
 package ch.frupp.tutorbot.course.material;
 
-import ch.frupp.tutorbot.ai.dataprocessing.IngestionResult;
+import ch.frupp.tutorbot.ai.dataprocessing.IngestionJob;
+import ch.frupp.tutorbot.ai.dataprocessing.IngestionJobDto;
+import ch.frupp.tutorbot.ai.dataprocessing.IngestionJobService;
 import ch.frupp.tutorbot.ai.dataprocessing.PDFIngestionService;
+import ch.frupp.tutorbot.course.CollectionVersion;
+import ch.frupp.tutorbot.course.KeysetPage;
 import ch.frupp.tutorbot.user.User;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.io.IOException;
-import java.util.HashMap;
+import java.net.URI;
 import java.util.List;
-import java.util.Map;
 import java.util.NoSuchElementException;
 
 @RestController
@@ -21,18 +30,31 @@ import java.util.NoSuchElementException;
 public class CourseMaterialController {
 
     private final PDFIngestionService ingestionService;
+    private final IngestionJobService ingestionJobService;
     private final Logger logger = LoggerFactory.getLogger(CourseMaterialController.class);
 
-    public CourseMaterialController(PDFIngestionService ingestionService, CourseMaterialRepository courseMaterialRepository) {
+    @Value("${app.pagination.max-limit:200}")
+    private int maxPageSize = 200;
+
+    public CourseMaterialController(PDFIngestionService ingestionService, IngestionJobService ingestionJobService) {
         this.ingestionService = ingestionService;
+        this.ingestionJobService = ingestionJobService;
     }
 
 
     @GetMapping("/{courseId}/materials")
-    public ResponseEntity<List<CourseMaterial>> findAllByCourseId(@PathVariable Integer courseId, Authentication authentication) {
+    public ResponseEntity<List<CourseMaterialDto>> findAllByCourseId(@PathVariable Integer courseId, Authentication authentication,
+                                                                     @RequestParam(required = false) Integer after,
+                                                                     @RequestParam(defaultValue = KeysetPage.DEFAULT_LIMIT) int limit,
+                                                                     @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         User user = (User) authentication.getPrincipal();
-        List<CourseMaterial> materials = ingestionService.getMaterialsByCourse(user, courseId);
-        return ResponseEntity.ofNullable(materials);
+        int pageSize = KeysetPage.clampLimit(limit, maxPageSize);
+        // Ingestion updates the status and segment counts, which also changes the ETag
+        String etag = ingestionService.materialsVersion(user, courseId).etag(after, pageSize);
+        if (CollectionVersion.matches(ifNoneMatch, etag)) {
+            return CollectionVersion.notModified(etag);
+        }
+        return ingestionService.getMaterialsByCourse(user, courseId, after, pageSize).toResponse(pageSize, etag);
     }
 
     @PostMapping(path = "/{courseId}/materials/upload", consumes = {"multipart/form-data"})
@@ -40,27 +62,84 @@ public class CourseMaterialController {
         User user = (User) authentication.getPrincipal();
         Integer userId = user.getId();
 
+        if (file == null || file.isEmpty()) {
+            logger.warn("Empty upload received for ingestion (userId={}).", userId);
+            return ResponseEntity.badRequest().body("Uploaded file is empty");
+        }
+
         try {
-            // Ingest the file into the RAG vector store
-            IngestionResult result = ingestionService.ingestUploadedPdf(file, userId, courseId);
-            Map<String, Object> body = new HashMap<>();
-            body.put("inputTokens", result.inputTokens());
-            body.put("outputTokens", result.outputTokens());
-            body.put("totalTokens", result.totalTokens());
-            return ResponseEntity.ok(body);
+            // Queue the file for ingestion into the RAG vector store, progress is reported through the job
+            IngestionJob job = ingestionJobService.submit(file, userId, courseId);
+            return ResponseEntity.accepted()
+                    .location(URI.create("/api/courses/" + courseId + "/materials/jobs/" + job.getId()))
+                    .body(IngestionJobDto.fromJob(job));
+        } catch (NoSuchElementException e) {
+            return ResponseEntity.status(404).body("No such course found");
+        } catch (AccessDeniedException e) {
+            logger.warn("Upload to course {} rejected, it doesn't belong to userId={}", courseId, userId);
+            return ResponseEntity.status(403).body("User doesn't own this course");
+        } catch (TaskRejectedException e) {
+            return ResponseEntity.status(503)
+                    .header(HttpHeaders.RETRY_AFTER, "30")
+                    .body("Too many uploads are being processed, please retry later");
         } catch (IOException e) {
             logger.error("Failed to ingest uploaded PDF for userId={} courseId={}", userId, courseId, e);
             return ResponseEntity.status(500).body("Failed to process uploaded PDF");
         }
     }
 
+    @GetMapping("/{courseId}/materials/jobs/{jobId}")
+    public ResponseEntity<IngestionJobDto> getIngestionJob(@PathVariable Integer courseId, @PathVariable String jobId, Authentication authentication) {
+        User user = (User) authentication.getPrincipal();
+        return ingestionJobService.findJob(jobId, user.getId(), courseId)
+                .map(IngestionJobDto::fromJob)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    @GetMapping(path = "/{courseId}/materials/jobs/{jobId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamIngestionJob(@PathVariable Integer courseId, @PathVariable String jobId, Authentication authentication) {
+        User user = (User) authentication.getPrincipal();
+        return ingestionJobService.findJob(jobId, user.getId(), courseId)
+                .map(ingestionJobService::subscribe)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    @PostMapping("/{courseId}/materials/{materialId}/reindex")
+    public ResponseEntity<?> reindexMaterial(@PathVariable Integer courseId, @PathVariable Integer materialId, Authentication authentication) {
+        User user = (User) authentication.getPrincipal();
+        CourseMaterial material;
+        try {
+            material = ingestionService.findOwnedMaterial(user, materialId);
+        } catch (NoSuchElementException e) {
+            return ResponseEntity.status(404).body("No such course material found");
+        } catch (Exception e) {
+            logger.error("Failed to re-index Material with id={} by user={}", materialId, user.getId(), e);
+            return ResponseEntity.status(403).body("User doesn't own this course material");
+        }
+
+        try {
+            IngestionJob job = ingestionJobService.reindex(material);
+            return ResponseEntity.accepted()
+                    .location(URI.create("/api/courses/" + courseId + "/materials/jobs/" + job.getId()))
+                    .body(IngestionJobDto.fromJob(job));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(409).body(e.getMessage());
+        } catch (TaskRejectedException e) {
+            return ResponseEntity.status(503)
+                    .header(HttpHeaders.RETRY_AFTER, "30")
+                    .body("Too many uploads are being processed, please retry later");
+        }
+    }
+
     @DeleteMapping("/{courseId}/materials/{materialId}")
     public ResponseEntity<?> deleteMaterial(@PathVariable Integer courseId, @PathVariable Integer materialId, Authentication authentication) {
         User user = (User) authentication.getPrincipal();
         Integer userId = user.getId();
         // Fetch the relevant CourseMaterial for deletion from the repository
         try {
-            ingestionService.deleteMaterialById(user, materialId);
+            ingestionJobService.deleteMaterial(user, materialId);
         } catch (NoSuchElementException e) {
             logger.error("Failed to delete Material with id={} by user={}", materialId, userId, e);
             return ResponseEntity.status(404).body("No such course material found");
@@ -0,0 +1,8 @@
+package ch.frupp.tutorbot.course.material;
+
+public record CourseMaterialDto(Integer id, String filename, MaterialStatus status, Integer segmentsEmbedded, Integer segmentsSkipped) {
+    public static CourseMaterialDto fromMaterial(CourseMaterial m) {
+        if (m == null) return null;
+        return new CourseMaterialDto(m.getId(), m.getFilename(), m.getStatus(), m.getSegmentsEmbedded(), m.getSegmentsSkipped());
+    }
+}
@@ -1,8 +1,37 @@
 package ch.frupp.tutorbot.course.material;
 
+import ch.frupp.tutorbot.course.CollectionVersion;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
 import java.util.List;
+import java.util.Optional;
 
 public interface CourseMaterialRepository extends JpaRepository<CourseMaterial, Integer> {
     List<CourseMaterial> findByCourseId(Integer courseId);
+
+    // Keyset page of the owner's materials, projected to the listed columns
+    @Query("select new ch.frupp.tutorbot.course.material.CourseMaterialDto(m.id, m.filename, m.status, m.segmentsEmbedded, m.segmentsSkipped)" +
+            " from CourseMaterial m where m.course.id = :courseId and m.course.user.id = :userId and m.id > :after order by m.id")
+    List<CourseMaterialDto> findPageByCourseId(@Param("courseId") Integer courseId, @Param("userId") Integer userId,
+                                               @Param("after") int after, Limit limit);
+    Optional<CourseMaterial> findFirstByCourseIdAndContentHashAndStatus(Integer courseId, String contentHash, MaterialStatus status);
+
+    @Query("select new ch.frupp.tutorbot.course.CollectionVersion(count(m), max(m.id), max(m.updatedAt))" +
+            " from CourseMaterial m where m.course.id = :courseId and m.course.user.id = :userId")
+    CollectionVersion findVersionByCourseId(@Param("courseId") Integer courseId, @Param("userId") Integer userId);
+
+    @Query("select new ch.frupp.tutorbot.course.CollectionVersion(count(m), max(m.id), max(m.updatedAt))" +
+            " from CourseMaterial m where m.course.user.id = :userId")
+    CollectionVersion findVersionByUserId(@Param("userId") Integer userId);
+
+    // Ownership checked in SQL; the course is fetched as well, deleting needs its id and owner
+    @Query("select m from CourseMaterial m join fetch m.course c where m.id = :id and c.user.id = :userId")
+    Optional<CourseMaterial> findOwnedById(@Param("id") Integer id, @Param("userId") Integer userId);
+
+    // Full re-index: every material with its course, a course's materials one after another
+    @Query("select m from CourseMaterial m join fetch m.course c order by c.id, m.id")
+    List<CourseMaterial> findAllWithCourse();
 }
@@ -0,0 +1,12 @@
+package ch.frupp.tutorbot.course.material;
+
+public enum MaterialStatus {
+    PENDING,
+    INDEXING,
+    READY,
+    FAILED;
+
+    public boolean isFinished() {
+        return this == READY || this == FAILED;
+    }
+}
@@ -2,10 +2,13 @@ package ch.frupp.tutorbot.course.topic;
 
 import ch.frupp.tutorbot.course.Course;
 import ch.frupp.tutorbot.course.topic.quiz.Quiz;
+import ch.frupp.tutorbot.course.topic.summary.SummaryStatus;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.UpdateTimestamp;
 
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -31,6 +34,17 @@ public class Topic {
     @Column(nullable = false, columnDefinition = "TEXT")
     private String summary;
 
+    // The summary is generated after the topic is created and streamed to the client
+    @Enumerated(EnumType.STRING)
+    @Column(length = 16)
+    @Builder.Default
+    private SummaryStatus summaryStatus = SummaryStatus.PENDING;
+
+    // Set on every insert and update; the list endpoints roll it up into their ETag (CollectionVersion)
+    @JsonIgnore
+    @UpdateTimestamp
+    private Instant updatedAt;
+
     // A Topic owns multiple Quizzes
     @JsonIgnore
     @OneToMany(mappedBy = "topic", fetch = FetchType.LAZY, cascade = CascadeType.ALL, orphanRemoval = true)
@@ -42,4 +56,9 @@ public class Topic {
     @JoinColumn(name = "course_id", nullable = false)
     private Course course;
 
+    // Topics created before summaries were streamed have no status, their summary is complete
+    public SummaryStatus getSummaryStatus() {
+        return summaryStatus != null ? summaryStatus : SummaryStatus.READY;
+    }
+
 }
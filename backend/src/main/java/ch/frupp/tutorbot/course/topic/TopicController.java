@@ -1,15 +1,20 @@
 package ch.frupp.tutorbot.course.topic;
 
+import ch.frupp.tutorbot.course.CollectionVersion;
+import ch.frupp.tutorbot.course.KeysetPage;
 import ch.frupp.tutorbot.user.User;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.dao.DuplicateKeyException;
+import org.springframework.http.MediaType;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.List;
-import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api/courses/{courseId}/topics")
@@ -19,16 +24,24 @@ public class TopicController {
 
     private final TopicService topicService;
 
+    @Value("${app.pagination.max-limit:200}")
+    private int maxPageSize = 200;
+
     public TopicController(TopicService topicService) {
         this.topicService = topicService;
     }
 
     @GetMapping
-    public List<TopicDto> listTopics(Authentication authentication, @PathVariable Integer courseId) {
+    public ResponseEntity<List<TopicDto>> listTopics(Authentication authentication, @PathVariable Integer courseId,
+                                                     @RequestParam(required = false) Integer after,
+                                                     @RequestParam(defaultValue = KeysetPage.DEFAULT_LIMIT) int limit, @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         User user = (User) authentication.getPrincipal();
-        return topicService.listTopicsForUserAndCourse(user, courseId).stream()
-                .map(TopicDto::fromTopic)
-                .collect(Collectors.toList());
+        int pageSize = KeysetPage.clampLimit(limit, maxPageSize);
+        String etag = topicService.listVersion(user, courseId).etag(after, pageSize);
+        if (CollectionVersion.matches(ifNoneMatch, etag)) {
+            return CollectionVersion.notModified(etag);
+        }
+        return topicService.listTopicsForUserAndCourse(user, courseId, after, pageSize).toResponse(pageSize, etag);
     }
 
     @PostMapping
@@ -44,6 +57,14 @@ public class TopicController {
         }
     }
 
+    @GetMapping(path = "/{id}/summary/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamSummary(Authentication authentication, @PathVariable Integer id, @PathVariable Integer courseId) {
+        User user = (User) authentication.getPrincipal();
+        return topicService.streamSummary(user, id)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
     @DeleteMapping("/{id}")
     public ResponseEntity<?> deleteTopic(Authentication authentication, @PathVariable Integer id, @PathVariable Integer courseId) {
         User user = (User) authentication.getPrincipal();
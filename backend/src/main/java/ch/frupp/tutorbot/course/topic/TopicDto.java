@@ -1,9 +1,11 @@
 package ch.frupp.tutorbot.course.topic;
 
-public record TopicDto(Integer id, String name, String summary) {
+import ch.frupp.tutorbot.course.topic.summary.SummaryStatus;
+
+public record TopicDto(Integer id, String name, String summary, SummaryStatus summaryStatus) {
     public static TopicDto fromTopic(Topic t) {
         if (t == null) return null;
-        return new TopicDto(t.getId(), t.getName(), t.getSummary());
+        return new TopicDto(t.getId(), t.getName(), t.getSummary(), t.getSummaryStatus());
     }
 
     public Topic toTopic() {
@@ -1,10 +1,28 @@
 package ch.frupp.tutorbot.course.topic;
 
+import ch.frupp.tutorbot.course.CollectionVersion;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.util.List;
+import java.util.Optional;
 
 public interface TopicRepository extends JpaRepository<Topic, Integer> {
-    List<Topic> findByCourseId(Integer courseId);
+    // Keyset page of the owner's topics; topics from before streamed summaries have no status and are complete
+    @Query("select new ch.frupp.tutorbot.course.topic.TopicDto(t.id, t.name, t.summary," +
+            " coalesce(t.summaryStatus, ch.frupp.tutorbot.course.topic.summary.SummaryStatus.READY))" +
+            " from Topic t where t.course.id = :courseId and t.course.user.id = :userId and t.id > :after order by t.id")
+    List<TopicDto> findPageByCourseId(@Param("courseId") Integer courseId, @Param("userId") Integer userId,
+                                      @Param("after") int after, Limit limit);
+
+    @Query("select new ch.frupp.tutorbot.course.CollectionVersion(count(t), max(t.id), max(t.updatedAt))" +
+            " from Topic t where t.course.id = :courseId and t.course.user.id = :userId")
+    CollectionVersion findVersionByCourseId(@Param("courseId") Integer courseId, @Param("userId") Integer userId);
+
+    // For background work outside a request, where the lazy course/user chain can't be loaded later
+    @Query("select t from Topic t join fetch t.course c join fetch c.user where t.id = :id")
+    Optional<Topic> findWithOwnerById(@Param("id") Integer id);
 }
 
@@ -1,49 +1,70 @@
 package ch.frupp.tutorbot.course.topic;
 
+import ch.frupp.tutorbot.course.CollectionVersion;
 import ch.frupp.tutorbot.course.Course;
 import ch.frupp.tutorbot.course.CourseRepository;
+import ch.frupp.tutorbot.course.KeysetPage;
 import ch.frupp.tutorbot.course.topic.quiz.Quiz;
 import ch.frupp.tutorbot.course.topic.quiz.QuizRepository;
 import ch.frupp.tutorbot.course.topic.quiz.QuizService;
-import ch.frupp.tutorbot.course.topic.summary.SummaryService;
+import ch.frupp.tutorbot.course.topic.summary.SummaryStatus;
+import ch.frupp.tutorbot.course.topic.summary.SummaryStreamService;
 import ch.frupp.tutorbot.user.User;
 import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
 
 @Service
 public class TopicService {
 
     private final TopicRepository topicRepository;
-    private final SummaryService summaryService;
+    private final SummaryStreamService summaryStreamService;
     private final CourseRepository courseRepository;
 
-    public TopicService(TopicRepository repository, SummaryService summaryService, QuizRepository quizRepository, QuizService quizService, CourseRepository courseRepository) {
+    public TopicService(TopicRepository repository, SummaryStreamService summaryStreamService, QuizRepository quizRepository, QuizService quizService, CourseRepository courseRepository) {
         this.topicRepository = repository;
-        this.summaryService = summaryService;
+        this.summaryStreamService = summaryStreamService;
         this.courseRepository = courseRepository;
     }
 
-    public List<Topic> listTopicsForUserAndCourse(User user, Integer courseId) {
-        // TODO: Validate User ownership
-        return topicRepository.findByCourseId(courseId);
+    public KeysetPage<TopicDto> listTopicsForUserAndCourse(User user, Integer courseId, Integer after, int limit) {
+        List<TopicDto> rows = topicRepository.findPageByCourseId(courseId, user.getId(), after == null ? 0 : after, Limit.of(limit + 1));
+        return KeysetPage.of(rows, limit, TopicDto::id);
+    }
+
+    public CollectionVersion listVersion(User user, Integer courseId) {
+        return topicRepository.findVersionByCourseId(courseId, user.getId());
     }
 
     public Topic createTopicForUser(User user, TopicDto topicDto, Integer courseId) {
         // Get the Course object the topic belongs to (If none found throw exception)
         Course course = courseRepository.findById(courseId).orElseThrow();
 
+        // The AI summary is generated when the client opens the summary stream, so creation returns right away
         Topic newTopic = Topic.builder()
                 .name(topicDto.name())
-                // Generate AI Summary on the go
-                .summary (summaryService.generateSummary(topicDto.name(), user))
+                .summary("")
+                .summaryStatus(SummaryStatus.PENDING)
                 .course(course)
                 .build();
 
         return topicRepository.save(newTopic);
     }
 
+    public Optional<Topic> findTopicForUser(User user, Integer topicId) {
+        return topicRepository.findById(topicId)
+                .filter(topic -> Objects.equals(user.getId(), topic.getCourse().getUser().getId()));
+    }
+
+    public Optional<SseEmitter> streamSummary(User user, Integer topicId) {
+        return findTopicForUser(user, topicId).map(topic -> summaryStreamService.stream(user, topic));
+    }
+
     public void deleteTopicForUser(User user, Integer topicId) {
         //TODO: Validate user ownership
         topicRepository.deleteById(topicId);
@@ -4,8 +4,10 @@ import ch.frupp.tutorbot.course.topic.Topic;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.UpdateTimestamp;
 
 
+import java.time.Instant;
 import java.util.List;
 
 @Entity
@@ -30,6 +32,17 @@ public class Quiz {
     @Column(nullable = false)
     private int correctAnswerIndex;
 
+    // Pre-generated by the pool refill and not yet handed out; hidden from the topic's quiz list until then
+    @JsonIgnore
+    @Builder.Default
+    @Column(nullable = false, columnDefinition = "boolean default false")
+    private boolean pooled = false;
+
+    // Set on every insert and update; the list endpoints roll it up into their ETag (CollectionVersion)
+    @JsonIgnore
+    @UpdateTimestamp
+    private Instant updatedAt;
+
     // A Quiz is owned by a Topic
     @JsonIgnore
     @ManyToOne(fetch = FetchType.LAZY,  optional = false)
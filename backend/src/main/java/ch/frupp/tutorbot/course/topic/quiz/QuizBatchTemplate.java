@@ -0,0 +1,8 @@
+package ch.frupp.tutorbot.course.topic.quiz;
+
+import java.util.List;
+
+// Wrapper object for structured output: models handle a JSON object far more reliably than a top-level array
+public record QuizBatchTemplate(
+        List<QuizAiTemplate> quizzes
+) { }
@@ -1,28 +1,87 @@
 package ch.frupp.tutorbot.course.topic.quiz;
 
+import ch.frupp.tutorbot.ai.bulkhead.LlmOverloadedException;
+import ch.frupp.tutorbot.course.CollectionVersion;
+import ch.frupp.tutorbot.course.KeysetPage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
+import java.util.NoSuchElementException;
 
+@Slf4j
 @RestController
 @RequestMapping("/api/courses/{courseId}/topics/{topicId}/quizzes")
 public class QuizController {
     private final QuizService quizService;
 
+    @Value("${app.quiz.batch.max-count:20}")
+    private int maxBatchCount = 20;
+
+    @Value("${app.pagination.max-limit:200}")
+    private int maxPageSize = 200;
+
     public QuizController(QuizService quizService) {
         this.quizService = quizService;
     }
 
     @GetMapping
-    public List<Quiz> getQuizzes(@PathVariable Integer courseId, @PathVariable Integer topicId, Authentication auth) {
+    public ResponseEntity<List<QuizDto>> getQuizzes(@PathVariable Integer courseId, @PathVariable Integer topicId,
+                                                    @RequestParam(required = false) Integer after,
+                                                    @RequestParam(defaultValue = KeysetPage.DEFAULT_LIMIT) int limit, Authentication auth,
+                                                    @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         var user = (ch.frupp.tutorbot.user.User) auth.getPrincipal();
-        return quizService.getAllQuizzesByUserAndTopicId(user, topicId).orElse(List.of());
+        int pageSize = KeysetPage.clampLimit(limit, maxPageSize);
+        String etag = quizService.listVersion(user, topicId).etag(after, pageSize);
+        if (CollectionVersion.matches(ifNoneMatch, etag)) {
+            return CollectionVersion.notModified(etag);
+        }
+        return quizService.getAllQuizzesByUserAndTopicId(user, topicId, after, pageSize).toResponse(pageSize, etag);
     }
 
     @PostMapping
-    public Quiz createQuiz(@PathVariable Integer courseId, @PathVariable Integer topicId, Authentication auth) {
+    public ResponseEntity<?> createQuiz(@PathVariable Integer courseId, @PathVariable Integer topicId, Authentication auth) {
         var user = (ch.frupp.tutorbot.user.User) auth.getPrincipal();
-        return quizService.generateAndSaveQuiz(user, topicId);
+        try {
+            return ResponseEntity.ok(quizService.generateAndSaveQuiz(user, topicId));
+        } catch (LlmOverloadedException e) {
+            return overloaded(e);
+        } catch (NoSuchElementException e) {
+            return ResponseEntity.status(404).body("No such topic found");
+        } catch (AccessDeniedException e) {
+            return ResponseEntity.status(403).body("User doesn't own this topic");
+        }
+    }
+
+    @PostMapping("/batch")
+    public ResponseEntity<?> createQuizBatch(@PathVariable Integer courseId, @PathVariable Integer topicId,
+                                             @RequestParam(defaultValue = "10") int count, Authentication auth) {
+        var user = (ch.frupp.tutorbot.user.User) auth.getPrincipal();
+        if (count < 1 || count > maxBatchCount) {
+            return ResponseEntity.badRequest().body("count must be between 1 and " + maxBatchCount);
+        }
+        try {
+            return ResponseEntity.ok(quizService.generateAndSaveQuizBatch(user, topicId, count));
+        } catch (LlmOverloadedException e) {
+            return overloaded(e);
+        } catch (NoSuchElementException e) {
+            return ResponseEntity.status(404).body("No such topic found");
+        } catch (AccessDeniedException e) {
+            return ResponseEntity.status(403).body("User doesn't own this topic");
+        } catch (IllegalStateException e) {
+            log.error("Quiz batch generation failed for topic {}", topicId, e);
+            return ResponseEntity.status(502).body("Quiz generation failed, please retry");
+        }
+    }
+
+    private static ResponseEntity<String> overloaded(LlmOverloadedException e) {
+        return ResponseEntity.status(429)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, e.getRetryAfter().toSeconds())))
+                .body("The model is busy, please retry later");
     }
 }
@@ -1,4 +1,11 @@
 package ch.frupp.tutorbot.course.topic.quiz;
 
-public class QuizDto {
+import java.util.List;
+
+public record QuizDto(Integer id, String question, List<String> choices, int correctAnswerIndex) {
+    public static QuizDto fromQuiz(Quiz q) {
+        if (q == null) return null;
+        return new QuizDto(q.getId(), q.getQuestion(), q.getChoices() == null ? List.of() : List.copyOf(q.getChoices()),
+                q.getCorrectAnswerIndex());
+    }
 }
@@ -0,0 +1,33 @@
+package ch.frupp.tutorbot.course.topic.quiz;
+
+import ch.frupp.tutorbot.ai.bulkhead.LlmPriority;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+// Scheduling drives the background refill of the quiz pool
+@Configuration
+@EnableScheduling
+public class QuizGenerationConfiguration {
+
+    // Runs the sub-calls of large quiz batches in parallel. Keep it at or below the number of requests
+    // the model server handles concurrently (OLLAMA_NUM_PARALLEL), more only queue up there.
+    // When the queue is full the request thread runs the sub-call itself. Sub-calls keep the model priority of
+    // the thread that submitted them.
+    @Bean
+    public ThreadPoolTaskExecutor quizGenerationExecutor(@Value("${app.quiz.generation.workers:2}") int workers,
+                                                         @Value("${app.quiz.generation.queue-capacity:32}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(workers);
+        executor.setMaxPoolSize(workers);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setThreadNamePrefix("quiz-generation-");
+        executor.setTaskDecorator(LlmPriority::propagate);
+        return executor;
+    }
+}
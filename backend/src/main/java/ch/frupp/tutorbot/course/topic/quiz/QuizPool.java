@@ -0,0 +1,91 @@
+package ch.frupp.tutorbot.course.topic.quiz;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-topic pool of pre-generated quizzes. Pooled quizzes are regular {@link Quiz} rows flagged as
+ * {@code pooled}; taking one clears the flag, which makes it part of the topic's quiz list.
+ * Topics that were asked for a quiz recently are tracked as active, only those get refilled.
+ * Metrics: {@code quiz.pool.depth}, {@code quiz.pool.requests{result=hit|miss}} and {@code quiz.pool.hit.ratio}.
+ */
+@Slf4j
+@Component
+public class QuizPool {
+
+    // Another request may claim the same quiz in between, try the next one a few times
+    private static final int CLAIM_ATTEMPTS = 3;
+
+    private final QuizRepository quizRepository;
+    private final Map<Integer, Instant> activeTopics = new ConcurrentHashMap<>();
+    private final AtomicLong depth = new AtomicLong();
+    private final Counter hits;
+    private final Counter misses;
+
+    @Value("${app.quiz.pool.active-topic-ttl:PT2H}")
+    private Duration activeTopicTtl = Duration.ofHours(2);
+
+    public QuizPool(QuizRepository quizRepository, MeterRegistry meterRegistry) {
+        this.quizRepository = quizRepository;
+        this.hits = Counter.builder("quiz.pool.requests").tag("result", "hit")
+                .description("Quiz requests served from the pool").register(meterRegistry);
+        this.misses = Counter.builder("quiz.pool.requests").tag("result", "miss")
+                .description("Quiz requests that had to be generated synchronously").register(meterRegistry);
+        Gauge.builder("quiz.pool.depth", depth, AtomicLong::get)
+                .description("Pre-generated quizzes waiting to be served").register(meterRegistry);
+        Gauge.builder("quiz.pool.hit.ratio", this, QuizPool::hitRatio)
+                .description("Share of quiz requests served from the pool").register(meterRegistry);
+    }
+
+    public Optional<Quiz> take(Integer topicId) {
+        activeTopics.put(topicId, Instant.now());
+        for (int attempt = 0; attempt < CLAIM_ATTEMPTS; attempt++) {
+            Optional<Quiz> candidate = quizRepository.findFirstByTopicIdAndPooledTrueOrderByIdAsc(topicId);
+            if (candidate.isEmpty()) break;
+            if (quizRepository.claimPooled(candidate.get().getId()) == 1) {
+                hits.increment();
+                depth.decrementAndGet();
+                Quiz quiz = candidate.get();
+                quiz.setPooled(false);
+                return Optional.of(quiz);
+            }
+        }
+        misses.increment();
+        return Optional.empty();
+    }
+
+    public List<Integer> activeTopics() {
+        Instant cutoff = Instant.now().minus(activeTopicTtl);
+        activeTopics.values().removeIf(lastUsed -> lastUsed.isBefore(cutoff));
+        return List.copyOf(activeTopics.keySet());
+    }
+
+    public void forget(Integer topicId) {
+        activeTopics.remove(topicId);
+    }
+
+    public void added(int quizzes) {
+        depth.addAndGet(quizzes);
+    }
+
+    public void refreshDepth() {
+        depth.set(quizRepository.countByPooledTrue());
+    }
+
+    private double hitRatio() {
+        double requests = hits.count() + misses.count();
+        return requests == 0 ? 0 : hits.count() / requests;
+    }
+}
@@ -0,0 +1,91 @@
+package ch.frupp.tutorbot.course.topic.quiz;
+
+import ch.frupp.tutorbot.ai.bulkhead.LlmPriority;
+import ch.frupp.tutorbot.course.topic.Topic;
+import ch.frupp.tutorbot.course.topic.TopicRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Tops up the quiz pool of active topics to the target size. Runs only while no user is waiting for the
+ * model, and generates at most {@code max-per-run} quizzes per run to bound the background load. Its model
+ * calls run with {@link LlmPriority#BACKGROUND}, so interactive requests overtake them in the bulkhead queue.
+ * Metrics: {@code quiz.pool.refilled} (quizzes added) and {@code quiz.pool.refill} (generation time per topic).
+ */
+@Slf4j
+@Component
+public class QuizPoolRefiller {
+
+    private final QuizPool quizPool;
+    private final QuizService quizService;
+    private final QuizRepository quizRepository;
+    private final TopicRepository topicRepository;
+    private final Counter refilled;
+    private final Timer refillTimer;
+
+    @Value("${app.quiz.pool.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${app.quiz.pool.target-size:5}")
+    private int targetSize = 5;
+
+    @Value("${app.quiz.pool.max-per-run:10}")
+    private int maxPerRun = 10;
+
+    public QuizPoolRefiller(QuizPool quizPool, QuizService quizService, QuizRepository quizRepository,
+                            TopicRepository topicRepository, MeterRegistry meterRegistry) {
+        this.quizPool = quizPool;
+        this.quizService = quizService;
+        this.quizRepository = quizRepository;
+        this.topicRepository = topicRepository;
+        this.refilled = Counter.builder("quiz.pool.refilled")
+                .description("Quizzes generated into the pool").register(meterRegistry);
+        this.refillTimer = Timer.builder("quiz.pool.refill")
+                .description("Time spent generating quizzes for one topic's pool").register(meterRegistry);
+    }
+
+    @Scheduled(initialDelayString = "${app.quiz.pool.refill-interval:PT30S}", fixedDelayString = "${app.quiz.pool.refill-interval:PT30S}")
+    public void refill() {
+        if (!enabled) return;
+        quizPool.refreshDepth();
+
+        int budget = maxPerRun;
+        for (Integer topicId : quizPool.activeTopics()) {
+            if (budget <= 0) break;
+            if (!quizService.isIdle()) {
+                log.debug("Quiz pool refill paused, quizzes are being generated for users");
+                return;
+            }
+
+            int missing = targetSize - (int) quizRepository.countByTopicIdAndPooledTrue(topicId);
+            if (missing <= 0) continue;
+            Optional<Topic> topic = topicRepository.findWithOwnerById(topicId);
+            if (topic.isEmpty()) {
+                quizPool.forget(topicId);
+                continue;
+            }
+
+            int count = Math.min(missing, budget);
+            budget -= count;
+            try {
+                List<Quiz> quizzes = refillTimer.recordCallable(() ->
+                        LlmPriority.BACKGROUND.call(() -> quizService.generateQuizzes(topic.get(), count)));
+                quizzes.forEach(quiz -> quiz.setPooled(true));
+                quizRepository.saveAll(quizzes);
+                quizPool.added(quizzes.size());
+                refilled.increment(quizzes.size());
+                log.info("Added {} quizzes to the pool of topic {}", quizzes.size(), topicId);
+            } catch (Exception e) {
+                log.warn("Quiz pool refill for topic {} failed", topicId, e);
+            }
+        }
+    }
+}
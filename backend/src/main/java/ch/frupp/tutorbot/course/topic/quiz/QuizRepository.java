@@ -1,12 +1,60 @@
 package ch.frupp.tutorbot.course.topic.quiz;
 
+import ch.frupp.tutorbot.course.CollectionVersion;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface QuizRepository extends JpaRepository<Quiz, Integer> {
-    List<Quiz> findAllByTopicId(Integer topicId);
+    // Keyset page of the owner's quizzes, filtered in SQL (topic -> course -> user_id). Only the scalar columns:
+    // fetch-joining the choices would make Hibernate apply the limit in memory
+    @Query("select q.id as id, q.question as question, q.correctAnswerIndex as correctAnswerIndex from Quiz q" +
+            " where q.topic.id = :topicId and q.topic.course.user.id = :userId and q.pooled = false and q.id > :after order by q.id")
+    List<QuizRow> findOwnedPage(@Param("topicId") Integer topicId, @Param("userId") Integer userId,
+                                @Param("after") int after, Limit limit);
 
+    @Query("select new ch.frupp.tutorbot.course.CollectionVersion(count(q), max(q.id), max(q.updatedAt)) from Quiz q" +
+            " where q.topic.id = :topicId and q.topic.course.user.id = :userId and q.pooled = false")
+    CollectionVersion findOwnedVersion(@Param("topicId") Integer topicId, @Param("userId") Integer userId);
+
+    // The choices of a whole page in one query
+    @Query("select q.id as quizId, c as choice from Quiz q join q.choices c where q.id in :ids")
+    List<QuizChoice> findChoices(@Param("ids") Collection<Integer> ids);
+
+    boolean existsByIdAndTopicCourseUserId(Integer id, Integer userId);
+
+    Optional<Quiz> findFirstByTopicIdAndPooledTrueOrderByIdAsc(Integer topicId);
+
+    long countByTopicIdAndPooledTrue(Integer topicId);
+
+    long countByPooledTrue();
+
+    // Conditional update, so two requests racing for the same pooled quiz can't both claim it
+    @Transactional
+    @Modifying
+    @Query("update Quiz q set q.pooled = false where q.id = :id and q.pooled = true")
+    int claimPooled(@Param("id") Integer id);
+
+    interface QuizRow {
+        Integer getId();
+
+        String getQuestion();
+
+        int getCorrectAnswerIndex();
+    }
+
+    interface QuizChoice {
+        Integer getQuizId();
+
+        String getChoice();
+    }
 }
@@ -1,17 +1,36 @@
 package ch.frupp.tutorbot.course.topic.quiz;
 
 import ch.frupp.tutorbot.ai.AiAssistant;
+import ch.frupp.tutorbot.ai.QuizBatchAssistant;
+import ch.frupp.tutorbot.ai.RetrievalQueries;
+import ch.frupp.tutorbot.ai.bulkhead.LlmOverloadedException;
+import ch.frupp.tutorbot.course.CollectionVersion;
+import ch.frupp.tutorbot.course.KeysetPage;
 import ch.frupp.tutorbot.course.topic.Topic;
 import ch.frupp.tutorbot.course.topic.TopicRepository;
 import ch.frupp.tutorbot.user.User;
 import dev.langchain4j.invocation.InvocationParameters;
+import dev.langchain4j.rag.RetrievalAugmentor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.data.domain.Limit;
+import org.springframework.security.access.AccessDeniedException;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
 
 @Service
 @Slf4j
@@ -20,28 +39,47 @@ public class QuizService {
     private final QuizRepository quizRepository;
     private final AiAssistant aiAssistant;
     private final TopicRepository topicRepository;
+    private final QuizBatchAssistant quizBatchAssistant;
+    private final RetrievalAugmentor retrievalAugmentor;
+    private final TaskExecutor quizGenerationExecutor;
+    private final QuizPool quizPool;
 
-    public QuizService(QuizRepository quizRepository, AiAssistant aiAssistant, TopicRepository topicRepository) {
+    // Model calls a user is waiting for; the pool refill only runs while there are none
+    private final AtomicInteger foregroundGenerations = new AtomicInteger();
+
+    // Questions requested from the model per call; larger batches are split into parallel sub-calls
+    @Value("${app.quiz.batch.questions-per-call:5}")
+    private int questionsPerCall = 5;
+
+    public QuizService(QuizRepository quizRepository, AiAssistant aiAssistant, TopicRepository topicRepository,
+                       QuizBatchAssistant quizBatchAssistant, RetrievalAugmentor retrievalAugmentor,
+                       @Qualifier("quizGenerationExecutor") TaskExecutor quizGenerationExecutor, QuizPool quizPool) {
         this.quizRepository = quizRepository;
         this.aiAssistant = aiAssistant;
         this.topicRepository = topicRepository;
+        this.quizBatchAssistant = quizBatchAssistant;
+        this.retrievalAugmentor = retrievalAugmentor;
+        this.quizGenerationExecutor = quizGenerationExecutor;
+        this.quizPool = quizPool;
     }
 
-    public Optional<List<Quiz>> getAllQuizzesByUserAndTopicId(User user, Integer topicId) {
-        // TODO: Validate user ownership
-        List<Quiz> quizzes = quizRepository.findAllByTopicId(topicId);
-        log.info("Found {} quizzes for user {} and topic {}", quizzes.size(), user.getId(), topicId);
-
-        // Remove and log quizzes not owned by the user
-        quizzes.stream().filter(quiz -> !validateQuizOwnership(user, quiz)).forEach(quiz -> {
-            log.warn("Quiz with ID {} does not belong to user {} and will be removed from the response", quiz.getId(), user.getId());
-            quizzes.remove(quiz);
-        });
+    public KeysetPage<QuizDto> getAllQuizzesByUserAndTopicId(User user, Integer topicId, Integer after, int limit) {
+        List<QuizRepository.QuizRow> rows = quizRepository.findOwnedPage(topicId, user.getId(), after == null ? 0 : after, Limit.of(limit + 1));
+        KeysetPage<QuizRepository.QuizRow> page = KeysetPage.of(rows, limit, QuizRepository.QuizRow::getId);
+
+        Map<Integer, List<String>> choices = page.items().isEmpty() ? Map.of() : quizRepository
+                .findChoices(page.items().stream().map(QuizRepository.QuizRow::getId).toList()).stream()
+                .collect(Collectors.groupingBy(QuizRepository.QuizChoice::getQuizId,
+                        Collectors.mapping(QuizRepository.QuizChoice::getChoice, Collectors.toList())));
+        List<QuizDto> quizzes = page.items().stream()
+                .map(row -> new QuizDto(row.getId(), row.getQuestion(), choices.getOrDefault(row.getId(), List.of()), row.getCorrectAnswerIndex()))
+                .toList();
+        log.info("Found {} quizzes for user {} and topic {} after id {}", quizzes.size(), user.getId(), topicId, after);
+        return new KeysetPage<>(quizzes, page.nextCursor());
+    }
 
-        if (!quizzes.isEmpty()) {
-            return Optional.of(quizzes);
-        }
-        return Optional.empty();
+    public CollectionVersion listVersion(User user, Integer topicId) {
+        return quizRepository.findOwnedVersion(topicId, user.getId());
     }
 
     public Quiz saveQuiz(Quiz quiz) {
@@ -59,30 +97,152 @@ public class QuizService {
         quizRepository.deleteById(quizId);
     }
 
+    // Checked in SQL, walking quiz -> topic -> course would load each lazy proxy separately
     private boolean validateQuizOwnership(User user, Quiz quiz) {
-        Integer dbUserId = quiz.getTopic().getCourse().getUser().getId();
-        return Objects.equals(user.getId(), dbUserId);
+        return quiz.getId() != null && quizRepository.existsByIdAndTopicCourseUserId(quiz.getId(), user.getId());
     }
 
+    /**
+     * @throws java.util.NoSuchElementException if there is no such topic
+     * @throws AccessDeniedException if the user doesn't own the topic
+     */
     public Quiz generateAndSaveQuiz(User user, Integer topicId) {
+        // Before the pool: pooled quizzes are generated from the owner's materials
+        Topic topic = findOwnedTopic(user, topicId);
+
+        // Serve a pre-generated quiz if the pool has one, generating on the spot takes seconds
+        Optional<Quiz> pooled = quizPool.take(topicId);
+        if (pooled.isPresent()) {
+            log.info("Served quiz {} for topic {} from the pool", pooled.get().getId(), topicId);
+            return pooled.get();
+        }
 
-        // get the Topic that owns the Quiz
-        Topic topic = topicRepository.getReferenceById(topicId);
-
-        // Create an AI template for the prompt
+        // Create an AI template for the prompt, retrieval is scoped to the topic's course
         InvocationParameters parameters = InvocationParameters.from(Map.of(
-                "userid", String.valueOf(user.getId())
-//                "courseid", ...
+                "userid", String.valueOf(user.getId()),
+                "courseid", String.valueOf(topic.getCourse().getId()),
+                RetrievalQueries.KEYWORDS, topic.getName()
         ));
-        QuizAiTemplate aiTemplate = aiAssistant.generateQuizQuestions(topic.getName(), parameters);
-        Quiz generatedQuiz = Quiz.builder()
+        QuizAiTemplate aiTemplate;
+        foregroundGenerations.incrementAndGet();
+        try {
+            aiTemplate = aiAssistant.generateQuizQuestions(topic.getName(), parameters);
+        } finally {
+            foregroundGenerations.decrementAndGet();
+        }
+        Quiz generatedQuiz = toQuiz(aiTemplate, topic);
+        log.info("Generated quiz: {}", generatedQuiz);
+
+        return quizRepository.save(generatedQuiz);
+    }
+
+    /**
+     * Generates up to {@code count} questions for the topic. The RAG context is retrieved once and shared by
+     * all model calls; batches larger than {@code questionsPerCall} are split into sub-calls that run in parallel.
+     * Invalid and duplicate questions are dropped, so fewer than {@code count} quizzes may be returned.
+     *
+     * @throws LlmOverloadedException if the model is overloaded and no part of the batch could be generated
+     */
+    public List<Quiz> generateAndSaveQuizBatch(User user, Integer topicId, int count) {
+        Topic topic = findOwnedTopic(user, topicId);
+
+        List<Quiz> quizzes;
+        foregroundGenerations.incrementAndGet();
+        try {
+            quizzes = generateQuizzes(topic, count);
+        } finally {
+            foregroundGenerations.decrementAndGet();
+        }
+        if (quizzes.isEmpty()) {
+            throw new IllegalStateException("The model did not return any valid quiz");
+        }
+
+        // saveAll runs in a single transaction
+        return quizRepository.saveAll(quizzes);
+    }
+
+    private Topic findOwnedTopic(User user, Integer topicId) {
+        Topic topic = topicRepository.findWithOwnerById(topicId).orElseThrow();
+        if (!Objects.equals(user.getId(), topic.getCourse().getUser().getId())) {
+            throw new AccessDeniedException("User does not own the topic");
+        }
+        return topic;
+    }
+
+    /**
+     * Generates up to {@code count} unsaved quizzes. The topic's course and user have to be loaded.
+     */
+    public List<Quiz> generateQuizzes(Topic topic, int count) {
+        String topicName = topic.getName();
+        String context = retrieveContext(topicName, InvocationParameters.from(Map.of(
+                "userid", String.valueOf(topic.getCourse().getUser().getId()),
+                "courseid", String.valueOf(topic.getCourse().getId())
+        )));
+
+        int parts = (count + questionsPerCall - 1) / questionsPerCall;
+        List<QuizAiTemplate> templates = new ArrayList<>(count);
+        AtomicReference<LlmOverloadedException> overloaded = new AtomicReference<>();
+        if (parts == 1) {
+            // Same failure handling as the sub-calls, so the batch size doesn't change how errors surface
+            templates.addAll(generateBatchPartOrNone(topic, count, 1, 1, context, overloaded));
+        } else {
+            List<CompletableFuture<List<QuizAiTemplate>>> futures = new ArrayList<>(parts);
+            for (int part = 1; part <= parts; part++) {
+                int partCount = Math.min(questionsPerCall, count - (part - 1) * questionsPerCall);
+                int partNumber = part;
+                futures.add(CompletableFuture.supplyAsync(
+                        () -> generateBatchPartOrNone(topic, partCount, partNumber, parts, context, overloaded), quizGenerationExecutor));
+            }
+            futures.forEach(future -> templates.addAll(future.join()));
+        }
+        if (templates.isEmpty() && overloaded.get() != null) {
+            throw overloaded.get();
+        }
+
+        Set<String> seenQuestions = new HashSet<>();
+        List<Quiz> quizzes = templates.stream()
+                .map(template -> toQuiz(template, topic))
+                .filter(Quiz::isValid)
+                .filter(quiz -> seenQuestions.add(quiz.getQuestion().strip().toLowerCase(Locale.ROOT)))
+                .limit(count)
+                .collect(Collectors.toList());
+        log.info("Generated {} valid quizzes of {} requested for topic {} in {} call(s)", quizzes.size(), count, topic.getId(), parts);
+        return quizzes;
+    }
+
+    public boolean isIdle() {
+        return foregroundGenerations.get() == 0;
+    }
+
+    // A failed part only shrinks the batch; an overload is remembered in case no part succeeds
+    private List<QuizAiTemplate> generateBatchPartOrNone(Topic topic, int count, int part, int parts, String context,
+                                                         AtomicReference<LlmOverloadedException> overloaded) {
+        try {
+            QuizBatchTemplate batch = quizBatchAssistant.generateQuizBatch(topic.getName(), count, part, parts, context);
+            return batch == null || batch.quizzes() == null ? List.of() : batch.quizzes();
+        } catch (LlmOverloadedException e) {
+            overloaded.set(e);
+            log.warn("Quiz batch part {}/{} for topic {} rejected: {}", part, parts, topic.getId(), e.getMessage());
+            return List.of();
+        } catch (RuntimeException e) {
+            log.warn("Quiz batch part {}/{} for topic {} failed", part, parts, topic.getId(), e);
+            return List.of();
+        }
+    }
+
+    private String retrieveContext(String topicName, InvocationParameters parameters) {
+        // Same retrieval and reranking as the AI services, so the batch prompt gets the same context
+        return RetrievalQueries.retrieve(retrievalAugmentor, topicName, parameters).stream()
+                .map(content -> content.textSegment().text())
+                .collect(Collectors.joining("\n\n"));
+    }
+
+    private static Quiz toQuiz(QuizAiTemplate aiTemplate, Topic topic) {
+        return Quiz.builder()
                 .question(aiTemplate.question())
                 .choices(aiTemplate.choices())
                 .correctAnswerIndex(aiTemplate.correctAnswerIndex())
                 .topic(topic)
                 .build();
-        log.info("Generated quiz: {}", generatedQuiz);
-
-        return quizRepository.save(generatedQuiz);
     }
 }
@@ -1,9 +1,11 @@
 package ch.frupp.tutorbot.course.topic.summary;
 
 import ch.frupp.tutorbot.ai.AiAssistant;
+import ch.frupp.tutorbot.ai.RetrievalQueries;
 import ch.frupp.tutorbot.course.topic.Topic;
 import ch.frupp.tutorbot.user.User;
 import dev.langchain4j.invocation.InvocationParameters;
+import dev.langchain4j.service.TokenStream;
 import org.springframework.stereotype.Service;
 
 import java.util.Map;
@@ -17,11 +19,23 @@ public class SummaryService {
         this.aiAssistant = aiAssistant;
     }
 
-    public String generateSummary(String topicName, User user) {
+    public String generateSummary(String topicName, Integer courseId, User user) {
+        // Only retrieve context from the materials of the topic's course, keyword search looks for the topic name
         InvocationParameters parameters = InvocationParameters.from(Map.of(
-                "userid", String.valueOf(user.getId())
-//                "courseid", ...
+                "userid", String.valueOf(user.getId()),
+                "courseid", String.valueOf(courseId),
+                RetrievalQueries.KEYWORDS, topicName
         ));
         return aiAssistant.summarizeTopic(topicName, parameters);
     }
+
+    // Not started yet: the caller registers its handlers and calls start()
+    public TokenStream streamSummary(String topicName, Integer courseId, User user) {
+        InvocationParameters parameters = InvocationParameters.from(Map.of(
+                "userid", String.valueOf(user.getId()),
+                "courseid", String.valueOf(courseId),
+                RetrievalQueries.KEYWORDS, topicName
+        ));
+        return aiAssistant.streamTopicSummary(topicName, parameters);
+    }
 }
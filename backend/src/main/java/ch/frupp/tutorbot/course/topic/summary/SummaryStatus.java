@@ -0,0 +1,8 @@
+package ch.frupp.tutorbot.course.topic.summary;
+
+public enum SummaryStatus {
+    PENDING,
+    GENERATING,
+    READY,
+    FAILED
+}
@@ -0,0 +1,26 @@
+package ch.frupp.tutorbot.course.topic.summary;
+
+import ch.frupp.tutorbot.ai.bulkhead.LlmPriority;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+@Configuration
+public class SummaryStreamConfiguration {
+
+    // Starts summary streams off the request thread: retrieval, reranking and the wait for a bulkhead permit happen
+    // here, so a waiting subscriber doesn't hold a servlet thread. When the queue is full the start is rejected and
+    // reported as an error event. Streams keep the model priority of the thread that started them.
+    @Bean
+    public ThreadPoolTaskExecutor summaryStreamExecutor(@Value("${app.summary.stream.workers:4}") int workers,
+                                                        @Value("${app.summary.stream.queue-capacity:64}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(workers);
+        executor.setMaxPoolSize(workers);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("summary-stream-");
+        executor.setTaskDecorator(LlmPriority::propagate);
+        return executor;
+    }
+}
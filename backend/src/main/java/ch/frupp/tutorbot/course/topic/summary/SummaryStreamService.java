@@ -0,0 +1,178 @@
+package ch.frupp.tutorbot.course.topic.summary;
+
+import ch.frupp.tutorbot.ai.bulkhead.LlmOverloadedException;
+import ch.frupp.tutorbot.course.topic.Topic;
+import ch.frupp.tutorbot.course.topic.TopicDto;
+import ch.frupp.tutorbot.course.topic.TopicRepository;
+import ch.frupp.tutorbot.user.User;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Generates topic summaries in the background and streams the tokens to clients as server-sent events:
+ * {@code token} events carry the generated text piece by piece as {@code {"text": ...}} (JSON, because SSE
+ * strips the leading space many tokens start with), {@code done} the saved topic and
+ * {@code error} a message. Clients that connect while a summary is being generated join the running
+ * generation and first receive the text generated so far. The generation is started on {@code summaryStreamExecutor},
+ * so the emitter is returned before the retrieval and the wait for the model.
+ */
+@Slf4j
+@Service
+public class SummaryStreamService {
+
+    private final SummaryService summaryService;
+    private final TopicRepository topicRepository;
+    private final TaskExecutor summaryStreamExecutor;
+
+    private final Map<Integer, SummaryGeneration> running = new ConcurrentHashMap<>();
+
+    @Value("${app.summary.sse-timeout:PT5M}")
+    private Duration sseTimeout = Duration.ofMinutes(5);
+
+    public SummaryStreamService(SummaryService summaryService, TopicRepository topicRepository,
+                                @Qualifier("summaryStreamExecutor") TaskExecutor summaryStreamExecutor) {
+        this.summaryService = summaryService;
+        this.topicRepository = topicRepository;
+        this.summaryStreamExecutor = summaryStreamExecutor;
+    }
+
+    public SseEmitter stream(User user, Topic topic) {
+        SseEmitter emitter = new SseEmitter(sseTimeout.toMillis());
+        if (topic.getSummaryStatus() == SummaryStatus.READY) {
+            send(emitter, "done", TopicDto.fromTopic(topic));
+            emitter.complete();
+            return emitter;
+        }
+
+        SummaryGeneration generation = new SummaryGeneration(topic.getId());
+        SummaryGeneration existing = running.putIfAbsent(topic.getId(), generation);
+        if (existing != null) {
+            existing.subscribe(emitter);
+            return emitter;
+        }
+        generation.subscribe(emitter);
+        start(generation, user, topic);
+        return emitter;
+    }
+
+    private void start(SummaryGeneration generation, User user, Topic topic) {
+        topic.setSummaryStatus(SummaryStatus.GENERATING);
+        topicRepository.save(topic);
+        log.info("Streaming summary for topic {} ({})", topic.getId(), topic.getName());
+        Integer courseId = topic.getCourse().getId();
+        String topicName = topic.getName();
+        try {
+            summaryStreamExecutor.execute(() -> {
+                // Retrieval and the bulkhead acquire run here, a rejection becomes the error event
+                try {
+                    summaryService.streamSummary(topicName, courseId, user)
+                            .onPartialResponse(generation::onToken)
+                            .onCompleteResponse(generation::onComplete)
+                            .onError(generation::onError)
+                            .start();
+                } catch (RuntimeException e) {
+                    generation.onError(e);
+                }
+            });
+        } catch (TaskRejectedException e) {
+            generation.onError(e);
+        }
+    }
+
+    private static void send(SseEmitter emitter, String name, Object data) {
+        try {
+            emitter.send(SseEmitter.event().name(name).data(data));
+        } catch (IOException | IllegalStateException e) {
+            // Client went away, the generation goes on and is saved anyway
+            emitter.completeWithError(e);
+        }
+    }
+
+    private final class SummaryGeneration {
+
+        private final Integer topicId;
+        private final StringBuilder text = new StringBuilder();
+        private final List<SseEmitter> emitters = new CopyOnWriteArrayList<>();
+        // Set once finished, for clients that joined just before the generation was removed from 'running'
+        private String finalEvent;
+        private Object finalData;
+
+        private SummaryGeneration(Integer topicId) {
+            this.topicId = topicId;
+        }
+
+        synchronized void subscribe(SseEmitter emitter) {
+            if (finalEvent != null) {
+                if (finalData != null) {
+                    send(emitter, finalEvent, finalData);
+                }
+                emitter.complete();
+                return;
+            }
+            emitters.add(emitter);
+            emitter.onCompletion(() -> emitters.remove(emitter));
+            emitter.onError(e -> emitters.remove(emitter));
+            emitter.onTimeout(emitter::complete);
+            if (!text.isEmpty()) {
+                send(emitter, "token", Map.of("text", text.toString()));
+            }
+        }
+
+        synchronized void onToken(String token) {
+            text.append(token);
+            emitters.forEach(emitter -> send(emitter, "token", Map.of("text", token)));
+        }
+
+        synchronized void onComplete(ChatResponse response) {
+            String summary = response.aiMessage() != null && response.aiMessage().text() != null
+                    ? response.aiMessage().text() : text.toString();
+            TopicDto saved = topicRepository.findById(topicId).map(topic -> {
+                topic.setSummary(summary.strip());
+                topic.setSummaryStatus(SummaryStatus.READY);
+                return TopicDto.fromTopic(topicRepository.save(topic));
+            }).orElse(null);
+            finish("done", saved);
+        }
+
+        synchronized void onError(Throwable error) {
+            String message = "Summary generation failed, reconnect to retry";
+            if (error instanceof LlmOverloadedException overloaded) {
+                log.warn("Summary generation for topic {} rejected: {}", topicId, overloaded.getMessage());
+                message = "The model is busy, reconnect in " + overloaded.getRetryAfter().toSeconds() + " seconds";
+            } else {
+                log.error("Summary generation for topic {} failed", topicId, error);
+            }
+            topicRepository.findById(topicId).ifPresent(topic -> {
+                topic.setSummaryStatus(SummaryStatus.FAILED);
+                topicRepository.save(topic);
+            });
+            finish("error", message);
+        }
+
+        private void finish(String event, Object data) {
+            finalEvent = event;
+            finalData = data;
+            running.remove(topicId);
+            for (SseEmitter emitter : emitters) {
+                if (data != null) {
+                    send(emitter, event, data);
+                }
+                emitter.complete();
+            }
+            emitters.clear();
+        }
+    }
+}
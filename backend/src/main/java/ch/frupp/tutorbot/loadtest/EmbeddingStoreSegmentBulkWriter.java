@@ -0,0 +1,43 @@
+package ch.frupp.tutorbot.loadtest;
+
+import ch.frupp.tutorbot.ai.dataprocessing.SegmentBulkWriter;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * SegmentBulkWriter for stores without a bulk protocol: every batch is added right away, so a load can't be
+ * discarded once written. Used with the in-memory store of the {@code loadtest} profile.
+ */
+public class EmbeddingStoreSegmentBulkWriter implements SegmentBulkWriter {
+
+    private final EmbeddingStore<TextSegment> embeddingStore;
+
+    EmbeddingStoreSegmentBulkWriter(EmbeddingStore<TextSegment> embeddingStore) {
+        this.embeddingStore = embeddingStore;
+    }
+
+    @Override
+    public Load open() {
+        AtomicLong rows = new AtomicLong();
+        return new Load() {
+            @Override
+            public void write(List<Embedding> embeddings, List<TextSegment> segments) {
+                embeddingStore.addAll(embeddings, segments);
+                rows.addAndGet(segments.size());
+            }
+
+            @Override
+            public long commit() {
+                return rows.get();
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+}
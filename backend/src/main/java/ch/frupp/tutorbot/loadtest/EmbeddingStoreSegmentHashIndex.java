@@ -0,0 +1,50 @@
+package ch.frupp.tutorbot.loadtest;
+
+import ch.frupp.tutorbot.ai.dataprocessing.SegmentHashIndex;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+import static dev.langchain4j.store.embedding.filter.MetadataFilterBuilder.metadataKey;
+
+/**
+ * SegmentHashIndex for stores that can't be queried by metadata alone: runs a similarity search with an
+ * arbitrary query vector, a minimum score of 0 and the owner and hash filter, so every matching segment
+ * is returned. Linear in the store size, good enough for the in-memory store of the {@code loadtest} profile.
+ */
+public class EmbeddingStoreSegmentHashIndex implements SegmentHashIndex {
+
+    private final EmbeddingStore<TextSegment> embeddingStore;
+    private final Embedding probe;
+
+    EmbeddingStoreSegmentHashIndex(EmbeddingStore<TextSegment> embeddingStore, int dimension) {
+        this.embeddingStore = embeddingStore;
+        float[] vector = new float[dimension];
+        vector[0] = 1;
+        this.probe = Embedding.from(vector);
+    }
+
+    @Override
+    public Set<String> findExisting(Integer userId, Integer courseId, Collection<String> segmentHashes) {
+        if (segmentHashes.isEmpty()) return Set.of();
+        EmbeddingSearchRequest request = EmbeddingSearchRequest.builder()
+                .queryEmbedding(probe)
+                .maxResults(segmentHashes.size())
+                .minScore(0.0)
+                .filter(metadataKey("userid").isEqualTo(String.valueOf(userId))
+                        .and(metadataKey("courseid").isEqualTo(String.valueOf(courseId)))
+                        .and(metadataKey(METADATA_KEY).isIn(segmentHashes)))
+                .build();
+        Set<String> existing = new HashSet<>();
+        for (EmbeddingMatch<TextSegment> match : embeddingStore.search(request).matches()) {
+            existing.add(match.embedded().metadata().getString(METADATA_KEY));
+        }
+        return existing;
+    }
+}
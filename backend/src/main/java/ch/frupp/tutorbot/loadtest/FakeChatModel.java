@@ -0,0 +1,51 @@
+package ch.frupp.tutorbot.loadtest;
+
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.listener.ChatModelListener;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.output.FinishReason;
+import dev.langchain4j.model.output.TokenUsage;
+
+import java.util.List;
+
+/**
+ * ChatModel of the {@code loadtest} profile: blocks for a sampled latency like a call to Ollama would and
+ * answers with {@link FakeResponses}.
+ */
+public class FakeChatModel implements ChatModel {
+
+    static final String MODEL_NAME = "loadtest-fake";
+
+    private final FakeLatency latency;
+    private final List<ChatModelListener> listeners;
+
+    FakeChatModel(FakeLatency latency, List<ChatModelListener> listeners) {
+        this.latency = latency;
+        this.listeners = listeners;
+    }
+
+    @Override
+    public ChatResponse doChat(ChatRequest chatRequest) {
+        FakeLatency.sleep(latency.nextMillis());
+        String text = FakeResponses.answer(chatRequest);
+        return response(chatRequest, text);
+    }
+
+    @Override
+    public List<ChatModelListener> listeners() {
+        return listeners;
+    }
+
+    // Rough token counts, 4 characters per token
+    static ChatResponse response(ChatRequest request, String text) {
+        int inputChars = request.messages().stream().mapToInt(message -> message.toString().length()).sum();
+        return ChatResponse.builder()
+                .aiMessage(AiMessage.from(text))
+                .modelName(MODEL_NAME)
+                .tokenUsage(new TokenUsage(inputChars / 4, text.length() / 4))
+                .finishReason(FinishReason.STOP)
+                .build();
+    }
+}
@@ -0,0 +1,41 @@
+package ch.frupp.tutorbot.loadtest;
+
+import java.time.Duration;
+import java.util.Random;
+
+/**
+ * Log-normal response time of the fake model, given by its median and 99th percentile. Seeded, so a run
+ * with the same request order sees the same latencies.
+ */
+final class FakeLatency {
+
+    // z-score of the 99th percentile of the standard normal distribution
+    private static final double Z_99 = 2.326;
+
+    private final double mu;
+    private final double sigma;
+    private final Random random;
+
+    FakeLatency(Duration median, Duration p99, long seed) {
+        this.mu = Math.log(Math.max(1, median.toMillis()));
+        this.sigma = p99.compareTo(median) > 0 ? Math.log((double) p99.toMillis() / Math.max(1, median.toMillis())) / Z_99 : 0;
+        this.random = new Random(seed);
+    }
+
+    long nextMillis() {
+        double gaussian;
+        synchronized (random) {
+            gaussian = random.nextGaussian();
+        }
+        return Math.round(Math.exp(mu + sigma * gaussian));
+    }
+
+    static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while simulating the model", e);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package ch.frupp.tutorbot.loadtest;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.chat.request.ChatRequest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Deterministic answers to the prompts of {@code AiAssistant} and {@code QuizBatchAssistant}: the same prompt
+ * always yields the same text. Quiz prompts get valid JSON with the requested number of distinct questions,
+ * everything else a summary-like paragraph.
+ */
+final class FakeResponses {
+
+    private static final Pattern TOPIC = Pattern.compile("topic: \"?([^\"\\n]+)\"?");
+    private static final Pattern COUNT = Pattern.compile("Generate exactly (\\d+) multiple-choice questions");
+    private static final Pattern PART = Pattern.compile("part (\\d+) of (\\d+)");
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private FakeResponses() {
+    }
+
+    static String answer(ChatRequest request) {
+        String system = "";
+        String user = "";
+        for (ChatMessage message : request.messages()) {
+            if (message instanceof SystemMessage systemMessage) {
+                system = systemMessage.text();
+            } else if (message instanceof UserMessage userMessage && userMessage.hasSingleText()) {
+                user = userMessage.singleText();
+            }
+        }
+        String topic = find(TOPIC, user, 1, "the topic");
+
+        if (system.contains("QuizBatchTemplate")) {
+            int count = Integer.parseInt(find(COUNT, user, 1, "1"));
+            String part = find(PART, user, 1, "1");
+            List<Map<String, Object>> quizzes = new ArrayList<>(count);
+            for (int i = 1; i <= count; i++) {
+                quizzes.add(quiz(topic, "part " + part + ", question " + i));
+            }
+            return json(Map.of("quizzes", quizzes));
+        }
+        if (system.contains("QuizAiTemplate") || user.contains("multiple-choice question")) {
+            return json(quiz(topic, "question " + Integer.toHexString(user.hashCode())));
+        }
+        return topic + " is a central concept of the course. It builds on the definitions introduced earlier, "
+                + "connects them through a small number of key results and is usually practiced with worked examples "
+                + "before it is applied to larger problems. Understanding " + topic + " makes the following chapters easier.";
+    }
+
+    private static Map<String, Object> quiz(String topic, String variant) {
+        int correct = Math.floorMod((topic + variant).hashCode(), 4);
+        return Map.of(
+                "question", "Which statement about " + topic + " is correct (" + variant + ")?",
+                "choices", List.of("Statement A", "Statement B", "Statement C", "Statement D"),
+                "correctAnswerIndex", correct);
+    }
+
+    private static String find(Pattern pattern, String text, int group, String fallback) {
+        Matcher matcher = pattern.matcher(text);
+        return matcher.find() ? matcher.group(group).strip() : fallback;
+    }
+
+    private static String json(Object value) {
+        try {
+            return MAPPER.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package ch.frupp.tutorbot.loadtest;
+
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.chat.listener.ChatModelListener;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * StreamingChatModel of the {@code loadtest} profile: the first token arrives after a sampled latency, the
+ * remaining words follow at {@code tokensPerSecond}. Tokens are emitted from a scheduler, like the HTTP
+ * client thread of the Ollama model would.
+ */
+public class FakeStreamingChatModel implements StreamingChatModel {
+
+    private final FakeLatency latency;
+    private final int tokensPerSecond;
+    private final ScheduledExecutorService scheduler;
+    private final List<ChatModelListener> listeners;
+
+    FakeStreamingChatModel(FakeLatency latency, int tokensPerSecond, ScheduledExecutorService scheduler, List<ChatModelListener> listeners) {
+        this.latency = latency;
+        this.tokensPerSecond = tokensPerSecond;
+        this.scheduler = scheduler;
+        this.listeners = listeners;
+    }
+
+    @Override
+    public void doChat(ChatRequest chatRequest, StreamingChatResponseHandler handler) {
+        String text = FakeResponses.answer(chatRequest);
+        String[] tokens = text.split("(?<= )");
+        long interval = Math.max(1, 1000L / Math.max(1, tokensPerSecond));
+        long delay = latency.nextMillis();
+        for (int i = 0; i < tokens.length; i++) {
+            String token = tokens[i];
+            scheduler.schedule(() -> handler.onPartialResponse(token), delay + i * interval, TimeUnit.MILLISECONDS);
+        }
+        scheduler.schedule(() -> handler.onCompleteResponse(FakeChatModel.response(chatRequest, text)),
+                delay + tokens.length * interval, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public List<ChatModelListener> listeners() {
+        return listeners;
+    }
+}
@@ -0,0 +1,79 @@
+package ch.frupp.tutorbot.loadtest;
+
+import ch.frupp.tutorbot.ai.bulkhead.BulkheadChatModel;
+import ch.frupp.tutorbot.ai.bulkhead.BulkheadStreamingChatModel;
+import ch.frupp.tutorbot.ai.bulkhead.LlmBulkhead;
+import ch.frupp.tutorbot.ai.dataprocessing.SegmentBulkWriter;
+import ch.frupp.tutorbot.ai.dataprocessing.SegmentHashIndex;
+import ch.frupp.tutorbot.ai.metrics.ChatModelMetrics;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import dev.langchain4j.store.embedding.inmemory.InMemoryEmbeddingStore;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * Offline replacements for the external services, so the whole request path can be load tested on a laptop:
+ * fake chat models with a configurable latency instead of Ollama and an in-memory vector store instead of
+ * pgvector. The database is an in-memory H2 (application-loadtest.properties). The fakes sit behind the
+ * same bulkhead and metrics as the real models, so queueing and 429s behave like in production.
+ */
+@Configuration
+@Profile("loadtest")
+@Slf4j
+public class LoadTestConfiguration {
+
+    private final ScheduledExecutorService tokenScheduler = Executors.newScheduledThreadPool(2);
+
+    @Bean
+    public EmbeddingStore<TextSegment> embeddingStore() {
+        log.warn("loadtest profile: using an in-memory embedding store and fake chat models");
+        return new InMemoryEmbeddingStore<>();
+    }
+
+    @Bean
+    public SegmentHashIndex segmentHashIndex(EmbeddingStore<TextSegment> embeddingStore, EmbeddingModel embeddingModel) {
+        return new EmbeddingStoreSegmentHashIndex(embeddingStore, embeddingModel.dimension());
+    }
+
+    @Bean
+    public SegmentBulkWriter segmentBulkWriter(EmbeddingStore<TextSegment> embeddingStore) {
+        return new EmbeddingStoreSegmentBulkWriter(embeddingStore);
+    }
+
+    @Bean
+    FakeLatency fakeLatency(@Value("${app.loadtest.llm.latency-median:PT2S}") Duration median,
+                            @Value("${app.loadtest.llm.latency-p99:PT8S}") Duration p99,
+                            @Value("${app.loadtest.llm.seed:42}") long seed) {
+        return new FakeLatency(median, p99, seed);
+    }
+
+    @Bean
+    public ChatModel chatModel(FakeLatency fakeLatency, LlmBulkhead llmBulkhead, ChatModelMetrics chatModelMetrics) {
+        return new BulkheadChatModel(new FakeChatModel(fakeLatency, List.of(chatModelMetrics)), llmBulkhead);
+    }
+
+    @Bean
+    public StreamingChatModel streamingChatModel(FakeLatency fakeLatency, LlmBulkhead llmBulkhead, ChatModelMetrics chatModelMetrics,
+                                                 @Value("${app.loadtest.llm.stream-tokens-per-second:20}") int tokensPerSecond) {
+        return new BulkheadStreamingChatModel(
+                new FakeStreamingChatModel(fakeLatency, tokensPerSecond, tokenScheduler, List.of(chatModelMetrics)), llmBulkhead);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        tokenScheduler.shutdownNow();
+    }
+}
@@ -0,0 +1,77 @@
+package ch.frupp.tutorbot.ai;
+
+import ch.frupp.tutorbot.course.CollectionVersion;
+import ch.frupp.tutorbot.course.material.CourseMaterialRepository;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.invocation.InvocationParameters;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CachingAiAssistantTest {
+
+    private AiAssistant delegate;
+    private CourseMaterialRepository courseMaterialRepository;
+    private EmbeddingModel embeddingModel;
+    private CachingAiAssistant assistant;
+
+    private final InvocationParameters parameters = InvocationParameters.from(Map.of("userid", "123", "courseid", "1"));
+
+    @BeforeEach
+    void setup() {
+        delegate = Mockito.mock(AiAssistant.class);
+        courseMaterialRepository = Mockito.mock(CourseMaterialRepository.class);
+        embeddingModel = Mockito.mock(EmbeddingModel.class);
+        Mockito.when(embeddingModel.embed(ArgumentMatchers.anyString())).thenReturn(Response.from(Embedding.from(new float[]{1, 0})));
+        assistant = assistant(Duration.ZERO);
+    }
+
+    private CachingAiAssistant assistant(Duration versionTtl) {
+        return new CachingAiAssistant(delegate, courseMaterialRepository, embeddingModel, CachingAiAssistant.Scope.COURSE,
+                new SemanticResponseCache<>("summarizeTopic", 100, Duration.ofHours(1), 0.9, new SimpleMeterRegistry()), null, versionTtl);
+    }
+
+    @Test
+    void summarizeTopic_unchangedMaterials_callsModelOnce() {
+        Mockito.when(courseMaterialRepository.findVersionByCourseId(1, 123)).thenReturn(new CollectionVersion(2, 7, Instant.EPOCH));
+        Mockito.when(delegate.summarizeTopic("Integrals", parameters)).thenReturn("Integrals sum up areas.");
+
+        assertEquals("Integrals sum up areas.", assistant.summarizeTopic("Integrals", parameters));
+        assertEquals("Integrals sum up areas.", assistant.summarizeTopic("Integrals", parameters));
+        Mockito.verify(delegate, Mockito.times(1)).summarizeTopic("Integrals", parameters);
+    }
+
+    @Test
+    void summarizeTopic_newMaterial_callsModelAgain() {
+        Mockito.when(courseMaterialRepository.findVersionByCourseId(1, 123))
+                .thenReturn(new CollectionVersion(2, 7, Instant.EPOCH))
+                .thenReturn(new CollectionVersion(3, 8, Instant.EPOCH.plusSeconds(60)));
+        Mockito.when(delegate.summarizeTopic("Integrals", parameters)).thenReturn("Integrals sum up areas.");
+
+        assistant.summarizeTopic("Integrals", parameters);
+        assistant.summarizeTopic("Integrals", parameters);
+        Mockito.verify(delegate, Mockito.times(2)).summarizeTopic("Integrals", parameters);
+    }
+
+    @Test
+    void summarizeTopic_cacheHitWithinVersionTtl_skipsTheVersionQuery() {
+        assistant = assistant(Duration.ofMinutes(1));
+        Mockito.when(courseMaterialRepository.findVersionByCourseId(1, 123)).thenReturn(new CollectionVersion(2, 7, Instant.EPOCH));
+        Mockito.when(delegate.summarizeTopic("Integrals", parameters)).thenReturn("Integrals sum up areas.");
+
+        assistant.summarizeTopic("Integrals", parameters);
+        assistant.summarizeTopic("Integrals", parameters);
+        Mockito.verify(courseMaterialRepository, Mockito.times(1)).findVersionByCourseId(1, 123);
+        Mockito.verify(delegate, Mockito.times(1)).summarizeTopic("Integrals", parameters);
+    }
+}
@@ -0,0 +1,69 @@
+package ch.frupp.tutorbot.ai;
+
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.rag.content.Content;
+import dev.langchain4j.rag.content.ContentMetadata;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class HybridContentRetrieverTest {
+
+    private static Content content(String id, String text) {
+        return Content.from(TextSegment.from(text), Map.of(ContentMetadata.EMBEDDING_ID, id));
+    }
+
+    private static List<String> texts(List<Content> contents) {
+        return contents.stream().map(content -> content.textSegment().text()).toList();
+    }
+
+    @Test
+    void fuse_segmentInBothRankings_rankedFirst() {
+        List<Content> vector = List.of(content("a", "Riemann sums"), content("b", "Bellman-Ford"));
+        List<Content> keyword = List.of(content("b", "Bellman-Ford"), content("c", "Dijkstra"));
+
+        assertEquals(List.of("Bellman-Ford", "Riemann sums", "Dijkstra"),
+                texts(HybridContentRetriever.fuse(List.of(vector, keyword), 5, 60)));
+    }
+
+    @Test
+    void fuse_ties_keepOrderOfFirstRanking() {
+        // Same rank in either list: equal scores, the vector result comes first
+        List<Content> vector = List.of(content("a", "Riemann sums"));
+        List<Content> keyword = List.of(content("c", "Dijkstra"));
+
+        assertEquals(List.of("Riemann sums", "Dijkstra"),
+                texts(HybridContentRetriever.fuse(List.of(vector, keyword), 5, 60)));
+    }
+
+    @Test
+    void fuse_duplicate_keepsContentOfFirstRanking() {
+        Content fromVector = Content.from(TextSegment.from("Bellman-Ford"),
+                Map.of(ContentMetadata.EMBEDDING_ID, "b", ContentMetadata.SCORE, 0.83));
+        List<Content> fused = HybridContentRetriever.fuse(List.of(List.of(fromVector), List.of(content("b", "Bellman-Ford"))), 5, 60);
+
+        assertEquals(1, fused.size());
+        assertSame(fromVector, fused.get(0));
+    }
+
+    @Test
+    void fuse_withoutEmbeddingId_mergesByText() {
+        List<Content> vector = List.of(Content.from("Riemann sums"), Content.from("Bellman-Ford"));
+        List<Content> keyword = List.of(Content.from("Bellman-Ford"));
+
+        assertEquals(List.of("Bellman-Ford", "Riemann sums"),
+                texts(HybridContentRetriever.fuse(List.of(vector, keyword), 5, 60)));
+    }
+
+    @Test
+    void fuse_limitsToMaxResults() {
+        List<Content> vector = List.of(content("a", "Riemann sums"), content("b", "Bellman-Ford"), content("c", "Dijkstra"));
+
+        assertEquals(List.of("Riemann sums", "Bellman-Ford"),
+                texts(HybridContentRetriever.fuse(List.of(vector, List.of()), 2, 60)));
+    }
+}
@@ -0,0 +1,84 @@
+package ch.frupp.tutorbot.ai;
+
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.TokenCountEstimator;
+import dev.langchain4j.model.output.Response;
+import dev.langchain4j.model.scoring.ScoringModel;
+import dev.langchain4j.rag.content.Content;
+import dev.langchain4j.rag.content.ContentMetadata;
+import dev.langchain4j.rag.query.Query;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RerankingContentAggregatorTest {
+
+    private ScoringModel scoringModel;
+    private TokenCountEstimator tokenCountEstimator;
+
+    @BeforeEach
+    void setup() {
+        scoringModel = Mockito.mock(ScoringModel.class);
+        tokenCountEstimator = Mockito.mock(TokenCountEstimator.class);
+        // One token per character keeps the budgets readable
+        Mockito.when(tokenCountEstimator.estimateTokenCountInText(ArgumentMatchers.anyString()))
+                .thenAnswer(invocation -> invocation.<String>getArgument(0).length());
+    }
+
+    private RerankingContentAggregator aggregator(int maxResults, int tokenBudget) {
+        return new RerankingContentAggregator(scoringModel, tokenCountEstimator, maxResults, tokenBudget, 0.8, new SimpleMeterRegistry());
+    }
+
+    private List<String> aggregate(RerankingContentAggregator aggregator, List<String> candidates, Double... scores) {
+        Mockito.when(scoringModel.scoreAll(ArgumentMatchers.anyList(), ArgumentMatchers.anyString()))
+                .thenReturn(Response.from(List.of(scores)));
+        Map<Query, Collection<List<Content>>> queryToContents = Map.of(
+                Query.from("integrals"), List.of(candidates.stream().map(Content::from).toList()));
+        return aggregator.aggregate(queryToContents).stream().map(content -> content.textSegment().text()).toList();
+    }
+
+    @Test
+    void aggregate_ordersByScoreAndAddsRerankedScore() {
+        Mockito.when(scoringModel.scoreAll(ArgumentMatchers.anyList(), ArgumentMatchers.anyString()))
+                .thenReturn(Response.from(List.of(0.1, 0.9)));
+        List<Content> packed = aggregator(5, 1000).aggregate(Map.of(Query.from("integrals"),
+                List.of(List.of(Content.from("riemann sums"), Content.from("definite integrals")))));
+
+        assertEquals(List.of("definite integrals", "riemann sums"), packed.stream().map(content -> content.textSegment().text()).toList());
+        assertEquals(0.9, packed.get(0).metadata().get(ContentMetadata.RERANKED_SCORE));
+    }
+
+    @Test
+    void aggregate_budgetSmallerThanFirstSegment_keepsOnlyBestSegment() {
+        assertEquals(List.of("definite integrals"),
+                aggregate(aggregator(5, 5), List.of("riemann sums", "definite integrals"), 0.1, 0.9));
+    }
+
+    @Test
+    void aggregate_segmentOverBudget_smallerOneFurtherDownStillFits() {
+        // 10 + 18 exceeds the budget of 25, 10 + 3 doesn't
+        assertEquals(List.of("area under", "sum"),
+                aggregate(aggregator(5, 25), List.of("area under", "definite integrals", "sum"), 0.9, 0.5, 0.1));
+    }
+
+    @Test
+    void aggregate_nearDuplicate_dropped() {
+        assertEquals(List.of("the definite integral of f", "riemann sums"),
+                aggregate(aggregator(5, 1000), List.of("the definite integral of f", "The definite integral of f!", "riemann sums"),
+                        0.9, 0.8, 0.1));
+    }
+
+    @Test
+    void aggregate_limitsToMaxResults() {
+        assertEquals(List.of("a b", "c d"),
+                aggregate(aggregator(2, 1000), List.of("a b", "c d", "e f"), 0.9, 0.8, 0.7));
+    }
+}
@@ -0,0 +1,78 @@
+package ch.frupp.tutorbot.ai;
+
+import dev.langchain4j.data.embedding.Embedding;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SemanticResponseCacheTest {
+
+    private SemanticResponseCache<String> cache;
+
+    @BeforeEach
+    void setup() {
+        cache = new SemanticResponseCache<>("summarizeTopic", 100, Duration.ofHours(1), 0.9, new SimpleMeterRegistry());
+    }
+
+    private static Embedding embedding(float... vector) {
+        return Embedding.from(vector);
+    }
+
+    @Test
+    void get_emptyBucket_misses() {
+        assertTrue(cache.get("summarizeTopic:u1:c1:v1", embedding(1, 0)).isEmpty());
+    }
+
+    @Test
+    void get_similarPrompt_returnsCachedResponse() {
+        cache.put("summarizeTopic:u1:c1:v1", embedding(1, 0), "Integrals sum up areas.", Duration.ofSeconds(3));
+
+        assertEquals(Optional.of("Integrals sum up areas."), cache.get("summarizeTopic:u1:c1:v1", embedding(0.99f, 0.05f)));
+    }
+
+    @Test
+    void get_dissimilarPrompt_misses() {
+        cache.put("summarizeTopic:u1:c1:v1", embedding(1, 0), "Integrals sum up areas.", Duration.ofSeconds(3));
+
+        assertTrue(cache.get("summarizeTopic:u1:c1:v1", embedding(0, 1)).isEmpty());
+    }
+
+    @Test
+    void get_otherBucket_misses() {
+        cache.put("summarizeTopic:u1:c1:v1", embedding(1, 0), "Integrals sum up areas.", Duration.ofSeconds(3));
+
+        assertTrue(cache.get("summarizeTopic:u2:c1:v1", embedding(1, 0)).isEmpty());
+        assertTrue(cache.get("summarizeTopic:u1:c1:v2", embedding(1, 0)).isEmpty());
+    }
+
+    @Test
+    void get_severalMatches_returnsMostSimilar() {
+        cache.put("summarizeTopic:u1:c1:v1", embedding(1, 0.3f), "Close", Duration.ofSeconds(3));
+        cache.put("summarizeTopic:u1:c1:v1", embedding(1, 0), "Closest", Duration.ofSeconds(3));
+
+        assertEquals(Optional.of("Closest"), cache.get("summarizeTopic:u1:c1:v1", embedding(1, 0.01f)));
+    }
+
+    @Test
+    void put_fullBucket_evictsOldestEntry() {
+        for (int i = 0; i < 33; i++) {
+            // Orthogonal prompts, so each entry only matches itself
+            float[] vector = new float[33];
+            vector[i] = 1;
+            cache.put("summarizeTopic:u1:c1:v1", Embedding.from(vector), "Summary " + i, Duration.ofSeconds(1));
+        }
+        float[] first = new float[33];
+        first[0] = 1;
+        float[] last = new float[33];
+        last[32] = 1;
+
+        assertTrue(cache.get("summarizeTopic:u1:c1:v1", Embedding.from(first)).isEmpty());
+        assertEquals(Optional.of("Summary 32"), cache.get("summarizeTopic:u1:c1:v1", Embedding.from(last)));
+    }
+}
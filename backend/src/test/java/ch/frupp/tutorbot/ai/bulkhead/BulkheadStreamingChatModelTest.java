@@ -0,0 +1,97 @@
+package ch.frupp.tutorbot.ai.bulkhead;
+
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+
+import java.time.Duration;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class BulkheadStreamingChatModelTest {
+
+    private MeterRegistry meterRegistry;
+    private StreamingChatModel delegate;
+    private StreamingChatResponseHandler handler;
+    private BulkheadStreamingChatModel model;
+
+    private final ChatRequest request = ChatRequest.builder().messages(UserMessage.from("Summarize integrals")).build();
+
+    @BeforeEach
+    void setup() {
+        meterRegistry = new SimpleMeterRegistry();
+        delegate = Mockito.mock(StreamingChatModel.class);
+        handler = Mockito.mock(StreamingChatResponseHandler.class);
+        LlmBulkhead bulkhead = new LlmBulkhead(1, 0, Map.of(LlmPriority.INTERACTIVE, Duration.ofSeconds(1)),
+                Duration.ofSeconds(15), meterRegistry);
+        model = new BulkheadStreamingChatModel(delegate, bulkhead);
+    }
+
+    private double inFlight() {
+        return meterRegistry.get("llm.bulkhead.in.flight").gauge().value();
+    }
+
+    @Test
+    void chat_streamCompletes_releasesSlot() {
+        ChatResponse response = ChatResponse.builder().aiMessage(AiMessage.from("Integrals sum up areas.")).build();
+        Mockito.doAnswer(invocation -> {
+            assertEquals(1, inFlight());
+            invocation.<StreamingChatResponseHandler>getArgument(1).onCompleteResponse(response);
+            return null;
+        }).when(delegate).chat(ArgumentMatchers.any(ChatRequest.class), ArgumentMatchers.any());
+
+        model.chat(request, handler);
+
+        assertEquals(0, inFlight());
+        Mockito.verify(handler).onCompleteResponse(response);
+    }
+
+    @Test
+    void chat_streamFails_releasesSlot() {
+        RuntimeException error = new RuntimeException("Connection reset");
+        Mockito.doAnswer(invocation -> {
+            invocation.<StreamingChatResponseHandler>getArgument(1).onError(error);
+            return null;
+        }).when(delegate).chat(ArgumentMatchers.any(ChatRequest.class), ArgumentMatchers.any());
+
+        model.chat(request, handler);
+
+        assertEquals(0, inFlight());
+        Mockito.verify(handler).onError(error);
+    }
+
+    @Test
+    void chat_delegateThrows_releasesSlot() {
+        Mockito.doThrow(new IllegalStateException("Model unavailable"))
+                .when(delegate).chat(ArgumentMatchers.any(ChatRequest.class), ArgumentMatchers.any());
+
+        assertThrows(IllegalStateException.class, () -> model.chat(request, handler));
+        assertEquals(0, inFlight());
+    }
+
+    @Test
+    void chat_completeAndError_releasesSlotOnce() {
+        Mockito.doAnswer(invocation -> {
+            StreamingChatResponseHandler releasing = invocation.getArgument(1);
+            releasing.onCompleteResponse(ChatResponse.builder().aiMessage(AiMessage.from("Done")).build());
+            releasing.onError(new RuntimeException("Late error"));
+            return null;
+        }).when(delegate).chat(ArgumentMatchers.any(ChatRequest.class), ArgumentMatchers.any());
+
+        model.chat(request, handler);
+
+        // A second release would have driven the count below zero
+        assertEquals(0, inFlight());
+    }
+}
@@ -0,0 +1,88 @@
+package ch.frupp.tutorbot.ai.bulkhead;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LlmBulkheadTest {
+
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setup() {
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    private LlmBulkhead bulkhead(int maxQueued, Duration deadline) {
+        return new LlmBulkhead(1, maxQueued, Map.of(LlmPriority.INTERACTIVE, deadline, LlmPriority.BACKGROUND, deadline),
+                Duration.ofSeconds(15), meterRegistry);
+    }
+
+    private void awaitQueueDepth(int depth) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (meterRegistry.get("llm.bulkhead.queue.depth").gauge().value() < depth) {
+            assertTrue(System.nanoTime() < deadline, "Waiters didn't queue up");
+            Thread.sleep(5);
+        }
+    }
+
+    private static Thread caller(LlmBulkhead bulkhead, LlmPriority priority, List<LlmPriority> granted) {
+        Thread thread = new Thread(() -> priority.call(() -> {
+            bulkhead.acquire();
+            granted.add(priority);
+            bulkhead.release();
+            return null;
+        }));
+        thread.start();
+        return thread;
+    }
+
+    @Test
+    void release_interactiveWaiterOvertakesEarlierBackgroundWaiter() throws Exception {
+        LlmBulkhead bulkhead = bulkhead(10, Duration.ofSeconds(10));
+        List<LlmPriority> granted = new CopyOnWriteArrayList<>();
+        bulkhead.acquire();
+
+        Thread background = caller(bulkhead, LlmPriority.BACKGROUND, granted);
+        awaitQueueDepth(1);
+        Thread interactive = caller(bulkhead, LlmPriority.INTERACTIVE, granted);
+        awaitQueueDepth(2);
+        bulkhead.release();
+        background.join(5000);
+        interactive.join(5000);
+
+        assertEquals(List.of(LlmPriority.INTERACTIVE, LlmPriority.BACKGROUND), granted);
+        assertEquals(0, meterRegistry.get("llm.bulkhead.in.flight").gauge().value());
+    }
+
+    @Test
+    void acquire_deadlinePassed_throwsWithConfiguredRetryAfter() {
+        LlmBulkhead bulkhead = bulkhead(10, Duration.ofMillis(50));
+        bulkhead.acquire();
+
+        LlmOverloadedException e = assertThrows(LlmOverloadedException.class, bulkhead::acquire);
+        assertEquals(Duration.ofSeconds(15), e.getRetryAfter());
+        assertEquals(0, meterRegistry.get("llm.bulkhead.queue.depth").gauge().value());
+        assertEquals(1, meterRegistry.get("llm.bulkhead.rejected").tag("reason", "deadline").counter().count());
+    }
+
+    @Test
+    void acquire_queueFull_throwsRightAway() {
+        LlmBulkhead bulkhead = bulkhead(0, Duration.ofSeconds(10));
+        bulkhead.acquire();
+
+        LlmOverloadedException e = assertThrows(LlmOverloadedException.class, bulkhead::acquire);
+        assertEquals(Duration.ofSeconds(15), e.getRetryAfter());
+        assertEquals(1, meterRegistry.get("llm.bulkhead.rejected").tag("reason", "queue_full").counter().count());
+    }
+}
@@ -0,0 +1,104 @@
+package ch.frupp.tutorbot.ai.dataprocessing;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class EmbeddingPipelineTest {
+
+    private EmbeddingModel embeddingModel;
+    private EmbeddingStore<TextSegment> embeddingStore;
+    private SegmentBulkWriter bulkWriter;
+    private ExecutorService executor;
+    private EmbeddingPipeline pipeline;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setup() {
+        embeddingModel = Mockito.mock(EmbeddingModel.class);
+        embeddingStore = Mockito.mock(EmbeddingStore.class);
+        bulkWriter = Mockito.mock(SegmentBulkWriter.class);
+        executor = Executors.newFixedThreadPool(2);
+        pipeline = new EmbeddingPipeline(embeddingModel, embeddingStore, bulkWriter, executor::execute);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private static List<TextSegment> segments(int count) {
+        return Collections.nCopies(count, TextSegment.from("An integral is the area under a curve."));
+    }
+
+    private static Response<List<Embedding>> embeddings(List<TextSegment> batch) {
+        return Response.from(batch.stream().map(segment -> Embedding.from(new float[]{1, 0})).toList());
+    }
+
+    @Test
+    void abort_withoutBulkLoad_waitsForRunningBatches() {
+        CountDownLatch release = new CountDownLatch(1);
+        Mockito.when(embeddingModel.embedAll(ArgumentMatchers.anyList())).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return embeddings(invocation.getArgument(0));
+        });
+
+        EmbeddingPipeline.Session session = pipeline.start(IngestionProgressListener.NONE, Integer.MAX_VALUE);
+        segments(32).forEach(session::add);
+        executor.execute(() -> {
+            sleep(200);
+            release.countDown();
+        });
+        session.abort();
+
+        // The batch stored before abort returned, so the caller's cleanup removes it
+        Mockito.verify(embeddingStore).addAll(ArgumentMatchers.anyList(), ArgumentMatchers.anyList());
+        Mockito.verifyNoInteractions(bulkWriter);
+    }
+
+    @Test
+    void embedAndStore_failedBatch_throws() {
+        Mockito.when(embeddingModel.embedAll(ArgumentMatchers.anyList()))
+                .thenAnswer(invocation -> embeddings(invocation.getArgument(0)))
+                .thenThrow(new IllegalStateException("Model unavailable"));
+
+        assertThrows(IllegalStateException.class, () -> pipeline.embedAndStore(segments(64), IngestionProgressListener.NONE));
+        Mockito.verifyNoInteractions(bulkWriter);
+    }
+
+    @Test
+    void embedAndStore_failedBulkLoad_discardsLoadWithoutCommit() {
+        SegmentBulkWriter.Load load = Mockito.mock(SegmentBulkWriter.Load.class);
+        Mockito.when(bulkWriter.open()).thenReturn(load);
+        Mockito.when(embeddingModel.embedAll(ArgumentMatchers.anyList())).thenThrow(new IllegalStateException("Model unavailable"));
+
+        assertThrows(IllegalStateException.class, () -> pipeline.embedAndStore(segments(1000), IngestionProgressListener.NONE));
+        Mockito.verify(load).close();
+        Mockito.verify(load, Mockito.never()).commit();
+        Mockito.verifyNoInteractions(embeddingStore);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
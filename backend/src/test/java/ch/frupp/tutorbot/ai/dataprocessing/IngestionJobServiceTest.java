@@ -0,0 +1,49 @@
+package ch.frupp.tutorbot.ai.dataprocessing;
+
+import ch.frupp.tutorbot.course.CourseRepository;
+import ch.frupp.tutorbot.course.material.CourseMaterialRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.util.NoSuchElementException;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class IngestionJobServiceTest {
+
+    private CourseMaterialRepository courseMaterialRepository;
+    private CourseRepository courseRepository;
+    private IngestionJobService service;
+    private final MultipartFile file = new MockMultipartFile("file", "slides.pdf", "application/pdf", new byte[]{1, 2, 3});
+
+    @BeforeEach
+    void setup() {
+        courseMaterialRepository = Mockito.mock(CourseMaterialRepository.class);
+        courseRepository = Mockito.mock(CourseRepository.class);
+        service = new IngestionJobService(Mockito.mock(PDFIngestionService.class), courseMaterialRepository, courseRepository,
+                Mockito.mock(MaterialFileStorage.class), new SyncTaskExecutor());
+    }
+
+    @Test
+    void submit_foreignCourse_isDeniedBeforeDeduplication() {
+        Mockito.when(courseRepository.existsByIdAndUserId(1, 123)).thenReturn(false);
+        Mockito.when(courseRepository.existsById(1)).thenReturn(true);
+
+        assertThrows(AccessDeniedException.class, () -> service.submit(file, 123, 1));
+        Mockito.verifyNoInteractions(courseMaterialRepository);
+    }
+
+    @Test
+    void submit_unknownCourse_throwsNoSuchElement() {
+        Mockito.when(courseRepository.existsByIdAndUserId(1, 123)).thenReturn(false);
+        Mockito.when(courseRepository.existsById(1)).thenReturn(false);
+
+        assertThrows(NoSuchElementException.class, () -> service.submit(file, 123, 1));
+        Mockito.verifyNoInteractions(courseMaterialRepository);
+    }
+}
@@ -0,0 +1,98 @@
+package ch.frupp.tutorbot.ai.dataprocessing;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+class PgCopySegmentBulkWriterTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final List<Embedding> embeddings = List.of(
+            Embedding.from(new float[]{0.5f, -1.25f, 3f}),
+            Embedding.from(new float[]{1f, 0f, -0f}));
+    private final List<TextSegment> segments = List.of(
+            TextSegment.from("Integrale \u00fcber Intervalle", new Metadata().put("userid", "123").put("courseid", "1")),
+            TextSegment.from("Riemann sums", new Metadata().put("materialid", "7")));
+
+    private record Row(UUID id, float[] vector, String text, Map<String, Object> metadata) {
+    }
+
+    // Reads the tuples back in the layout Postgres expects for (uuid, vector, text, json/jsonb)
+    private List<Row> decode(byte[] bytes, boolean jsonb) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        List<Row> rows = new ArrayList<>();
+        while (in.available() > 0) {
+            assertEquals(4, in.readShort());
+
+            assertEquals(16, in.readInt());
+            UUID id = new UUID(in.readLong(), in.readLong());
+
+            int vectorLength = in.readInt();
+            short dimension = in.readShort();
+            assertEquals(4 + 4 * dimension, vectorLength);
+            assertEquals(0, in.readShort());
+            float[] vector = new float[dimension];
+            for (int i = 0; i < dimension; i++) vector[i] = in.readFloat();
+
+            byte[] text = new byte[in.readInt()];
+            in.readFully(text);
+
+            int metadataLength = in.readInt();
+            if (jsonb) {
+                assertEquals(1, in.readByte());
+                metadataLength--;
+            }
+            byte[] metadata = new byte[metadataLength];
+            in.readFully(metadata);
+
+            @SuppressWarnings("unchecked")
+            Map<String, Object> parsed = objectMapper.readValue(metadata, Map.class);
+            rows.add(new Row(id, vector, new String(text, StandardCharsets.UTF_8), parsed));
+        }
+        return rows;
+    }
+
+    @Test
+    void encode_json_decodesToSegments() throws IOException {
+        List<Row> rows = decode(PgCopySegmentBulkWriter.encode(objectMapper, false, embeddings, segments), false);
+
+        assertEquals(2, rows.size());
+        assertArrayEquals(new float[]{0.5f, -1.25f, 3f}, rows.get(0).vector());
+        assertEquals("Integrale \u00fcber Intervalle", rows.get(0).text());
+        assertEquals(Map.of("userid", "123", "courseid", "1"), rows.get(0).metadata());
+        assertArrayEquals(new float[]{1f, 0f, -0f}, rows.get(1).vector());
+        assertEquals("Riemann sums", rows.get(1).text());
+        assertEquals(Map.of("materialid", "7"), rows.get(1).metadata());
+        assertNotEquals(rows.get(0).id(), rows.get(1).id());
+    }
+
+    @Test
+    void encode_jsonb_prefixesVersionByte() throws IOException {
+        List<Row> rows = decode(PgCopySegmentBulkWriter.encode(objectMapper, true, embeddings, segments), true);
+
+        assertEquals(2, rows.size());
+        assertEquals(Map.of("userid", "123", "courseid", "1"), rows.get(0).metadata());
+        assertEquals(Map.of("materialid", "7"), rows.get(1).metadata());
+    }
+
+    @Test
+    void encode_noSegments_isEmpty() {
+        assertEquals(0, PgCopySegmentBulkWriter.encode(objectMapper, true, List.of(), List.of()).length);
+    }
+}
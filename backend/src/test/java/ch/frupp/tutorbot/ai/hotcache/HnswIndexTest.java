@@ -0,0 +1,142 @@
+package ch.frupp.tutorbot.ai.hotcache;
+
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HnswIndexTest {
+
+    private static final int DIMENSION = 32;
+    private static final int SEGMENTS = 2000;
+    private static final int TOP_K = 10;
+    private static final int QUERIES = 100;
+
+    private final Random random = new Random(7);
+    private HnswIndex graph;
+    // Never builds a graph, so it is searched exactly
+    private HnswIndex exact;
+    private List<float[]> vectors;
+
+    @BeforeEach
+    void setup() {
+        graph = new HnswIndex(new HnswIndex.Settings(DIMENSION, 16, 100, 100));
+        exact = new HnswIndex(new HnswIndex.Settings(DIMENSION, 16, 100, Integer.MAX_VALUE));
+        vectors = new ArrayList<>();
+        for (int i = 0; i < SEGMENTS; i++) {
+            float[] vector = randomVector();
+            vectors.add(vector);
+            add("s" + i, vector);
+        }
+    }
+
+    private void add(String id, float[] vector) {
+        TextSegment segment = TextSegment.from("segment " + id);
+        graph.add(id, vector, segment);
+        exact.add(id, vector, segment);
+    }
+
+    private void remove(List<String> ids) {
+        graph.remove(ids);
+        exact.remove(ids);
+    }
+
+    private float[] randomVector() {
+        float[] vector = new float[DIMENSION];
+        for (int i = 0; i < DIMENSION; i++) vector[i] = (float) random.nextGaussian();
+        return vector;
+    }
+
+    private static Set<String> ids(List<EmbeddingMatch<TextSegment>> matches) {
+        Set<String> ids = new HashSet<>();
+        matches.forEach(match -> ids.add(match.embeddingId()));
+        return ids;
+    }
+
+    private double recall(int efSearch) {
+        double found = 0;
+        for (int i = 0; i < QUERIES; i++) {
+            float[] query = randomVector();
+            Set<String> expected = ids(exact.search(query, TOP_K, 0, efSearch));
+            List<EmbeddingMatch<TextSegment>> actual = graph.search(query, TOP_K, 0, efSearch);
+            assertEquals(expected.size(), actual.size());
+            Set<String> hits = ids(actual);
+            hits.retainAll(expected);
+            found += (double) hits.size() / expected.size();
+        }
+        return found / QUERIES;
+    }
+
+    @Test
+    void search_matchesExactSearch() {
+        assertTrue(recall(64) >= 0.9, "recall@" + TOP_K + " below 0.9");
+    }
+
+    @Test
+    void search_returnsMatchesInDescendingScoreOrder() {
+        List<EmbeddingMatch<TextSegment>> matches = graph.search(randomVector(), TOP_K, 0, 64);
+        for (int i = 1; i < matches.size(); i++) {
+            assertTrue(matches.get(i - 1).score() >= matches.get(i).score());
+        }
+    }
+
+    @Test
+    void search_afterRemovals_returnsFullResultsWithoutRemovedIds() {
+        List<String> removed = new ArrayList<>();
+        for (int i = 0; i < SEGMENTS; i += 5) {
+            for (int j = i; j < i + 4; j++) removed.add("s" + j);
+        }
+        remove(removed);
+
+        assertEquals(SEGMENTS - removed.size(), graph.size());
+        assertTrue(graph.needsRebuild());
+        // ef as small as maxResults: tombstones in the beam would cut the results short
+        for (int i = 0; i < QUERIES; i++) {
+            List<EmbeddingMatch<TextSegment>> matches = graph.search(randomVector(), TOP_K, 0, TOP_K);
+            assertEquals(TOP_K, matches.size());
+            matches.forEach(match -> assertFalse(removed.contains(match.embeddingId())));
+        }
+        assertTrue(recall(64) >= 0.9, "recall@" + TOP_K + " below 0.9 after removals");
+    }
+
+    @Test
+    void add_existingId_replacesEntry() {
+        float[] replacement = randomVector();
+        add("s42", replacement);
+
+        assertEquals(SEGMENTS, graph.size());
+        List<EmbeddingMatch<TextSegment>> matches = graph.search(replacement, TOP_K, 0, 64);
+        assertEquals("s42", matches.get(0).embeddingId());
+        assertEquals(1.0, matches.get(0).score(), 1e-4);
+        assertEquals(1, matches.stream().filter(match -> match.embeddingId().equals("s42")).count());
+
+        // The old vector is a tombstone now, it no longer matches itself
+        assertTrue(graph.search(vectors.get(42), 1, 0, 64).get(0).score() < 0.999);
+        assertTrue(recall(64) >= 0.9);
+    }
+
+    @Test
+    void search_minScore_stopsAtThreshold() {
+        List<EmbeddingMatch<TextSegment>> matches = graph.search(vectors.get(7), TOP_K, 0.999, 64);
+
+        assertEquals(1, matches.size());
+        assertEquals("s7", matches.get(0).embeddingId());
+    }
+
+    @Test
+    void search_queryOfWrongDimension_isRejected() {
+        assertThrows(IllegalArgumentException.class, () -> graph.search(new float[DIMENSION + 1], TOP_K, 0, 64));
+        assertThrows(IllegalArgumentException.class, () -> exact.search(new float[DIMENSION - 1], TOP_K, 0, 64));
+    }
+}
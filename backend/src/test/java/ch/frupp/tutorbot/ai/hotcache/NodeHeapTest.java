@@ -0,0 +1,55 @@
+package ch.frupp.tutorbot.ai.hotcache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NodeHeapTest {
+
+    @Test
+    void drainDescending_minHeap_ordersFromMostToLeastSimilar() {
+        Random random = new Random(3);
+        float[] scores = new float[100];
+        // Starts below the initial capacity, so the heap has to grow
+        NodeHeap heap = new NodeHeap(2, false);
+        for (int node = 0; node < scores.length; node++) {
+            scores[node] = random.nextFloat();
+            heap.push(node, scores[node]);
+        }
+
+        int[] drained = heap.drainDescending();
+        assertEquals(scores.length, drained.length);
+        for (int i = 1; i < drained.length; i++) {
+            assertTrue(scores[drained[i - 1]] >= scores[drained[i]]);
+        }
+        assertEquals(0, heap.size());
+    }
+
+    @Test
+    void pop_maxHeap_returnsMostSimilarFirst() {
+        NodeHeap heap = new NodeHeap(4, true);
+        heap.push(1, 0.2f);
+        heap.push(2, 0.9f);
+        heap.push(3, 0.5f);
+
+        assertEquals(0.9f, heap.peekScore());
+        assertEquals(2, heap.pop());
+        assertEquals(3, heap.pop());
+        assertEquals(1, heap.pop());
+    }
+
+    @Test
+    void pop_minHeap_returnsLeastSimilarFirst() {
+        NodeHeap heap = new NodeHeap(4, false);
+        heap.push(1, 0.2f);
+        heap.push(2, 0.9f);
+        heap.push(3, 0.5f);
+
+        assertEquals(1, heap.pop());
+        assertEquals(3, heap.pop());
+        assertEquals(2, heap.pop());
+    }
+}
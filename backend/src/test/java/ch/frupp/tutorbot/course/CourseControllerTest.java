@@ -9,10 +9,12 @@ import org.springframework.security.authentication.UsernamePasswordAuthenticatio
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
+import java.time.Instant;
 import java.util.List;
 
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -33,22 +35,48 @@ class   CourseControllerTest {
         User principal = new User();
         principal.setId(123);
 
-        Course c1 = new Course();
-        c1.setId(1);
-        c1.setUser(principal);
-        c1.setName("Course A");
-
-        Course c2 = new Course();
-        c2.setId(2);
-        c2.setUser(principal);
-        c2.setName("Course B");
-
-        Mockito.when(courseService.findByUserId(123)).thenReturn(List.of(c1, c2));
+        Mockito.when(courseService.listVersion(123)).thenReturn(new CollectionVersion(2, 2, Instant.EPOCH));
+        Mockito.when(courseService.findByUserId(123, null, 50))
+                .thenReturn(new KeysetPage<>(List.of(new CourseDto(1, "Course A"), new CourseDto(2, "Course B")), null));
 
         mockMvc.perform(get("/api/courses").principal(new UsernamePasswordAuthenticationToken(principal, null)))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$[0].name").value("Course A"))
-                .andExpect(jsonPath("$[1].name").value("Course B"));
+                .andExpect(jsonPath("$[1].name").value("Course B"))
+                .andExpect(header().doesNotExist("Link"))
+                .andExpect(header().exists("ETag"));
+    }
+
+    @Test
+    void findAllByUserId_unchanged_returnsNotModified() throws Exception {
+        User principal = new User();
+        principal.setId(123);
+
+        CollectionVersion version = new CollectionVersion(2, 2, Instant.EPOCH);
+        Mockito.when(courseService.listVersion(123)).thenReturn(version);
+
+        mockMvc.perform(get("/api/courses").header("If-None-Match", version.etag(null, 50))
+                        .principal(new UsernamePasswordAuthenticationToken(principal, null)))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("Cache-Control", "no-cache, private"));
+        Mockito.verify(courseService, Mockito.never()).findByUserId(Mockito.any(), Mockito.any(), Mockito.anyInt());
+    }
+
+    @Test
+    void findAllByUserId_morePages_returnsNextLink() throws Exception {
+        User principal = new User();
+        principal.setId(123);
+
+        Mockito.when(courseService.listVersion(123)).thenReturn(new CollectionVersion(12, 12, Instant.EPOCH));
+        Mockito.when(courseService.findByUserId(123, 10, 200))
+                .thenReturn(new KeysetPage<>(List.of(new CourseDto(11, "Course A"), new CourseDto(12, "Course B")), 12));
+
+        mockMvc.perform(get("/api/courses").param("after", "10").param("limit", "5000")
+                        .principal(new UsernamePasswordAuthenticationToken(principal, null)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(header().string("Link", "<http://localhost/api/courses?after=12&limit=200>; rel=\"next\""))
+                .andExpect(header().string("X-Next-Cursor", "12"));
     }
 
     @Test
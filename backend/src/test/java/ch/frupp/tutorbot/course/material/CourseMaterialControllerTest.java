@@ -0,0 +1,164 @@
+package ch.frupp.tutorbot.course.material;
+
+import ch.frupp.tutorbot.ai.dataprocessing.IngestionJob;
+import ch.frupp.tutorbot.ai.dataprocessing.IngestionJobService;
+import ch.frupp.tutorbot.ai.dataprocessing.PDFIngestionService;
+import ch.frupp.tutorbot.user.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.NoSuchElementException;
+import java.util.Optional;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class CourseMaterialControllerTest {
+
+    private MockMvc mockMvc;
+    private PDFIngestionService ingestionService;
+    private IngestionJobService ingestionJobService;
+
+    @BeforeEach
+    void setup() {
+        ingestionService = Mockito.mock(PDFIngestionService.class);
+        ingestionJobService = Mockito.mock(IngestionJobService.class);
+        CourseMaterialController controller = new CourseMaterialController(ingestionService, ingestionJobService);
+        mockMvc = MockMvcBuilders.standaloneSetup(controller).build();
+    }
+
+    @Test
+    void uploadPdf_returnsAcceptedJob() throws Exception {
+        User principal = new User();
+        principal.setId(123);
+
+        MockMultipartFile file = new MockMultipartFile("file", "slides.pdf", "application/pdf", new byte[]{1, 2, 3});
+        IngestionJob job = new IngestionJob(123, 1, 7, "slides.pdf", "abc123", j -> {});
+        Mockito.when(ingestionJobService.submit(Mockito.any(), Mockito.eq(123), Mockito.eq(1))).thenReturn(job);
+
+        mockMvc.perform(multipart("/api/courses/1/materials/upload").file(file)
+                        .principal(new UsernamePasswordAuthenticationToken(principal, null)))
+                .andExpect(status().isAccepted())
+                .andExpect(header().string("Location", "/api/courses/1/materials/jobs/" + job.getId()))
+                .andExpect(jsonPath("$.jobId").value(job.getId()))
+                .andExpect(jsonPath("$.materialId").value(7))
+                .andExpect(jsonPath("$.status").value("PENDING"));
+    }
+
+    @Test
+    void uploadPdf_identicalFile_returnsLinkedMaterial() throws Exception {
+        User principal = new User();
+        principal.setId(123);
+
+        MockMultipartFile file = new MockMultipartFile("file", "slides.pdf", "application/pdf", new byte[]{1, 2, 3});
+        IngestionJob job = new IngestionJob(123, 1, 7, "slides.pdf", "abc123", j -> {});
+        job.markDeduplicated(42);
+        Mockito.when(ingestionJobService.submit(Mockito.any(), Mockito.eq(123), Mockito.eq(1))).thenReturn(job);
+
+        mockMvc.perform(multipart("/api/courses/1/materials/upload").file(file)
+                        .principal(new UsernamePasswordAuthenticationToken(principal, null)))
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.status").value("READY"))
+                .andExpect(jsonPath("$.deduplicated").value(true))
+                .andExpect(jsonPath("$.segmentsSkipped").value(42))
+                .andExpect(jsonPath("$.segmentsEmbedded").value(0));
+    }
+
+    @Test
+    void uploadPdf_queueFull_returnsServiceUnavailable() throws Exception {
+        User principal = new User();
+        principal.setId(123);
+
+        MockMultipartFile file = new MockMultipartFile("file", "slides.pdf", "application/pdf", new byte[]{1, 2, 3});
+        Mockito.when(ingestionJobService.submit(Mockito.any(), Mockito.eq(123), Mockito.eq(1)))
+                .thenThrow(new TaskRejectedException("queue full"));
+
+        mockMvc.perform(multipart("/api/courses/1/materials/upload").file(file)
+                        .principal(new UsernamePasswordAuthenticationToken(principal, null)))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().exists("Retry-After"));
+    }
+
+    @Test
+    void uploadPdf_foreignCourse_returnsForbidden() throws Exception {
+        User principal = new User();
+        principal.setId(123);
+
+        MockMultipartFile file = new MockMultipartFile("file", "slides.pdf", "application/pdf", new byte[]{1, 2, 3});
+        Mockito.when(ingestionJobService.submit(Mockito.any(), Mockito.eq(123), Mockito.eq(1)))
+                .thenThrow(new AccessDeniedException("not the owner"));
+
+        mockMvc.perform(multipart("/api/courses/1/materials/upload").file(file)
+                        .principal(new UsernamePasswordAuthenticationToken(principal, null)))
+                .andExpect(status().isForbidden());
+    }
+
+    @Test
+    void uploadPdf_unknownCourse_returnsNotFound() throws Exception {
+        User principal = new User();
+        principal.setId(123);
+
+        MockMultipartFile file = new MockMultipartFile("file", "slides.pdf", "application/pdf", new byte[]{1, 2, 3});
+        Mockito.when(ingestionJobService.submit(Mockito.any(), Mockito.eq(123), Mockito.eq(1)))
+                .thenThrow(new NoSuchElementException("No course with id 1"));
+
+        mockMvc.perform(multipart("/api/courses/1/materials/upload").file(file)
+                        .principal(new UsernamePasswordAuthenticationToken(principal, null)))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void getIngestionJob_unknownJob_returnsNotFound() throws Exception {
+        User principal = new User();
+        principal.setId(123);
+
+        Mockito.when(ingestionJobService.findJob("missing", 123, 1)).thenReturn(Optional.empty());
+
+        mockMvc.perform(get("/api/courses/1/materials/jobs/missing")
+                        .principal(new UsernamePasswordAuthenticationToken(principal, null)))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void reindexMaterial_returnsAcceptedJob() throws Exception {
+        User principal = new User();
+        principal.setId(123);
+
+        CourseMaterial material = CourseMaterial.builder().id(7).filename("slides.pdf").build();
+        IngestionJob job = new IngestionJob(123, 1, 7, "slides.pdf", "abc123", j -> {});
+        Mockito.when(ingestionService.findOwnedMaterial(principal, 7)).thenReturn(material);
+        Mockito.when(ingestionJobService.reindex(material)).thenReturn(job);
+
+        mockMvc.perform(post("/api/courses/1/materials/7/reindex")
+                        .principal(new UsernamePasswordAuthenticationToken(principal, null)))
+                .andExpect(status().isAccepted())
+                .andExpect(header().string("Location", "/api/courses/1/materials/jobs/" + job.getId()))
+                .andExpect(jsonPath("$.materialId").value(7));
+    }
+
+    @Test
+    void reindexMaterial_fileMissing_returnsConflict() throws Exception {
+        User principal = new User();
+        principal.setId(123);
+
+        CourseMaterial material = CourseMaterial.builder().id(7).filename("slides.pdf").build();
+        Mockito.when(ingestionService.findOwnedMaterial(principal, 7)).thenReturn(material);
+        Mockito.when(ingestionJobService.reindex(material))
+                .thenThrow(new IllegalStateException("The original file of material 7 is not available"));
+
+        mockMvc.perform(post("/api/courses/1/materials/7/reindex")
+                        .principal(new UsernamePasswordAuthenticationToken(principal, null)))
+                .andExpect(status().isConflict());
+    }
+}
@@ -1,6 +1,9 @@
 package ch.frupp.tutorbot.course.topic;
 
+import ch.frupp.tutorbot.course.CollectionVersion;
 import ch.frupp.tutorbot.course.Course;
+import ch.frupp.tutorbot.course.KeysetPage;
+import ch.frupp.tutorbot.course.topic.summary.SummaryStatus;
 import ch.frupp.tutorbot.user.User;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -10,7 +13,9 @@ import org.springframework.security.authentication.UsernamePasswordAuthenticatio
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
+import java.time.Instant;
 import java.util.List;
+import java.util.Optional;
 
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
@@ -35,23 +40,11 @@ class TopicControllerTest {
         User principal = new User();
         principal.setId(123);
 
-        Course course = new Course();
-        course.setId(1);
-        course.setUser(principal);
+        TopicDto t1 = new TopicDto(1, "Integrals", "Integration basics", SummaryStatus.READY);
+        TopicDto t2 = new TopicDto(2, "Derivatives", "Derivative basics", SummaryStatus.READY);
 
-        Topic t1 = new Topic();
-        t1.setId(1);
-        t1.setCourse(course);
-        t1.setName("Integrals");
-        t1.setSummary("Integration basics");
-
-        Topic t2 = new Topic();
-        t2.setId(2);
-        t2.setCourse(course);
-        t2.setName("Derivatives");
-        t2.setSummary("Derivative basics");
-
-        Mockito.when(topicService.listTopicsForUserAndCourse(principal, 1)).thenReturn(List.of(t1, t2));
+        Mockito.when(topicService.listVersion(principal, 1)).thenReturn(new CollectionVersion(2, 2, Instant.EPOCH));
+        Mockito.when(topicService.listTopicsForUserAndCourse(principal, 1, null, 50)).thenReturn(new KeysetPage<>(List.of(t1, t2), null));
 
         mockMvc.perform(get("/api/courses/1/topics").principal(new UsernamePasswordAuthenticationToken(principal, null)))
                 .andExpect(status().isOk())
@@ -98,4 +91,15 @@ class TopicControllerTest {
         mockMvc.perform(delete("/api/courses/1/topics/1").principal(new UsernamePasswordAuthenticationToken(principal, null)))
                 .andExpect(status().isNoContent());
     }
+
+    @Test
+    void streamSummary_unknownTopic_returnsNotFound() throws Exception {
+        User principal = new User();
+        principal.setId(123);
+
+        Mockito.when(topicService.streamSummary(principal, 42)).thenReturn(Optional.empty());
+
+        mockMvc.perform(get("/api/courses/1/topics/42/summary/stream").principal(new UsernamePasswordAuthenticationToken(principal, null)))
+                .andExpect(status().isNotFound());
+    }
 }
@@ -0,0 +1,121 @@
+package ch.frupp.tutorbot.course.topic.quiz;
+
+import ch.frupp.tutorbot.ai.bulkhead.LlmOverloadedException;
+import ch.frupp.tutorbot.course.CollectionVersion;
+import ch.frupp.tutorbot.course.KeysetPage;
+import ch.frupp.tutorbot.user.User;
+import jakarta.servlet.ServletException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class QuizControllerTest {
+
+    private MockMvc mockMvc;
+    private QuizService quizService;
+
+    @BeforeEach
+    void setup() {
+        quizService = Mockito.mock(QuizService.class);
+        QuizController controller = new QuizController(quizService);
+        mockMvc = MockMvcBuilders.standaloneSetup(controller).build();
+    }
+
+    @Test
+    void getQuizzes_returnsOwnedQuizzes() throws Exception {
+        User principal = new User();
+        principal.setId(123);
+
+        QuizDto quiz = new QuizDto(1, "What is an integral?", List.of("A", "B", "C", "D"), 2);
+        Mockito.when(quizService.listVersion(principal, 5)).thenReturn(new CollectionVersion(1, 1, Instant.EPOCH));
+        Mockito.when(quizService.getAllQuizzesByUserAndTopicId(principal, 5, null, 50)).thenReturn(new KeysetPage<>(List.of(quiz), null));
+
+        mockMvc.perform(get("/api/courses/1/topics/5/quizzes")
+                        .principal(new UsernamePasswordAuthenticationToken(principal, null)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].choices.length()").value(4))
+                .andExpect(jsonPath("$[0].correctAnswerIndex").value(2));
+    }
+
+    @Test
+    void createQuizBatch_returnsGeneratedQuizzes() throws Exception {
+        User principal = new User();
+        principal.setId(123);
+
+        Quiz q1 = Quiz.builder().id(1).question("What is an integral?").choices(List.of("A", "B", "C", "D")).correctAnswerIndex(0).build();
+        Quiz q2 = Quiz.builder().id(2).question("What is a derivative?").choices(List.of("A", "B", "C", "D")).correctAnswerIndex(3).build();
+        Mockito.when(quizService.generateAndSaveQuizBatch(principal, 5, 2)).thenReturn(List.of(q1, q2));
+
+        mockMvc.perform(post("/api/courses/1/topics/5/quizzes/batch").param("count", "2")
+                        .principal(new UsernamePasswordAuthenticationToken(principal, null)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[1].question").value("What is a derivative?"));
+    }
+
+    @Test
+    void createQuizBatch_countTooLarge_returnsBadRequest() throws Exception {
+        User principal = new User();
+        principal.setId(123);
+
+        mockMvc.perform(post("/api/courses/1/topics/5/quizzes/batch").param("count", "500")
+                        .principal(new UsernamePasswordAuthenticationToken(principal, null)))
+                .andExpect(status().isBadRequest());
+        Mockito.verifyNoInteractions(quizService);
+    }
+
+    @Test
+    void createQuiz_modelOverloaded_returnsTooManyRequests() throws Exception {
+        User principal = new User();
+        principal.setId(123);
+
+        Mockito.when(quizService.generateAndSaveQuiz(principal, 5))
+                .thenThrow(new LlmOverloadedException("Too many model requests are queued", Duration.ofSeconds(15)));
+
+        mockMvc.perform(post("/api/courses/1/topics/5/quizzes")
+                        .principal(new UsernamePasswordAuthenticationToken(principal, null)))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string("Retry-After", "15"));
+    }
+
+    @Test
+    void createQuiz_notOwner_returnsForbidden() throws Exception {
+        User principal = new User();
+        principal.setId(123);
+
+        Mockito.when(quizService.generateAndSaveQuiz(principal, 5))
+                .thenThrow(new AccessDeniedException("User does not own the topic"));
+
+        mockMvc.perform(post("/api/courses/1/topics/5/quizzes")
+                        .principal(new UsernamePasswordAuthenticationToken(principal, null)))
+                .andExpect(status().isForbidden());
+    }
+
+    @Test
+    void createQuiz_invalidArgument_isNotReportedAsForbidden() {
+        User principal = new User();
+        principal.setId(123);
+
+        Mockito.when(quizService.generateAndSaveQuiz(principal, 5))
+                .thenThrow(new IllegalArgumentException("Unparseable model response"));
+
+        assertThrows(ServletException.class, () -> mockMvc.perform(post("/api/courses/1/topics/5/quizzes")
+                .principal(new UsernamePasswordAuthenticationToken(principal, null))));
+    }
+}
@@ -0,0 +1,105 @@
+package ch.frupp.tutorbot.course.topic.quiz;
+
+import ch.frupp.tutorbot.ai.AiAssistant;
+import ch.frupp.tutorbot.ai.QuizBatchAssistant;
+import ch.frupp.tutorbot.ai.bulkhead.LlmOverloadedException;
+import ch.frupp.tutorbot.course.Course;
+import ch.frupp.tutorbot.course.topic.Topic;
+import ch.frupp.tutorbot.course.topic.TopicRepository;
+import ch.frupp.tutorbot.user.User;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.rag.AugmentationResult;
+import dev.langchain4j.rag.RetrievalAugmentor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.security.access.AccessDeniedException;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class QuizServiceTest {
+
+    private TopicRepository topicRepository;
+    private QuizPool quizPool;
+    private QuizBatchAssistant quizBatchAssistant;
+    private QuizService quizService;
+
+    @BeforeEach
+    void setup() {
+        topicRepository = Mockito.mock(TopicRepository.class);
+        quizPool = Mockito.mock(QuizPool.class);
+        quizBatchAssistant = Mockito.mock(QuizBatchAssistant.class);
+        RetrievalAugmentor retrievalAugmentor = Mockito.mock(RetrievalAugmentor.class);
+        Mockito.when(retrievalAugmentor.augment(Mockito.any())).thenReturn(AugmentationResult.builder().chatMessage(UserMessage.from("Integrals")).contents(List.of()).build());
+        quizService = new QuizService(Mockito.mock(QuizRepository.class), Mockito.mock(AiAssistant.class), topicRepository,
+                quizBatchAssistant, retrievalAugmentor, new SyncTaskExecutor(), quizPool);
+    }
+
+    private Topic topicOwnedBy(int userId) {
+        User owner = new User();
+        owner.setId(userId);
+        Course course = Course.builder().id(1).user(owner).build();
+        return Topic.builder().id(5).name("Integrals").course(course).build();
+    }
+
+    @Test
+    void generateAndSaveQuiz_notOwner_getsNoPooledQuiz() {
+        User principal = new User();
+        principal.setId(123);
+        Mockito.when(topicRepository.findWithOwnerById(5)).thenReturn(Optional.of(topicOwnedBy(456)));
+
+        assertThrows(AccessDeniedException.class, () -> quizService.generateAndSaveQuiz(principal, 5));
+        Mockito.verifyNoInteractions(quizPool);
+    }
+
+    @Test
+    void generateAndSaveQuiz_unknownTopic_throwsBeforeThePool() {
+        User principal = new User();
+        principal.setId(123);
+        Mockito.when(topicRepository.findWithOwnerById(5)).thenReturn(Optional.empty());
+
+        assertThrows(NoSuchElementException.class, () -> quizService.generateAndSaveQuiz(principal, 5));
+        Mockito.verifyNoInteractions(quizPool);
+    }
+
+    @Test
+    void generateAndSaveQuiz_owner_servesPooledQuiz() {
+        User principal = new User();
+        principal.setId(123);
+        Quiz pooled = Quiz.builder().id(7).question("What is an integral?").build();
+        Mockito.when(topicRepository.findWithOwnerById(5)).thenReturn(Optional.of(topicOwnedBy(123)));
+        Mockito.when(quizPool.take(5)).thenReturn(Optional.of(pooled));
+
+        assertSame(pooled, quizService.generateAndSaveQuiz(principal, 5));
+    }
+
+    @Test
+    void generateAndSaveQuizBatch_singlePartFails_failsLikeASplitBatch() {
+        User principal = new User();
+        principal.setId(123);
+        Mockito.when(topicRepository.findWithOwnerById(5)).thenReturn(Optional.of(topicOwnedBy(123)));
+        Mockito.when(quizBatchAssistant.generateQuizBatch(Mockito.anyString(), Mockito.anyInt(), Mockito.anyInt(), Mockito.anyInt(), Mockito.anyString()))
+                .thenThrow(new IllegalArgumentException("Unparseable model response"));
+
+        assertThrows(IllegalStateException.class, () -> quizService.generateAndSaveQuizBatch(principal, 5, 3));
+        assertThrows(IllegalStateException.class, () -> quizService.generateAndSaveQuizBatch(principal, 5, 12));
+    }
+
+    @Test
+    void generateAndSaveQuizBatch_singlePartOverloaded_rethrowsTheRejection() {
+        User principal = new User();
+        principal.setId(123);
+        Mockito.when(topicRepository.findWithOwnerById(5)).thenReturn(Optional.of(topicOwnedBy(123)));
+        Mockito.when(quizBatchAssistant.generateQuizBatch(Mockito.anyString(), Mockito.anyInt(), Mockito.anyInt(), Mockito.anyInt(), Mockito.anyString()))
+                .thenThrow(new LlmOverloadedException("queue full", Duration.ofSeconds(15)));
+
+        assertThrows(LlmOverloadedException.class, () -> quizService.generateAndSaveQuizBatch(principal, 5, 3));
+    }
+}
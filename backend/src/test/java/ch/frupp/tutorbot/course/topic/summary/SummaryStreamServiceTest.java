@@ -0,0 +1,68 @@
+package ch.frupp.tutorbot.course.topic.summary;
+
+import ch.frupp.tutorbot.ai.bulkhead.LlmOverloadedException;
+import ch.frupp.tutorbot.course.Course;
+import ch.frupp.tutorbot.course.topic.Topic;
+import ch.frupp.tutorbot.course.topic.TopicRepository;
+import ch.frupp.tutorbot.user.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+class SummaryStreamServiceTest {
+
+    private SummaryService summaryService;
+    private TopicRepository topicRepository;
+    private List<Runnable> startedTasks;
+    private SummaryStreamService service;
+    private Topic topic;
+    private User user;
+
+    @BeforeEach
+    void setup() {
+        summaryService = Mockito.mock(SummaryService.class);
+        topicRepository = Mockito.mock(TopicRepository.class);
+        startedTasks = new ArrayList<>();
+        service = new SummaryStreamService(summaryService, topicRepository, startedTasks::add);
+
+        user = new User();
+        user.setId(1);
+        topic = Topic.builder().id(5).name("Integrals").course(Course.builder().id(2).user(user).build())
+                .summaryStatus(SummaryStatus.PENDING).build();
+        Mockito.when(topicRepository.findById(5)).thenReturn(Optional.of(topic));
+        Mockito.when(topicRepository.save(Mockito.any(Topic.class))).thenAnswer(invocation -> invocation.getArgument(0));
+    }
+
+    @Test
+    void stream_returnsBeforeTheGenerationStarts() {
+        SseEmitter emitter = service.stream(user, topic);
+
+        assertNotNull(emitter);
+        assertEquals(SummaryStatus.GENERATING, topic.getSummaryStatus());
+        assertEquals(1, startedTasks.size());
+        Mockito.verifyNoInteractions(summaryService);
+    }
+
+    @Test
+    void stream_bulkheadRejectionOnTheWorker_failsTheSummary() {
+        Mockito.when(summaryService.streamSummary("Integrals", 2, user))
+                .thenThrow(new LlmOverloadedException("queue full", Duration.ofSeconds(15)));
+        service.stream(user, topic);
+
+        startedTasks.get(0).run();
+
+        assertEquals(SummaryStatus.FAILED, topic.getSummaryStatus());
+        // The failed generation is finished, the next subscriber starts a new one
+        service.stream(user, topic);
+        assertEquals(2, startedTasks.size());
+    }
+}
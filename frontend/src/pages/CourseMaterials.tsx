@@ -12,6 +12,7 @@ import PictureAsPdfIcon from '@mui/icons-material/PictureAsPdf'
 import DeleteIcon from '@mui/icons-material/Delete'
 import { useEffect, useState, useCallback, useRef } from 'react'
 import { useNavigate } from 'react-router-dom'
+import { fetchAllPages } from '../pagination'
 
 type CourseMaterial = {
   id: string
@@ -38,7 +39,7 @@ export default function CourseMaterials({ courseId }: { courseId?: string }) {
     setLoading(true)
     setError(null)
     try {
-      const res = await fetch(`/api/courses/${encodeURIComponent(courseId)}/materials`, {
+      const { res, items } = await fetchAllPages<CourseMaterial>(`/api/courses/${encodeURIComponent(courseId)}/materials`, {
         method: 'GET',
         credentials: 'include',
         headers: { Accept: 'application/json' },
@@ -66,8 +67,7 @@ export default function CourseMaterials({ courseId }: { courseId?: string }) {
         return
       }
 
-      const data: CourseMaterial[] = await res.json()
-      if (mounted) setMaterials(data ?? [])
+      if (mounted) setMaterials(items)
     } catch (err: unknown) {
       const msg = err instanceof Error ? err.message : String(err)
       if (mounted) setError(msg || 'Failed to load materials')
@@ -1,6 +1,7 @@
 import { Paper, Typography, FormControl, InputLabel, Select, MenuItem, CircularProgress, Stack, Card, CardContent, CardActions, Button, Divider, IconButton, Tooltip } from '@mui/material'
 import AddIcon from '@mui/icons-material/Add'
 import { useEffect, useState } from 'react'
+import { fetchAllPages, nextPageUrl } from '../pagination'
 
 type Topic = {
   id: string
@@ -27,6 +28,7 @@ export default function CourseQuizzes({ courseId }: { courseId?: string }) {
   const [quizzes, setQuizzes] = useState<Quiz[]>([])
   const [loadingQuizzes, setLoadingQuizzes] = useState(false)
   const [quizzesError, setQuizzesError] = useState<string | null>(null)
+  const [nextQuizzesUrl, setNextQuizzesUrl] = useState<string | null>(null)
   // map of quizId -> selected choice index
   const [selectedAnswers, setSelectedAnswers] = useState<Record<string, number | undefined>>({})
 
@@ -37,13 +39,13 @@ export default function CourseQuizzes({ courseId }: { courseId?: string }) {
     if (!courseId) return
     setLoading(true)
     setError(null)
-    fetch(`/api/courses/${encodeURIComponent(courseId)}/topics`)
-      .then(async (res) => {
+    fetchAllPages<Topic>(`/api/courses/${encodeURIComponent(courseId)}/topics`)
+      .then(async ({ res, items }) => {
         if (!res.ok) {
           const text = await res.text()
           throw new Error(text || res.statusText)
         }
-        return res.json()
+        return items
       })
       .then((data: Topic[]) => {
         setTopics(data || [])
@@ -62,7 +64,10 @@ export default function CourseQuizzes({ courseId }: { courseId?: string }) {
   useEffect(() => {
     if (!courseId || !selectedTopicId) {
       // defer clearing quizzes to avoid synchronous setState-in-effect lint rule
-      Promise.resolve().then(() => setQuizzes([]))
+      Promise.resolve().then(() => {
+        setQuizzes([])
+        setNextQuizzesUrl(null)
+      })
       return
     }
     setLoadingQuizzes(true)
@@ -73,6 +78,7 @@ export default function CourseQuizzes({ courseId }: { courseId?: string }) {
           const text = await res.text()
           throw new Error(text || res.statusText)
         }
+        setNextQuizzesUrl(nextPageUrl(res))
         return res.json()
       })
       .then((data: Quiz[]) => {
@@ -88,6 +94,27 @@ export default function CourseQuizzes({ courseId }: { courseId?: string }) {
       .finally(() => setLoadingQuizzes(false))
   }, [courseId, selectedTopicId])
 
+  // the quiz list is paginated, further pages are appended on demand
+  async function loadMoreQuizzes() {
+    if (!nextQuizzesUrl) return
+    setLoadingQuizzes(true)
+    try {
+      const res = await fetch(nextQuizzesUrl)
+      if (!res.ok) {
+        const text = await res.text()
+        throw new Error(text || res.statusText)
+      }
+      setNextQuizzesUrl(nextPageUrl(res))
+      const data: Quiz[] = await res.json()
+      setQuizzes((prev) => [...prev, ...(data || [])])
+    } catch (e) {
+      console.error('Failed to load more quizzes', e)
+      setQuizzesError('Failed to load more quizzes')
+    } finally {
+      setLoadingQuizzes(false)
+    }
+  }
+
   async function createQuizForSelectedTopic() {
     if (!courseId || !selectedTopicId) return
     setCreatingQuiz(true)
@@ -246,6 +273,12 @@ export default function CourseQuizzes({ courseId }: { courseId?: string }) {
           </Card>
         ))}
 
+        {nextQuizzesUrl && (
+          <Button onClick={loadMoreQuizzes} disabled={loadingQuizzes}>
+            Load more quizzes
+          </Button>
+        )}
+
         {quizzesError && <Typography color="error">{quizzesError}</Typography>}
         {error && <Typography color="error">{error}</Typography>}
       </Stack>
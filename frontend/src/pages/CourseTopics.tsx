@@ -1,13 +1,15 @@
 import { Paper, Typography, Stack, Box, TextField, Button, IconButton, List, ListItem, ListItemText, ListItemButton, CircularProgress, Alert, Dialog, DialogTitle, DialogContent, DialogActions, Fab } from '@mui/material'
 import DeleteIcon from '@mui/icons-material/Delete'
 import AddIcon from '@mui/icons-material/Add'
-import { useEffect, useState, useCallback } from 'react'
+import { useEffect, useState, useCallback, useRef } from 'react'
 import { useNavigate, useParams } from 'react-router-dom'
+import { fetchAllPages } from '../pagination'
 
 type Topic = {
   id: string
   name: string
   summary?: string
+  summaryStatus?: 'PENDING' | 'GENERATING' | 'READY' | 'FAILED'
 }
 
 export default function CourseTopics({ courseId: propCourseId }: { courseId?: string } = {}) {
@@ -21,6 +23,7 @@ export default function CourseTopics({ courseId: propCourseId }: { courseId?: st
   const [name, setName] = useState('')
   const [deletingIds, setDeletingIds] = useState<Record<string, boolean>>({})
   const [dialogOpen, setDialogOpen] = useState(false)
+  const summaryStreams = useRef<Record<string, EventSource>>({})
   const navigate = useNavigate()
   const params = useParams()
   const courseId = propCourseId ?? params.courseId
@@ -34,7 +37,7 @@ export default function CourseTopics({ courseId: propCourseId }: { courseId?: st
     setLoading(true)
     setError(null)
     try {
-      const res = await fetch(`/api/courses/${encodeURIComponent(courseId)}/topics`, { method: 'GET', credentials: 'include', headers: { Accept: 'application/json' } })
+      const { res, items: data } = await fetchAllPages<Topic>(`/api/courses/${encodeURIComponent(courseId)}/topics`, { method: 'GET', credentials: 'include', headers: { Accept: 'application/json' } })
       if (res.status === 403) {
         try { localStorage.removeItem('user') } catch (e) { void e }
         try { window.dispatchEvent(new Event('authChange')) } catch (e) { void e }
@@ -46,8 +49,7 @@ export default function CourseTopics({ courseId: propCourseId }: { courseId?: st
         setError(t || `HTTP ${res.status}`)
         return
       }
-      const data: Topic[] = await res.json()
-      setTopics(data ?? [])
+      setTopics(data)
       // clear selection if the selected topic no longer exists
       setSelectedTopicId((prev) => {
         if (!prev) return prev
@@ -75,6 +77,35 @@ export default function CourseTopics({ courseId: propCourseId }: { courseId?: st
     setSelectedSummary(t?.summary ?? '')
   }, [selectedTopicId, topics])
 
+  // Summaries are generated after creation; tokens arrive as server-sent events and are appended as they come
+  const streamSummary = useCallback((topicId: string) => {
+    if (!courseId || summaryStreams.current[topicId]) return
+    const updateTopic = (update: (t: Topic) => Topic) =>
+      setTopics((prev) => (prev ? prev.map((p) => (String(p.id) === String(topicId) ? update(p) : p)) : prev))
+    const source = new EventSource(`/api/courses/${encodeURIComponent(courseId)}/topics/${encodeURIComponent(topicId)}/summary/stream`, { withCredentials: true })
+    summaryStreams.current[topicId] = source
+    const close = () => {
+      source.close()
+      delete summaryStreams.current[topicId]
+    }
+    updateTopic((t) => ({ ...t, summary: '', summaryStatus: 'GENERATING' }))
+    source.addEventListener('token', (e) => {
+      const { text } = JSON.parse((e as MessageEvent).data) as { text: string }
+      updateTopic((t) => ({ ...t, summary: (t.summary ?? '') + text }))
+    })
+    source.addEventListener('done', (e) => {
+      const saved = JSON.parse((e as MessageEvent).data) as Topic
+      updateTopic((t) => ({ ...t, summary: saved.summary, summaryStatus: 'READY' }))
+      close()
+    })
+    source.addEventListener('error', () => {
+      updateTopic((t) => ({ ...t, summaryStatus: 'FAILED' }))
+      close()
+    })
+  }, [courseId])
+
+  useEffect(() => () => { Object.values(summaryStreams.current).forEach((s) => s.close()) }, [])
+
   // return true on success so callers (dialog) can close
   const handleCreate = useCallback(async (): Promise<boolean> => {
     if (!name.trim()) return false
@@ -108,9 +139,11 @@ export default function CourseTopics({ courseId: propCourseId }: { courseId?: st
         setCreateError(t || `Create failed: HTTP ${res.status}`)
         return false
       }
-      // created, refresh
+      // created, refresh and stream the summary that is now being generated
+      const created: Topic = await res.json()
       setName('')
       await loadTopics()
+      streamSummary(String(created.id))
       return true
     } catch (err: unknown) {
       const msg = err instanceof Error ? err.message : String(err)
@@ -119,7 +152,7 @@ export default function CourseTopics({ courseId: propCourseId }: { courseId?: st
     } finally {
       setCreating(false)
     }
-  }, [name, loadTopics, navigate, courseId])
+  }, [name, loadTopics, navigate, courseId, streamSummary])
 
   const handleDelete = useCallback(async (id: string) => {
     setCreateError(null)
@@ -157,6 +190,7 @@ export default function CourseTopics({ courseId: propCourseId }: { courseId?: st
     setSelectedTopicId((prev) => (prev === t.id ? null : t.id))
     // selectedSummary is synced in useEffect; but set immediately for snappy UX
     setSelectedSummary(t.summary ?? '')
+    if (t.summaryStatus === 'PENDING' || t.summaryStatus === 'FAILED') streamSummary(String(t.id))
   }
 
   const handleSummaryChange = (value: string) => {
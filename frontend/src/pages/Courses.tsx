@@ -20,6 +20,7 @@ import AddIcon from '@mui/icons-material/Add'
 import SearchIcon from '@mui/icons-material/Search'
 import CloseIcon from '@mui/icons-material/Close'
 import { useNavigate } from 'react-router-dom'
+import { fetchAllPages } from '../pagination'
 import ErrorOutlineSharpIcon from '@mui/icons-material/ErrorOutlineSharp'
 import ForwardSharpIcon from '@mui/icons-material/ForwardSharp'
 import DeleteOutlineSharpIcon from '@mui/icons-material/DeleteOutlineSharp'
@@ -66,7 +67,7 @@ export default function Courses() {
     setLoading(true)
     setError(null)
     try {
-      const res = await fetch('/api/courses', { credentials: 'include' })
+      const { res, items } = await fetchAllPages<Course>('/api/courses', { credentials: 'include' })
       if (!res.ok) {
         // If the server indicates we're not authorized, clear local auth and redirect to login
         if (res.status === 401 || res.status === 403) {
@@ -79,8 +80,7 @@ export default function Courses() {
         setCourses([])
         return
       }
-      const data = await res.json()
-      setCourses(data ?? [])
+      setCourses(items)
     } catch (err: unknown) {
       const message = err instanceof Error ? err.message : String(err ?? 'Failed to load courses')
       setError(message)
@@ -0,0 +1,26 @@
+// List endpoints return one page as a JSON array and announce the next one in a `Link: <url>; rel="next"` header
+// (absent on the last page). Pages are cursor based: the URL carries `after=<last id>` and `limit`.
+
+export function nextPageUrl(res: Response): string | null {
+  const link = res.headers.get('Link')
+  const match = link?.match(/<([^>]+)>\s*;\s*rel="next"/)
+  if (!match) return null
+  // the backend builds absolute URLs with its own host; keep path and query so the request goes through the proxy
+  const url = new URL(match[1], window.location.origin)
+  return url.pathname + url.search
+}
+
+// Follows the next links until the last page, for short lists the UI needs in full (e.g. search or selection)
+export async function fetchAllPages<T>(url: string, init?: RequestInit): Promise<{ res: Response; items: T[] }> {
+  let res = await fetch(url, init)
+  if (!res.ok) return { res, items: [] }
+  const items: T[] = (await res.json()) ?? []
+  let next = nextPageUrl(res)
+  while (next) {
+    res = await fetch(next, init)
+    if (!res.ok) return { res, items }
+    items.push(...(((await res.json()) ?? []) as T[]))
+    next = nextPageUrl(res)
+  }
+  return { res, items }
+}